@@ -1,5 +1,6 @@
 package com.github.leftisttachyon.gui;
 
+import com.github.leftisttachyon.input.FileWatcher;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
@@ -13,6 +14,8 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
 
 /**
  * A {@link Component} that represents an opened playback file.
@@ -46,7 +49,7 @@ public class FileTab extends JScrollPane {
     /**
      * Stores whether the content of the {@link JTextArea} has been changed since the last save.
      */
-    private boolean changed = false;
+    private volatile boolean changed = false;
 
     /**
      * Creates a new {@link FileTab}.
@@ -135,18 +138,38 @@ public class FileTab extends JScrollPane {
      * @return whether saving was successful
      */
     public boolean save() {
+        BooleanSupplier write = saveLater();
+        return write != null && write.getAsBoolean();
+    }
+
+    /**
+     * Takes the contents of the {@link JTextArea} to save to the internal file, and returns a task that writes them.
+     * The contents are read here, on the event dispatch thread, while the task can be run on any thread so that a
+     * large file does not hold up the interface. The tab counts as saved until the task fails.
+     *
+     * @return a task that writes the contents and returns whether saving was successful, or {@code null} if there is
+     * no internal file
+     */
+    public BooleanSupplier saveLater() {
         if (file == null) {
-            return false;
-        }
-        try (BufferedWriter out = Files.newBufferedWriter(file.toPath())) {
-            String text = textArea.getText();
-            out.write(text);
-            changed = false;
-            return true;
-        } catch (IOException e) {
-            log.warn("An IOException was thrown while attempting to save", e);
-            return false;
+            return null;
         }
+        Path path = file.toPath();
+        String text = textArea.getText();
+        changed = false;
+
+        return () -> {
+            try (BufferedWriter out = Files.newBufferedWriter(path)) {
+                out.write(text);
+                return true;
+            } catch (IOException e) {
+                log.warn("An IOException was thrown while attempting to save", e);
+                changed = true;
+                return false;
+            } finally {
+                FileWatcher.getInstance().written(path);
+            }
+        };
     }
 
     /**
@@ -181,7 +204,6 @@ public class FileTab extends JScrollPane {
             }
 
             textArea.setText(sb.toString());
-            frameNumbers.updateFrameNums();
             changed = false;
         } catch (IOException e) {
             log.warn("An IOException was thrown while attempting to open a file", e);
@@ -6,18 +6,25 @@ import lombok.extern.slf4j.Slf4j;
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
 import javax.swing.text.JTextComponent;
-import java.awt.*;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.*;
+import java.util.Arrays;
 
 /**
- * Creates a class that keeps track of frame numbers on the right.
+ * Creates a class that keeps track of frame numbers on the right.<br/>
+ * What each line is, its indentation and the frame it starts at are kept in primitive arrays that are updated from
+ * {@link DocumentEvent}s, so painting only reads them. When lines are edited, only the edited lines are read again,
+ * and the frames are counted again from the first edited line up to the next line that is not indented more than any
+ * of them, which is where the block that was edited ends. Every line after that starts the same number of frames later
+ * or earlier than before, within the rest of its {@code REPEAT} block and that many times more after it, so the rest
+ * of the lines are only shifted.<br/>
+ * The frames of included files are counted by the {@link IncludeFrameCounter} in the background. Until the count of
+ * an {@code INCLUDE} line is in, that line and every line after it shows a placeholder.
  *
  * @author Jed Wang
  * @since 1.0.0
@@ -25,13 +32,74 @@ import java.util.*;
 @Slf4j
 public class FrameLineNumber extends TextLineNumber implements ChangeListener {
     /**
-     * A cache for the file sizes
+     * What is shown for a line whose frame depends on an included file that has not been counted yet
      */
-    private static final HashMap<File, Integer> SIZE_CACHE = new HashMap<>();
+    private static final String PLACEHOLDER = "...";
     /**
-     * The {@link ArrayList} that contains the frame numbers
+     * The kind of a blank or comment line, or of a line that is not indented by a multiple of 4 spaces
      */
-    private ArrayList<Integer> frameNums;
+    private static final byte IGNORED = 0;
+    /**
+     * The kind of a line that is an instruction, which takes one frame
+     */
+    private static final byte INSTRUCTION = 1;
+    /**
+     * The kind of an {@code INCLUDE} line
+     */
+    private static final byte INCLUDE = 2;
+    /**
+     * The kind of a {@code REPEAT} line
+     */
+    private static final byte REPEAT = 3;
+    /**
+     * The kind of a {@code MARKER} line, which takes no frames
+     */
+    private static final byte MARKER = 4;
+    /**
+     * The kind of a line that is wrong no matter where it is
+     */
+    private static final byte BAD = 5;
+    /**
+     * The start of a line that is indented more than the blocks around it allow
+     */
+    private static final long JUMPED = -1;
+
+    /**
+     * The number of lines that the arrays hold
+     */
+    private int lineCount;
+    /**
+     * The kind of each line
+     */
+    private byte[] kinds = new byte[16];
+    /**
+     * The indentation level of each line, or {@code -1} if the line does not open or close blocks
+     */
+    private int[] indents = new int[16];
+    /**
+     * The number of frames of each instruction or {@code INCLUDE} line, or the count of each {@code REPEAT} line
+     */
+    private int[] counts = new int[16];
+    /**
+     * The number of frames before the first time each line is reached, or {@link #JUMPED}
+     */
+    private long[] starts = new long[16];
+    /**
+     * The number of {@code INCLUDE} lines whose files have not been counted yet
+     */
+    private int pendingLines;
+    /**
+     * The index of the first {@code INCLUDE} line whose file has not been counted yet, or {@link Integer#MAX_VALUE}
+     */
+    private int pendingFrom = Integer.MAX_VALUE;
+    /**
+     * Whether the first line is a format declaration
+     */
+    private boolean validHeader;
+    /**
+     * Counts frames through the lines
+     */
+    private final Counter counter = new Counter();
     /**
      * The path of the parent file
      */
@@ -57,8 +125,7 @@ public class FrameLineNumber extends TextLineNumber implements ChangeListener {
     public FrameLineNumber(JTextComponent component, int minimumDisplayDigits, float alignment) {
         super(component, minimumDisplayDigits, alignment);
 
-        frameNums = new ArrayList<>();
-
+        IncludeFrameCounter.getInstance().addListener(this);
         updateFrameNums();
     }
 
@@ -73,201 +140,430 @@ public class FrameLineNumber extends TextLineNumber implements ChangeListener {
     }
 
     /**
-     * Updates {@code frameNums}
+     * Reads every line again and counts all of the frames again
      */
     public void updateFrameNums() {
-        frameNums.clear();
+        Element root = component.getDocument().getDefaultRootElement();
+        ensureCapacity(root.getElementCount());
+        lineCount = root.getElementCount();
 
-        String[] lines = super.component.getText().split("\n");
-        log.trace("lines: {}", Arrays.toString(lines));
-        if (lines.length == 0) {
-            return;
-        }
+        pendingLines = 0;
+        readLines(0, lineCount);
+        countAll();
 
-        if (!lines[0].startsWith("!FORMAT: ")) {
-            for (int i = 0; i < lines.length; i++) {
-                frameNums.add(-1);
-            }
-            log.debug("Bad header");
+        repaint();
+    }
+
+    /**
+     * Updates the frame numbers after lines were replaced
+     *
+     * @param index   the index of the first line that was replaced
+     * @param removed the number of lines that were removed
+     * @param added   the number of lines that were added in their place
+     */
+    private void linesChanged(int index, int removed, int added) {
+        int total = component.getDocument().getDefaultRootElement().getElementCount();
+        if (index == 0 || lineCount - removed + added != total) {
+            log.trace("Counting every line again");
+            updateFrameNums();
             return;
         }
 
-        LinkedList<Integer> weights = new LinkedList<>();
-        ArrayList<Integer> vals = new ArrayList<>();
-
-        frameNums.add(0);
-        weights.add(1);
-        vals.add(0);
-        for (int i = 1; i < lines.length; i++) {
-            log.trace("@{}: frameNums: {}", i, frameNums);
-            log.trace("@{}: weights  : {}", i, weights);
-            log.trace("@{}: vals     : {}", i, vals);
-
-            String line = lines[i].replace("\t", "    ");
-            String content = line.stripLeading();
-            int firstNonSpace = line.length() - content.length();
-            if (line.length() == 0 || content.startsWith("#")) {
-                frameNums.add(0);
-                continue;
+        // the blocks that were edited all start at the lowest indentation of the old and new lines
+        int lowest = Integer.MAX_VALUE;
+        for (int i = index; i < index + removed; i++) {
+            if (indents[i] >= 0) {
+                lowest = Math.min(lowest, indents[i]);
             }
-            if (firstNonSpace % 4 != 0) {
-                log.trace("Bad indentation");
-                frameNums.add(-1);
-                continue;
+            if (isPending(i)) {
+                pendingLines--;
             }
+        }
 
-            int indentLevel = weights.size() - 1;
-            int localIndent = firstNonSpace / 4;
-            if (localIndent > indentLevel) {
-                log.trace("Jumping indentation");
-                frameNums.add(-1);
-                continue;
-            } else if (localIndent != indentLevel) {
-                log.trace("@{}: Dropping down from {} to {}", i, indentLevel, localIndent);
-
-                for (int j = 0, size = vals.size() - 1; j < indentLevel - localIndent; j++) {
-                    weights.removeLast();
-                    vals.remove(size - j);
-                }
+        int tail = lineCount - index - removed;
+        ensureCapacity(total);
+        System.arraycopy(kinds, index + removed, kinds, index + added, tail);
+        System.arraycopy(indents, index + removed, indents, index + added, tail);
+        System.arraycopy(counts, index + removed, counts, index + added, tail);
+        System.arraycopy(starts, index + removed, starts, index + added, tail);
+        lineCount = total;
+
+        readLines(index, index + added);
+        for (int i = index; i < index + added; i++) {
+            if (indents[i] >= 0) {
+                lowest = Math.min(lowest, indents[i]);
             }
+        }
 
-            int weight = weights.getLast();
+        if (validHeader && lowest != Integer.MAX_VALUE) {
+            countFrom(index, index + added, lowest);
+        }
+        findPending();
 
-            if (content.startsWith("INCLUDE ")) {
-                // damn
-                log.trace("INCLUDE detected");
-                if (parentPath == null) {
-                    frameNums.add(0);
-                    continue;
-                }
+        repaint();
+    }
 
-                int val = getFrameNums(Paths.get(parentPath, content.substring(8)).toFile());
-                int j = vals.size() - 1;
-                for (Iterator<Integer> iter = weights.iterator(); iter.hasNext(); j--) {
-                    vals.set(j, vals.get(j) + iter.next());
-                }
-                frameNums.add(vals.get(vals.size() - 1));
+    /**
+     * Counts the frames of every line again, without reading them again
+     */
+    private void countAll() {
+        if (validHeader) {
+            counter.reset();
+            for (int i = 1; i < lineCount; i++) {
+                counter.count(i);
+            }
+        }
+        findPending();
+    }
 
-                j = vals.size() - 1;
-                for (Iterator<Integer> iter = weights.iterator(); iter.hasNext(); j--) {
-                    vals.set(j, vals.get(j) + iter.next() * (val - 1));
-                }
-            } else {
-                if (content.startsWith("REPEAT ")) {
-                    log.trace("REPEAT detected @{}", i);
-                    String num = content.substring(7);
-                    if (!num.matches("\\d+")) {
-                        frameNums.add(-1);
-                        continue;
-                    }
-
-                    int mult = Integer.parseInt(num);
-                    weights.add(mult * weight);
-                    frameNums.add(0);
-                    vals.add(vals.get(vals.size() - 1));
-                } else {
-                    log.trace("Standard procedures");
-                    int j = vals.size() - 1;
-                    for (Iterator<Integer> iter = weights.iterator(); iter.hasNext(); j--) {
-                        vals.set(j, vals.get(j) + iter.next());
-                    }
-                    frameNums.add(vals.get(vals.size() - 1));
-                }
+    /**
+     * Finds the first line whose file has not been counted yet
+     */
+    private void findPending() {
+        pendingFrom = Integer.MAX_VALUE;
+        for (int i = 1; pendingLines > 0 && i < lineCount; i++) {
+            if (isPending(i)) {
+                pendingFrom = i;
+                break;
             }
         }
+    }
 
-        log.trace("@end: frameNums: {}", frameNums);
-        log.trace("@end: weights  : {}", weights);
-        log.trace("@end: vals     : {}", vals);
+    /**
+     * Returns whether the given line is an {@code INCLUDE} line whose file has not been counted yet
+     *
+     * @param i the index of the line
+     * @return whether the count of the line is still to come
+     */
+    private boolean isPending(int i) {
+        return kinds[i] == INCLUDE && counts[i] == IncludeFrameCounter.PENDING;
     }
 
-    private int getFrameNums(File file) {
-        if (SIZE_CACHE.containsKey(file)) {
-            return SIZE_CACHE.get(file);
+    /**
+     * Counts the frames again from the given line to the end of the edited block, and shifts the lines after it
+     *
+     * @param from   the index of the first edited line
+     * @param to     the index after the last edited line
+     * @param lowest the lowest indentation of the edited lines, before and after the edit
+     */
+    private void countFrom(int from, int to, int lowest) {
+        counter.restoreBefore(from);
+
+        int i = from;
+        for (; i < lineCount; i++) {
+            // a line that closes the edited block is only reached once the blocks in it are closed
+            if (i >= to && indents[i] >= 0 && indents[i] <= lowest && indents[i] <= counter.depth
+                    && starts[i] != JUMPED) {
+                break;
+            }
+            counter.count(i);
         }
-        try (BufferedReader in = Files.newBufferedReader(file.toPath())) {
-            int cnt = countIndented(in, 0, file.getParent());
-            if (cnt != -1) SIZE_CACHE.put(file, cnt);
-            return cnt;
-        } catch (IOException e) {
-            log.warn("An IOException was thrown while reading the file", e);
-            return -1;
+        if (i == lineCount) {
+            return;
         }
-    }
 
-    private int countIndented(BufferedReader in, int indentationLevel, String filePath) throws IOException {
-        int output = 0;
-        String line;
-        while ((line = in.readLine()) != null) {
-            line = line.replace("\t", "    ");
-            String content = line.stripLeading();
-            log.trace("content: {}", content);
+        counter.close(indents[i]);
+        long shift = counter.position - starts[i];
+        log.trace("Counted lines {} to {}, shifting the rest by {}", from, i, shift);
 
-            if (line.isBlank() || content.startsWith("#")) {
-                continue;
+        for (; i < lineCount && shift != 0; i++) {
+            int indent = indents[i];
+            while (indent >= 0 && indent < counter.depth) {
+                counter.depth--;
+                shift *= counter.repeats[counter.depth];
             }
-
-            int firstNonSpace = line.length() - content.length();
-            if (firstNonSpace % 4 != 0 || firstNonSpace / 4 > indentationLevel) {
-                return -1;
+            if (starts[i] != JUMPED) {
+                starts[i] += shift;
             }
+        }
+    }
 
-            log.trace("Indentation math: compare {} to {}", firstNonSpace / 4, indentationLevel);
-
-            if (firstNonSpace / 4 < indentationLevel) {
-                in.reset();
-
-                break;
+    /**
+     * Reads what the given lines are
+     *
+     * @param from the index of the first line to read
+     * @param to   the index after the last line to read
+     */
+    private void readLines(int from, int to) {
+        Document document = component.getDocument();
+        Element root = document.getDefaultRootElement();
+        for (int i = from; i < to; i++) {
+            Element element = root.getElement(i);
+            String line;
+            try {
+                line = document.getText(element.getStartOffset(),
+                        element.getEndOffset() - element.getStartOffset());
+            } catch (BadLocationException e) {
+                log.warn("Could not read line " + i, e);
+                line = "";
+            }
+            if (line.endsWith("\n")) {
+                line = line.substring(0, line.length() - 1);
             }
 
-            // guaranteed: indentationLevel * 4 == firstNonSpace
-            if (content.startsWith("INCLUDE ")) {
-                Path path = Paths.get(filePath, content.substring(8));
-                log.trace("Fragment path: {}", path);
-                output += getFrameNums(path.toFile());
-            } else if (content.startsWith("REPEAT ")) {
-                int repeat = Integer.parseInt(content.substring(7));
-                int counted = countIndented(in, indentationLevel + 1, filePath);
-
-                output += repeat * counted;
+            if (i == 0) {
+                validHeader = line.startsWith("!FORMAT: ");
+                kinds[0] = IGNORED;
+                indents[0] = -1;
             } else {
-                output++;
+                readLine(i, line.replace("\t", "    "));
             }
+        }
+    }
 
-            in.mark(1_000);
+    /**
+     * Reads what the given line is
+     *
+     * @param i    the index of the line
+     * @param line the text of the line, with tabs replaced by spaces
+     */
+    private void readLine(int i, String line) {
+        String content = line.stripLeading();
+        int firstNonSpace = line.length() - content.length();
+        starts[i] = 0;
+        if (line.isBlank() || content.startsWith("#")) {
+            kinds[i] = IGNORED;
+            indents[i] = -1;
+            return;
+        }
+        if (firstNonSpace % 4 != 0) {
+            log.trace("Bad indentation");
+            kinds[i] = BAD;
+            indents[i] = -1;
+            return;
+        }
+
+        indents[i] = firstNonSpace / 4;
+        counts[i] = 0;
+        if (content.startsWith("MARKER ")) {
+            kinds[i] = MARKER;
+        } else if (content.startsWith("INCLUDE ")) {
+            kinds[i] = INCLUDE;
+            if (parentPath != null) {
+                Path path = Paths.get(parentPath, content.substring(8)).toAbsolutePath().normalize();
+                counts[i] = IncludeFrameCounter.getInstance().lookup(path);
+                if (counts[i] == IncludeFrameCounter.UNREADABLE) {
+                    kinds[i] = BAD;
+                } else if (counts[i] == IncludeFrameCounter.PENDING) {
+                    pendingLines++;
+                }
+            }
+        } else if (content.startsWith("REPEAT ")) {
+            String num = content.substring(7);
+            try {
+                kinds[i] = REPEAT;
+                counts[i] = num.matches("\\d+") ? Integer.parseInt(num) : -1;
+            } catch (NumberFormatException e) {
+                counts[i] = -1;
+            }
+            if (counts[i] == -1) {
+                kinds[i] = BAD;
+            }
+        } else {
+            kinds[i] = INSTRUCTION;
+            counts[i] = 1;
         }
+    }
 
-        return output;
+    /**
+     * Makes sure that the arrays can hold the given number of lines
+     *
+     * @param capacity the number of lines
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > kinds.length) {
+            int length = Math.max(capacity, kinds.length * 2);
+            kinds = Arrays.copyOf(kinds, length);
+            indents = Arrays.copyOf(indents, length);
+            counts = Arrays.copyOf(counts, length);
+            starts = Arrays.copyOf(starts, length);
+        }
     }
 
     @Override
     protected String getNumber(int idx) {
-        if (idx >= frameNums.size()) {
+        if (idx >= lineCount) {
             return "";
         }
+        if (!validHeader) {
+            return "ERR";
+        }
 
-        int get = frameNums.get(idx);
-        if (get == 0) {
-            log.trace("Calling getNumber({}) yielded \"\"", idx);
-            return "";
-        } else if (get == -1) {
-            log.trace("Calling getNumber({}) yielded \"ERR\"", idx);
+        byte kind = kinds[idx];
+        if (kind == BAD || kind != IGNORED && starts[idx] == JUMPED) {
             return "ERR";
+        } else if (kind == INSTRUCTION || kind == INCLUDE && parentPath != null) {
+            return idx >= pendingFrom ? PLACEHOLDER : String.valueOf(starts[idx] + 1);
         } else {
-            log.trace("Calling getNumber({}) yielded \"{}\"", idx, get);
-            return String.valueOf(get);
+            return "";
         }
     }
 
     @Override
-    public void stateChanged(ChangeEvent e) {
-        SwingUtilities.invokeLater(SIZE_CACHE::clear);
+    public void insertUpdate(DocumentEvent e) {
+        super.insertUpdate(e);
+        documentChanged(e);
     }
 
     @Override
-    public void paintComponent(Graphics g) {
-        updateFrameNums();
+    public void removeUpdate(DocumentEvent e) {
+        super.removeUpdate(e);
+        documentChanged(e);
+    }
 
-        super.paintComponent(g);
+    /**
+     * Updates the frame numbers of the lines that the given event changed
+     *
+     * @param e the {@link DocumentEvent} that describes the change
+     */
+    private void documentChanged(DocumentEvent e) {
+        Element root = e.getDocument().getDefaultRootElement();
+        DocumentEvent.ElementChange change = e.getChange(root);
+        if (change == null) {
+            linesChanged(root.getElementIndex(e.getOffset()), 1, 1);
+        } else {
+            linesChanged(change.getIndex(), change.getChildrenRemoved().length, change.getChildrenAdded().length);
+        }
+    }
+
+    @Override
+    public void stateChanged(ChangeEvent e) {
+        IncludeFrameCounter.getInstance().revalidate();
+    }
+
+    /**
+     * Reads the {@code INCLUDE} lines again once new counts of included files are in, and counts the frames again if
+     * any of them changed. The text is already in memory, so this does not touch the disk.
+     */
+    void includesCounted() {
+        boolean changed = false;
+        for (int i = 1; i < lineCount; i++) {
+            if (kinds[i] == INCLUDE || kinds[i] == BAD && indents[i] >= 0) {
+                int count = counts[i];
+                byte kind = kinds[i];
+                if (isPending(i)) {
+                    pendingLines--;
+                }
+                readLines(i, i + 1);
+                changed |= count != counts[i] || kind != kinds[i];
+            }
+        }
+
+        if (changed) {
+            countAll();
+            repaint();
+        }
+    }
+
+    /**
+     * Follows the open {@code REPEAT} blocks and the number of frames through the lines
+     */
+    private final class Counter {
+        /**
+         * The number of frames before the first line of each open block
+         */
+        private long[] blockStarts = new long[8];
+        /**
+         * The count of each open block
+         */
+        private int[] repeats = new int[8];
+        /**
+         * The number of open blocks
+         */
+        private int depth;
+        /**
+         * The number of frames before the first time the next line is reached
+         */
+        private long position;
+
+        /**
+         * Goes back to the start of the file
+         */
+        private void reset() {
+            depth = 0;
+            position = 0;
+        }
+
+        /**
+         * Goes to the state just before the given line, from the lines before it
+         *
+         * @param line the index of the line
+         */
+        private void restoreBefore(int line) {
+            reset();
+
+            // walk back through the lines that are less indented than everything after them: the first one sets the
+            // position and the REPEAT lines among them are the blocks that are still open
+            int threshold = Integer.MAX_VALUE, open = 0;
+            for (int i = line - 1; i > 0 && threshold > 0; i--) {
+                if (indents[i] < 0 || indents[i] >= threshold || starts[i] == JUMPED) {
+                    continue;
+                }
+
+                if (threshold == Integer.MAX_VALUE) {
+                    position = starts[i] + (kinds[i] == INSTRUCTION || kinds[i] == INCLUDE ? Math.max(counts[i], 0) : 0);
+                }
+                threshold = indents[i];
+                if (kinds[i] == REPEAT) {
+                    open++;
+                    ensureDepth(indents[i] + 1);
+                    blockStarts[indents[i]] = starts[i];
+                    repeats[indents[i]] = counts[i];
+                }
+            }
+            depth = open;
+        }
+
+        /**
+         * Counts the given line
+         *
+         * @param i the index of the line
+         */
+        private void count(int i) {
+            int indent = indents[i];
+            if (indent < 0) {
+                return;
+            }
+            if (indent > depth) {
+                log.trace("Jumping indentation at {}", i);
+                starts[i] = JUMPED;
+                return;
+            }
+
+            close(indent);
+            starts[i] = position;
+            if (kinds[i] == INSTRUCTION || kinds[i] == INCLUDE) {
+                position += Math.max(counts[i], 0);
+            } else if (kinds[i] == REPEAT) {
+                ensureDepth(depth + 1);
+                blockStarts[depth] = position;
+                repeats[depth] = counts[i];
+                depth++;
+            }
+        }
+
+        /**
+         * Closes the open blocks down to the given indentation, counting each as many times as it repeats
+         *
+         * @param indent the indentation to close down to
+         */
+        private void close(int indent) {
+            while (depth > indent) {
+                depth--;
+                position = blockStarts[depth] + repeats[depth] * (position - blockStarts[depth]);
+            }
+        }
+
+        /**
+         * Makes sure that the given number of blocks can be open
+         *
+         * @param capacity the number of blocks
+         */
+        private void ensureDepth(int capacity) {
+            if (capacity > repeats.length) {
+                blockStarts = Arrays.copyOf(blockStarts, Math.max(capacity, repeats.length * 2));
+                repeats = Arrays.copyOf(repeats, blockStarts.length);
+            }
+        }
     }
 }
@@ -0,0 +1,560 @@
+package com.github.leftisttachyon.gui;
+
+import com.github.leftisttachyon.input.FileWatcher;
+import com.github.leftisttachyon.input.IncludeGraph;
+import com.github.leftisttachyon.input.PlaybackCache;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * A class that counts the frames of the files that {@code INCLUDE} lines name, away from the event dispatch thread.
+ * <br/>
+ * {@link #lookup(Path)} only ever looks in memory: a file that has not been counted yet is {@link #PENDING}, and is
+ * counted on a background thread. Requests are debounced, so typing out the name of a file does not count every
+ * prefix of it. Counts are kept per file along with its size, modification time and hash. The directory of every
+ * counted file is watched with the {@link FileWatcher}: when a file changes, it and every file that includes it are
+ * checked again in the background. Since the operating system can lose an event, counts are only trusted for up to
+ * {@link PlaybackCache#TRUST_NANOS} after they were checked, like the entries of a {@link PlaybackCache}. Files in
+ * directories that cannot be watched, and files that were checked longer ago than that, are checked again when asked
+ * to with {@link #revalidate()}. Either way, a file is only counted again if its contents changed, or if a file it
+ * includes did. Once new counts are in, every {@link FrameLineNumber} is told on the event
+ * dispatch thread.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+final class IncludeFrameCounter {
+    /**
+     * The count of a file that has not been counted yet
+     */
+    static final int PENDING = -2;
+    /**
+     * The count of a file that could not be read or counted
+     */
+    static final int UNREADABLE = -1;
+    /**
+     * How long to wait after the last request before counting, in milliseconds
+     */
+    private static final long DEBOUNCE_MILLIS = 150;
+    /**
+     * The shared instance
+     */
+    private static final IncludeFrameCounter INSTANCE = new IncludeFrameCounter();
+
+    /**
+     * What is known about each counted file, by absolute path
+     */
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    /**
+     * The files that each counted file includes
+     */
+    private final IncludeGraph graph = new IncludeGraph();
+    /**
+     * The files that have been asked for and not counted yet
+     */
+    private final Set<Path> requested = ConcurrentHashMap.newKeySet();
+    /**
+     * The files that were reported to have changed and not checked yet
+     */
+    private final Set<Path> changed = ConcurrentHashMap.newKeySet();
+    /**
+     * The files that include a changed file, directly or not, and have not been checked yet
+     */
+    private final Set<Path> dependents = ConcurrentHashMap.newKeySet();
+    /**
+     * The thread that counts files
+     */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "include-counter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * The gutters to tell about new counts, only used on the event dispatch thread
+     */
+    private final Set<FrameLineNumber> listeners = Collections.newSetFromMap(new WeakHashMap<>());
+    /**
+     * The next count, if one is scheduled
+     */
+    private ScheduledFuture<?> scheduled;
+    /**
+     * Whether the next count should check every file that is no longer trusted again
+     */
+    private boolean revalidateUntrusted;
+
+    /**
+     * Returns the shared instance
+     *
+     * @return the shared {@link IncludeFrameCounter}
+     */
+    static IncludeFrameCounter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a new {@link IncludeFrameCounter}
+     */
+    private IncludeFrameCounter() {
+        FileWatcher.getInstance().addListener(new FileWatcher.Listener() {
+            @Override
+            public void filesChanged(Predicate<Path> changed) {
+                invalidate(changed);
+            }
+
+            @Override
+            public boolean isUsing(Path directory) {
+                for (Path path : entries.keySet()) {
+                    if (directory.equals(path.getParent())) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Starts telling the given gutter about new counts. It is only held weakly.
+     *
+     * @param listener the {@link FrameLineNumber} to tell
+     */
+    void addListener(FrameLineNumber listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Returns the number of frames in the given file as far as is known, without touching the disk. A file that has
+     * not been counted is counted in the background.
+     *
+     * @param path the absolute, normalized path of the file
+     * @return the number of frames, {@link #PENDING} if the file has not been counted yet, or {@link #UNREADABLE}
+     */
+    int lookup(Path path) {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            return entry.frames;
+        }
+
+        requested.add(path);
+        schedule();
+        return PENDING;
+    }
+
+    /**
+     * Checks every counted file that is no longer trusted again in the background, in case it changed on disk.
+     * Changes to the other files are already reported by the {@link FileWatcher}.
+     */
+    void revalidate() {
+        boolean untrusted = false;
+        long now = System.nanoTime();
+        for (Entry entry : entries.values()) {
+            untrusted |= !entry.isTrusted(now);
+        }
+        if (!untrusted) {
+            return;
+        }
+
+        synchronized (this) {
+            revalidateUntrusted = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Notes that the given files changed, along with every file that includes them, and checks them again in the
+     * background. This is called on the thread of the {@link FileWatcher}.
+     *
+     * @param test tests whether a file may have changed
+     */
+    private void invalidate(Predicate<Path> test) {
+        Set<Path> stale = graph.affectedBy(test);
+        stale.retainAll(entries.keySet());
+        if (stale.isEmpty()) {
+            return;
+        }
+
+        for (Path path : stale) {
+            (test.test(path) ? changed : dependents).add(path);
+        }
+        log.debug("Invalidated {}", stale);
+        schedule();
+    }
+
+    /**
+     * Schedules a count once no more requests come in for a while
+     */
+    private synchronized void schedule() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduled = executor.schedule(this::countRequested, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts the requested files, and every known file if asked to, then tells the listeners if anything changed
+     */
+    private void countRequested() {
+        boolean untrusted;
+        synchronized (this) {
+            untrusted = revalidateUntrusted;
+            revalidateUntrusted = false;
+        }
+
+        ArrayList<Path> toCheck = new ArrayList<>();
+        for (Path path : new ArrayList<>(changed)) {
+            changed.remove(path);
+            // the size and modification time of a changed file may still match, so make sure it is read again
+            entries.computeIfPresent(path, (key, entry) -> entry.changed());
+            toCheck.add(path);
+        }
+        for (Path path : new ArrayList<>(dependents)) {
+            dependents.remove(path);
+            toCheck.add(path);
+        }
+        if (untrusted) {
+            long now = System.nanoTime();
+            entries.forEach((path, entry) -> {
+                if (!entry.isTrusted(now)) {
+                    toCheck.add(path);
+                }
+            });
+        }
+
+        HashMap<Path, Integer> counted = new HashMap<>();
+        boolean updated = false;
+        for (Path path : toCheck) {
+            Entry before = entries.get(path);
+            int frames = count(path, counted, new HashSet<>());
+            updated |= before == null || before.frames != frames;
+        }
+        for (Path path : new ArrayList<>(requested)) {
+            requested.remove(path);
+            count(path, counted, new HashSet<>());
+            updated = true;
+        }
+        log.debug("Counted {} file(s), changed: {}", counted.size(), updated);
+
+        if (updated) {
+            SwingUtilities.invokeLater(() -> {
+                for (FrameLineNumber listener : new ArrayList<>(listeners)) {
+                    listener.includesCounted();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the number of frames in the given file, counting it again if it or a file it includes changed
+     *
+     * @param path    the absolute, normalized path of the file
+     * @param counted the files already checked in this pass, and their counts
+     * @param open    the files currently being counted, to find cycles
+     * @return the number of frames, or {@link #UNREADABLE}
+     */
+    private int count(Path path, HashMap<Path, Integer> counted, HashSet<Path> open) {
+        Integer known = counted.get(path);
+        if (known != null) {
+            return known;
+        }
+        if (!open.add(path)) {
+            log.debug("INCLUDE cycle through {}", path);
+            return UNREADABLE;
+        }
+
+        int frames;
+        try {
+            frames = check(path, counted, open);
+        } finally {
+            open.remove(path);
+        }
+        counted.put(path, frames);
+        return frames;
+    }
+
+    /**
+     * Checks the given file against what is known about it, reading and counting it only if needed
+     *
+     * @param path    the absolute, normalized path of the file
+     * @param counted the files already checked in this pass, and their counts
+     * @param open    the files currently being counted, to find cycles
+     * @return the number of frames, or {@link #UNREADABLE}
+     */
+    private int check(Path path, HashMap<Path, Integer> counted, HashSet<Path> open) {
+        // watch before looking at the file, so that no change after this goes unreported
+        boolean watched = FileWatcher.getInstance().watch(path.getParent());
+        Entry entry = entries.get(path);
+        long size, modified;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            size = attributes.size();
+            modified = attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            log.debug("Could not read the attributes of {}", path);
+            put(path, new Entry(0, 0, null, UNREADABLE, List.of(), new int[0], watched));
+            return UNREADABLE;
+        }
+
+        if (entry != null && entry.size == size && entry.modified == modified
+                && includesUnchanged(entry, counted, open)) {
+            put(path, new Entry(size, modified, entry.hash, entry.frames, entry.includes, entry.includeFrames,
+                    watched));
+            return entry.frames;
+        }
+
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(path);
+        } catch (IOException e) {
+            log.warn("Could not read " + path, e);
+            put(path, new Entry(size, modified, null, UNREADABLE, List.of(), new int[0], watched));
+            return UNREADABLE;
+        }
+
+        byte[] hash = hash(contents);
+        if (entry != null && Arrays.equals(entry.hash, hash) && includesUnchanged(entry, counted, open)) {
+            log.debug("{} was touched but not changed", path);
+            put(path, new Entry(size, modified, hash, entry.frames, entry.includes, entry.includeFrames, watched));
+            return entry.frames;
+        }
+
+        ArrayList<Path> includes = new ArrayList<>();
+        int frames;
+        try {
+            List<String> lines = new String(contents).lines().collect(Collectors.toList());
+            frames = countIndented(lines.listIterator(), 0, path.getParent(), includes, counted, open);
+        } catch (NumberFormatException | ArithmeticException e) {
+            log.debug("Could not count {}: {}", path, e.toString());
+            frames = UNREADABLE;
+        }
+
+        int[] includeFrames = new int[includes.size()];
+        for (int i = 0; i < includeFrames.length; i++) {
+            includeFrames[i] = counted.getOrDefault(includes.get(i), UNREADABLE);
+        }
+        put(path, new Entry(size, modified, hash, frames, includes, includeFrames, watched));
+        return frames;
+    }
+
+    /**
+     * Stores what is known about the given file, and records the files it includes in the graph
+     *
+     * @param path  the absolute, normalized path of the file
+     * @param entry what is known about the file
+     */
+    private void put(Path path, Entry entry) {
+        graph.setIncludes(path, entry.includes);
+        entries.put(path, entry);
+    }
+
+    /**
+     * Determines whether every file that the given entry includes still has the same count
+     *
+     * @param entry   the entry to check
+     * @param counted the files already checked in this pass, and their counts
+     * @param open    the files currently being counted, to find cycles
+     * @return whether every included file is unchanged
+     */
+    private boolean includesUnchanged(Entry entry, HashMap<Path, Integer> counted, HashSet<Path> open) {
+        for (int i = 0; i < entry.includes.size(); i++) {
+            if (count(entry.includes.get(i), counted, open) != entry.includeFrames[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Counts the frames of the indented block. The first line after the block is left to be read next.
+     *
+     * @param in               the lines of the file, positioned at the start of the block
+     * @param indentationLevel the amount of indentation this block is in
+     * @param directory        the directory of the file, which {@code INCLUDE} paths are relative to
+     * @param includes         the files that are included, which this adds to
+     * @param counted          the files already checked in this pass, and their counts
+     * @param open             the files currently being counted, to find cycles
+     * @return the number of frames in the block, or {@link #UNREADABLE}
+     * @throws NumberFormatException if a repeat count is not a number
+     * @throws ArithmeticException   if the block has more frames than an {@code int} can hold
+     */
+    private int countIndented(ListIterator<String> in, int indentationLevel, Path directory, List<Path> includes,
+                              HashMap<Path, Integer> counted, HashSet<Path> open) {
+        int output = 0;
+        while (in.hasNext()) {
+            String line = in.next().replace("\t", "    ");
+            String content = line.stripLeading();
+
+            if (line.isBlank() || content.startsWith("#")) {
+                continue;
+            }
+
+            int firstNonSpace = line.length() - content.length();
+            if (firstNonSpace % 4 != 0 || firstNonSpace / 4 > indentationLevel) {
+                return UNREADABLE;
+            }
+
+            if (firstNonSpace / 4 < indentationLevel) {
+                in.previous();
+
+                break;
+            }
+
+            // guaranteed: indentationLevel * 4 == firstNonSpace
+            int frames;
+            if (content.startsWith("INCLUDE ")) {
+                Path include = directory.resolve(content.substring(8)).toAbsolutePath().normalize();
+                includes.add(include);
+                frames = count(include, counted, open);
+            } else if (content.startsWith("REPEAT ")) {
+                int repeat = Integer.parseInt(content.substring(7));
+                int inner = countIndented(in, indentationLevel + 1, directory, includes, counted, open);
+                frames = inner == UNREADABLE || repeat < 0 ? UNREADABLE : Math.multiplyExact(repeat, inner);
+            } else {
+                frames = content.startsWith("MARKER ") ? 0 : 1;
+            }
+
+            if (frames == UNREADABLE) {
+                return UNREADABLE;
+            }
+            output = Math.addExact(output, frames);
+        }
+
+        return output;
+    }
+
+    /**
+     * Hashes the given contents
+     *
+     * @param contents the contents of a file
+     * @return the hash of the contents
+     */
+    private static byte[] hash(byte[] contents) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contents);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * What is known about a counted file
+     */
+    private static final class Entry {
+        /**
+         * The size of the file, in bytes
+         */
+        private final long size;
+        /**
+         * The modification time of the file, in milliseconds since the epoch, or {@code -1} if the file is known to
+         * have changed since
+         */
+        private final long modified;
+        /**
+         * The hash of the contents of the file, or {@code null} if it could not be read
+         */
+        private final byte[] hash;
+        /**
+         * The number of frames in the file, or {@link #UNREADABLE}
+         */
+        private final int frames;
+        /**
+         * The files that the file includes, in order
+         */
+        private final List<Path> includes;
+        /**
+         * The number of frames in each included file when this file was counted
+         */
+        private final int[] includeFrames;
+        /**
+         * Whether the directory of the file is watched, so that changes to it are reported
+         */
+        private final boolean watched;
+        /**
+         * When the file was last checked against the disk, as given by {@link System#nanoTime()}
+         */
+        private final long checked;
+
+        /**
+         * Creates a new {@link Entry}
+         *
+         * @param size          the size of the file, in bytes
+         * @param modified      the modification time of the file, in milliseconds since the epoch
+         * @param hash          the hash of the contents of the file, or {@code null} if it could not be read
+         * @param frames        the number of frames in the file, or {@link #UNREADABLE}
+         * @param includes      the files that the file includes, in order
+         * @param includeFrames the number of frames in each included file when this file was counted
+         * @param watched       whether the directory of the file is watched
+         */
+        private Entry(long size, long modified, byte[] hash, int frames, List<Path> includes, int[] includeFrames,
+                      boolean watched) {
+            this(size, modified, hash, frames, includes, includeFrames, watched, System.nanoTime());
+        }
+
+        /**
+         * Creates a new {@link Entry}
+         *
+         * @param size          the size of the file, in bytes
+         * @param modified      the modification time of the file, in milliseconds since the epoch
+         * @param hash          the hash of the contents of the file, or {@code null} if it could not be read
+         * @param frames        the number of frames in the file, or {@link #UNREADABLE}
+         * @param includes      the files that the file includes, in order
+         * @param includeFrames the number of frames in each included file when this file was counted
+         * @param watched       whether the directory of the file is watched
+         * @param checked       when the file was last checked against the disk, as given by {@link System#nanoTime()}
+         */
+        private Entry(long size, long modified, byte[] hash, int frames, List<Path> includes, int[] includeFrames,
+                      boolean watched, long checked) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.frames = frames;
+            this.includes = includes;
+            this.includeFrames = includeFrames;
+            this.watched = watched;
+            this.checked = checked;
+        }
+
+        /**
+         * Determines whether the count of the file can still be used without checking the file against the disk
+         *
+         * @param now the current time, as given by {@link System#nanoTime()}
+         * @return whether the directory of the file is watched and the file was checked recently enough
+         */
+        private boolean isTrusted(long now) {
+            return watched && now - checked < PlaybackCache.TRUST_NANOS;
+        }
+
+        /**
+         * Returns a copy of this entry for a file that is known to have changed, so that it is read again
+         *
+         * @return a copy of this entry that does not match any modification time
+         */
+        private Entry changed() {
+            return new Entry(size, -1, hash, frames, includes, includeFrames, watched, checked);
+        }
+    }
+}
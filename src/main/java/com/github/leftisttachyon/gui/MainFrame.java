@@ -1,9 +1,24 @@
 package com.github.leftisttachyon.gui;
 
 import com.github.leftisttachyon.input.InvalidFileFormatException;
+import com.github.leftisttachyon.input.ParallelPlaybackLoader;
+import com.github.leftisttachyon.input.PipelinedPlayback;
+import com.github.leftisttachyon.input.ProgressListener;
 import com.github.leftisttachyon.input.SimpleInstruction;
 import com.github.leftisttachyon.input.SimplePlayback;
+import com.github.leftisttachyon.input.compiled.CompiledMovieFile;
 import com.github.leftisttachyon.input.compiled.CompiledPlayback;
+import com.github.leftisttachyon.input.compiled.PlaybackSession;
+import com.github.leftisttachyon.input.compiled.PlaybackSessionManager;
+import com.github.leftisttachyon.input.sink.InputSink;
+import com.github.leftisttachyon.input.sink.NoOpInputSink;
+import com.github.leftisttachyon.input.sink.OffsetInputSink;
+import com.github.leftisttachyon.input.sink.RecordingInputSink;
+import com.github.leftisttachyon.input.sink.RobotInputSink;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.FrameScheduler;
+import com.github.leftisttachyon.timing.FrameTimingRecorder;
+import com.github.leftisttachyon.timing.TimingReport;
 import com.sun.jna.platform.DesktopWindow;
 import com.sun.jna.platform.WindowUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -14,11 +29,19 @@ import java.awt.event.ActionEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 import static java.awt.event.KeyEvent.*;
 
@@ -31,6 +54,10 @@ import static java.awt.event.KeyEvent.*;
 @Slf4j
 public final class MainFrame extends JFrame {
 
+    /**
+     * The number of frames that the circle test scans for its size between reports of progress
+     */
+    private static final int SCAN_PROGRESS_FRAMES = 1 << 16;
     /**
      * The list of tabs
      */
@@ -55,10 +82,42 @@ public final class MainFrame extends JFrame {
      * A formatted text field that handles the delay between each frame.
      */
     private JFormattedTextField frameDelayField;
+    /**
+     * A combo box that selects the unit that the frame delay is given in
+     */
+    private JComboBox<FramePeriod.Unit> frameDelayUnitBox;
+    /**
+     * A label that shows the frame timing of the last run
+     */
+    private JLabel timingLabel;
+    /**
+     * The frame timing of the last run, if any
+     */
+    private TimingReport lastReport;
+    /**
+     * The menu item that, when selected, makes runs record their inputs instead of sending them
+     */
+    private JRadioButtonMenuItem recordInputMenuItem;
+    /**
+     * The menu item that, when selected, makes runs discard their inputs instead of sending them
+     */
+    private JRadioButtonMenuItem discardInputMenuItem;
     /**
      * The currently running thread, if any
      */
     private Thread running;
+    /**
+     * The manager that plays compiled movies, into one window or several at once
+     */
+    private final PlaybackSessionManager sessions = new PlaybackSessionManager();
+    /**
+     * A progress bar that shows how far along getting a run ready is
+     */
+    private JProgressBar progressBar;
+    /**
+     * The task that is getting a run ready, if any
+     */
+    private PreparationTask preparing;
     /**
      * A counter for unnamed files
      */
@@ -84,9 +143,11 @@ public final class MainFrame extends JFrame {
         NumberFormat integerFormat = NumberFormat.getIntegerInstance();
         integerFormat.setGroupingUsed(false);
         integerFormat.setMinimumIntegerDigits(1);
+        DecimalFormat decimalFormat = new DecimalFormat("0.#########");
+        decimalFormat.setParseBigDecimal(true);
 
         JLabel xOffsetLabel = new JLabel(), yOffsetLabel = new JLabel(),
-                frameDelayLabel = new JLabel(), msLabel = new JLabel();
+                frameDelayLabel = new JLabel();
         JMenuBar menuBar = new JMenuBar();
         JMenu fileMenu = new JMenu(), editMenu = new JMenu(), viewMenu = new JMenu(), runMenu = new JMenu();
         JMenuItem newMenuItem = new JMenuItem(), openMenuItem = new JMenuItem(), saveMenuItem = new JMenuItem(),
@@ -100,7 +161,10 @@ public final class MainFrame extends JFrame {
         fileTabbedPane = new JTabbedPane();
         xOffsetField = new JFormattedTextField(integerFormat);
         yOffsetField = new JFormattedTextField(integerFormat);
-        frameDelayField = new JFormattedTextField(integerFormat);
+        frameDelayField = new JFormattedTextField(decimalFormat);
+        frameDelayUnitBox = new JComboBox<>(FramePeriod.Unit.values());
+        timingLabel = new JLabel();
+        progressBar = new JProgressBar();
 
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         setTitle("RhoIda");
@@ -133,8 +197,14 @@ public final class MainFrame extends JFrame {
         frameDelayLabel.setFont(segoe12);
         frameDelayLabel.setText("Frame delay:");
 
-        msLabel.setFont(segoe12);
-        msLabel.setText("ms");
+        frameDelayUnitBox.setFont(segoe12);
+        frameDelayUnitBox.setSelectedItem(FramePeriod.Unit.MILLISECONDS);
+
+        timingLabel.setFont(segoe12);
+
+        progressBar.setFont(segoe12);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
 
         chooseWindowButton.setFont(segoe12);
         chooseWindowButton.addActionListener(this::openWindowSelect);
@@ -273,15 +343,61 @@ public final class MainFrame extends JFrame {
         runMenuItem.getAccessibleContext().setAccessibleDescription("Runs the opened program");
         runMenu.add(runMenuItem);
 
+        JMenuItem runOnWindowsMenuItem = new JMenuItem("Run on Windows...");
+        runOnWindowsMenuItem.addActionListener(this::runOnWindows);
+        runOnWindowsMenuItem.setMnemonic(VK_W);
+        runOnWindowsMenuItem.getAccessibleContext().setAccessibleDescription(
+                "Runs the opened program in several windows, one after another");
+        runMenu.add(runOnWindowsMenuItem);
+
+        JMenuItem runFromMenuItem = new JMenuItem("Run From...");
+        runFromMenuItem.addActionListener(this::runFrom);
+        runFromMenuItem.setMnemonic(VK_F);
+        runFromMenuItem.getAccessibleContext().setAccessibleDescription(
+                "Runs the opened program from a frame or marker, holding what it would be holding there");
+        runMenu.add(runFromMenuItem);
+
+        JMenu inputMenu = new JMenu("Input Backend");
+        inputMenu.setMnemonic(VK_I);
+        inputMenu.getAccessibleContext().setAccessibleDescription("Chooses where the inputs of a run are sent");
+
+        JRadioButtonMenuItem robotInputMenuItem = new JRadioButtonMenuItem("Send Inputs", true);
+        robotInputMenuItem.setMnemonic(VK_S);
+        robotInputMenuItem.getAccessibleContext().setAccessibleDescription(
+                "Sends the inputs of a run to the operating system");
+        recordInputMenuItem = new JRadioButtonMenuItem("Record Inputs Only");
+        recordInputMenuItem.setMnemonic(VK_R);
+        recordInputMenuItem.getAccessibleContext().setAccessibleDescription(
+                "Records the inputs of a run in memory without sending them");
+        discardInputMenuItem = new JRadioButtonMenuItem("Discard Inputs");
+        discardInputMenuItem.setMnemonic(VK_D);
+        discardInputMenuItem.getAccessibleContext().setAccessibleDescription(
+                "Throws away the inputs of a run, to measure the playback engine on its own");
+
+        ButtonGroup inputGroup = new ButtonGroup();
+        inputGroup.add(robotInputMenuItem);
+        inputGroup.add(recordInputMenuItem);
+        inputGroup.add(discardInputMenuItem);
+        inputMenu.add(robotInputMenuItem);
+        inputMenu.add(recordInputMenuItem);
+        inputMenu.add(discardInputMenuItem);
+        runMenu.add(inputMenu);
+
         runMenu.add(new JPopupMenu.Separator());
 
         JMenuItem stopMenuItem = new JMenuItem("Stop");
         stopMenuItem.setAccelerator(KeyStroke.getKeyStroke("control ESC"));
         stopMenuItem.addActionListener(this::stop);
         stopMenuItem.setMnemonic(VK_S);
-        stopMenuItem.getAccessibleContext().setAccessibleDescription("Stops the currently running thread");
+        stopMenuItem.getAccessibleContext().setAccessibleDescription("Stops the run that is being prepared or is running");
         runMenu.add(stopMenuItem);
 
+        JMenuItem timingMenuItem = new JMenuItem("Timing Report");
+        timingMenuItem.addActionListener(this::openTimingReport);
+        timingMenuItem.setMnemonic(VK_T);
+        timingMenuItem.getAccessibleContext().setAccessibleDescription("Shows the frame timing of the last run");
+        runMenu.add(timingMenuItem);
+
         menuBar.add(runMenu);
 
         JMenu otherMenu = new JMenu("Other");
@@ -318,7 +434,9 @@ public final class MainFrame extends JFrame {
                                 "<p>Comments, which are lines starting with <code>#</code>, are not read by the interpreter.<p><br>" +
                                 "<p>You can include other files by using an <code>INCLUDE</code> statement. Insert the <i>relative</i><br>" +
                                 "file path of the file to be included after the <code>INCLUDE</code> statement to make the interpreter<br>" +
-                                "insert the contents of that file in that position in the file while running.</p>" +
+                                "insert the contents of that file in that position in the file while running.</p><br>" +
+                                "<p>A <code>MARKER name</code> statement names the frame after it, and takes no frames itself.<br>" +
+                                "Use <i>Run From...</i> with the name of a marker to start a run there.</p>" +
                                 "</body></html>", SwingConstants.CENTER),
                 "User reference", JOptionPane.PLAIN_MESSAGE));
         referenceMenuItem.setMnemonic(VK_R);
@@ -363,7 +481,11 @@ public final class MainFrame extends JFrame {
                                         .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                                         .addComponent(frameDelayField, GroupLayout.PREFERRED_SIZE, 90, GroupLayout.PREFERRED_SIZE)
                                         .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
-                                        .addComponent(msLabel))
+                                        .addComponent(frameDelayUnitBox, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+                                        .addGap(18, 18, 18)
+                                        .addComponent(timingLabel)
+                                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED, GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                                        .addComponent(progressBar, GroupLayout.PREFERRED_SIZE, 220, GroupLayout.PREFERRED_SIZE))
                                 .addComponent(fileTabbedPane))
                         .addContainerGap())
         );
@@ -380,7 +502,9 @@ public final class MainFrame extends JFrame {
                         .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
                                 .addComponent(frameDelayLabel)
                                 .addComponent(frameDelayField, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
-                                .addComponent(msLabel))
+                                .addComponent(frameDelayUnitBox, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE)
+                                .addComponent(timingLabel)
+                                .addComponent(progressBar, GroupLayout.PREFERRED_SIZE, GroupLayout.DEFAULT_SIZE, GroupLayout.PREFERRED_SIZE))
                         .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                         .addComponent(fileTabbedPane, GroupLayout.DEFAULT_SIZE, 325, Short.MAX_VALUE)
                         .addContainerGap())
@@ -389,7 +513,12 @@ public final class MainFrame extends JFrame {
         pack();
     }// </editor-fold>
 
-    private void openWindowSelect(ActionEvent evt) {
+    /**
+     * Finds the visible windows that have a title
+     *
+     * @return a map of each window title to the location and size of the window
+     */
+    private static HashMap<String, Rectangle> findWindows() {
         List<DesktopWindow> windows = WindowUtils.getAllWindows(true);
         HashMap<String, Rectangle> map = new HashMap<>();
         for (DesktopWindow window : windows) {
@@ -399,6 +528,12 @@ public final class MainFrame extends JFrame {
             }
         }
 
+        return map;
+    }
+
+    private void openWindowSelect(ActionEvent evt) {
+        HashMap<String, Rectangle> map = findWindows();
+
         Object[] options = map.keySet().toArray();
         Object o = JOptionPane.showInputDialog(this, "Select the window to focus on", "Window Selection",
                 JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
@@ -548,53 +683,71 @@ public final class MainFrame extends JFrame {
     }
 
     private void runCircleTest(ActionEvent evt) {
-        save(evt);
-
-        File f = getSelectedTab().getFile();
-        if (f == null) {
+        BooleanSupplier save = saveLater(evt);
+        if (save == null) {
             return;
         }
+        File f = getSelectedTab().getFile();
 
         int x = Integer.parseInt(xOffsetField.getText()),
                 y = Integer.parseInt(yOffsetField.getText());
-//        SimpleInstruction.setX_OFFSET(x);
-//        SimpleInstruction.setY_OFFSET(y);
-
-        SimplePlayback playback = SimplePlayback.createPlayback(f);
-        int maxX = -1, maxY = -1;
-        for (SimpleInstruction ins : playback) {
-            HashMap<String, String> inputMap = ins.getInputMap();
-            String valX = inputMap.get("MX");
-            if (valX != null && valX.matches("\\d+")) {
-                int tempX = Integer.parseInt(valX);
-                if (tempX > maxX) {
-                    maxX = tempX;
+
+        FramePeriod period = getFramePeriod();
+        if (period == null) {
+            return;
+        }
+
+        prepare("circle test of " + f.getName(), progress -> {
+            writeSaved(save, f);
+            SimplePlayback playback = new ParallelPlaybackLoader().load(f, progress);
+
+            long frames = playback.getFrameCount(), scanned = 0;
+            int maxX = -1, maxY = -1;
+            for (SimpleInstruction ins : playback) {
+                HashMap<String, String> inputMap = ins.getInputMap();
+                String valX = inputMap.get("MX");
+                if (valX != null && valX.matches("\\d+")) {
+                    int tempX = Integer.parseInt(valX);
+                    if (tempX > maxX) {
+                        maxX = tempX;
+                    }
+                }
+
+                String valY = inputMap.get("MY");
+                if (valY != null && valY.matches("\\d+")) {
+                    int tempY = Integer.parseInt(valY);
+                    if (tempY > maxY) {
+                        maxY = tempY;
+                    }
                 }
-            }
 
-            String valY = inputMap.get("MY");
-            if (valY != null && valY.matches("\\d+")) {
-                int tempY = Integer.parseInt(valY);
-                if (tempY > maxY) {
-                    maxY = tempY;
+                if (++scanned % SCAN_PROGRESS_FRAMES == 0) {
+                    progress.progress("Scanning", scanned, frames);
                 }
             }
-        }
 
+            int width = maxX + 10, height = maxY + 10;
+            return () -> startCircleTest(playback, x, y, width, height, period);
+        });
+    }
+
+    private void startCircleTest(SimplePlayback playback, int x, int y, int width, int height, FramePeriod period) {
         Iterator<SimpleInstruction> iter = playback.iterator();
-        InputPanel inputPanel = InputPanel.displayNewInputPanel(x, y, maxX + 10, maxY + 10);
+        InputPanel inputPanel = InputPanel.displayNewInputPanel(x, y, width, height);
 
-        int frameDelay = Integer.parseInt(frameDelayField.getText());
+        FrameScheduler scheduler = new FrameScheduler(period);
         running = new Thread(() -> {
-            while (iter.hasNext()) {
-                SimpleInstruction ins = iter.next();
-                log.trace("executing instruction: {}", ins);
-                inputPanel.update(ins);
+            scheduler.start();
+            for (long frame = 0; iter.hasNext(); frame++) {
                 try {
-                    Thread.sleep(frameDelay);
+                    scheduler.awaitFrame(frame);
                 } catch (InterruptedException e) {
-                    log.warn("The sleep instruction was interrupted, continuing");
+                    log.warn("The wait for the next frame was interrupted, continuing");
                 }
+
+                SimpleInstruction ins = iter.next();
+                log.trace("executing instruction: {}", ins);
+                inputPanel.update(ins);
             }
             SwingUtilities.getWindowAncestor(inputPanel).dispose();
         }) {
@@ -609,44 +762,375 @@ public final class MainFrame extends JFrame {
     }
 
     private void run(ActionEvent evt) {
-        save(evt);
+        BooleanSupplier save = saveLater(evt);
+        if (save == null) {
+            return;
+        }
+        File file = getSelectedTab().getFile();
+
+        int x = Integer.parseInt(xOffsetField.getText()),
+                y = Integer.parseInt(yOffsetField.getText());
+
+        FramePeriod period = getFramePeriod();
+        if (period == null) {
+            return;
+        }
+
+        InputSink target;
+        try {
+            target = createInputSink();
+        } catch (AWTException e) {
+            showRobotFailure(e);
+            return;
+        }
+
+        Consumer<TimingReport> onFinish = report -> {
+            if (target instanceof RecordingInputSink) {
+                log.info("Recorded {} input events", ((RecordingInputSink) target).size());
+            }
+            SwingUtilities.invokeLater(() -> showTimingReport(report));
+        };
+        prepare("run of " + file.getName(), progress -> {
+            writeSaved(save, file);
+
+            progress.progress("Loading", 0, 0);
+            Path binary = CompiledMovieFile.pathFor(file.toPath());
+            byte[] sourceHash = null;
+            CompiledPlayback compiled = null;
+            try {
+                sourceHash = SimplePlayback.hashSource(file);
+                compiled = CompiledMovieFile.load(binary, sourceHash);
+            } catch (IOException | InvalidFileFormatException e) {
+                log.warn("Could not hash the source of " + file, e);
+            }
 
+            if (compiled != null) {
+                log.info("Reusing the compiled movie at {}", binary);
+                CompiledPlayback toRun = compiled;
+                return () -> {
+                    running = null;
+                    sessions.start(new PlaybackSession(file.getName(), toRun, target, x, y, period, onFinish));
+                };
+            }
+
+            SimplePlayback uncompiled = new ParallelPlaybackLoader().load(file, progress);
+            log.debug("Playback cache: {}", SimplePlayback.getCache());
+            PipelinedPlayback pipeline = new PipelinedPlayback(uncompiled);
+            InputSink sink = OffsetInputSink.of(target, x, y);
+            if (sourceHash == null) {
+                return () -> running = pipeline.execute(sink, period, new FrameTimingRecorder(), onFinish);
+            }
+
+            byte[] hash = sourceHash;
+            return () -> running = pipeline.execute(sink, period, new FrameTimingRecorder(),
+                    onFinish.andThen(report -> {
+                        if (report.isCompleted()) {
+                            saveCompiled(uncompiled, binary, hash);
+                        }
+                    }));
+        });
+    }
+
+    private void runOnWindows(ActionEvent evt) {
+        BooleanSupplier save = saveLater(evt);
+        if (save == null) {
+            return;
+        }
         File file = getSelectedTab().getFile();
-        if (file == null) {
+
+        HashMap<String, Rectangle> windows = findWindows();
+        JList<String> list = new JList<>(windows.keySet().toArray(new String[0]));
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        int choice = JOptionPane.showConfirmDialog(this, new JScrollPane(list), "Select the windows to run in",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION || list.isSelectionEmpty()) {
+            return;
+        }
+
+        FramePeriod period = getFramePeriod();
+        if (period == null) {
+            return;
+        }
+
+        InputSink target;
+        try {
+            target = createInputSink();
+        } catch (AWTException e) {
+            showRobotFailure(e);
+            return;
+        }
+
+        List<String> titles = list.getSelectedValuesList();
+        prepare("run of " + file.getName() + " on " + titles.size() + " window(s)", progress -> {
+            writeSaved(save, file);
+            CompiledPlayback compiled = compileForSessions(file, progress);
+
+            return () -> {
+                running = null;
+                runInTurn(compiled, target, titles.iterator(), windows, period);
+            };
+        });
+    }
+
+    /**
+     * Plays the given movie in each of the given windows, one after another.<br/>
+     * There is only one mouse and keyboard, so sessions in different windows cannot run at the same time without
+     * fighting over the cursor and the focused window. Each session starts once the one before it has played its
+     * whole movie; a session that is stopped or fails cancels the ones after it.
+     *
+     * @param compiled the movie to play
+     * @param target   the {@link InputSink} to send the inputs to
+     * @param titles   the titles of the windows that have not been played in yet
+     * @param windows  the bounds of the windows, by title
+     * @param period   the length of one frame
+     */
+    private void runInTurn(CompiledPlayback compiled, InputSink target, Iterator<String> titles,
+                           Map<String, Rectangle> windows, FramePeriod period) {
+        String title = titles.next();
+        Rectangle rect = windows.get(title);
+        log.info("Running in window {}", title);
+        sessions.start(new PlaybackSession(title, compiled, target, rect.x, rect.y, period,
+                report -> SwingUtilities.invokeLater(() -> {
+                    showTimingReport(report);
+                    if (report.isCompleted() && titles.hasNext()) {
+                        runInTurn(compiled, target, titles, windows, period);
+                    }
+                })));
+    }
+
+    private void runFrom(ActionEvent evt) {
+        BooleanSupplier save = saveLater(evt);
+        if (save == null) {
+            return;
+        }
+        File file = getSelectedTab().getFile();
+
+        prepare("markers of " + file.getName(), progress -> {
+            writeSaved(save, file);
+            Map<String, Long> markers = new ParallelPlaybackLoader().load(file, progress).getMarkers();
+
+            return () -> runFrom(file, markers);
+        });
+    }
+
+    private void runFrom(File file, Map<String, Long> markers) {
+        String message = markers.isEmpty() ? "Enter the frame to start from:"
+                : "Enter the frame or marker to start from.\nMarkers: " + String.join(", ", markers.keySet());
+        String input = JOptionPane.showInputDialog(this, message, "Run From", JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.isBlank()) {
+            return;
+        }
+        input = input.strip();
+
+        long startFrame;
+        if (markers.containsKey(input)) {
+            startFrame = markers.get(input);
+        } else {
+            try {
+                startFrame = Long.parseLong(input);
+            } catch (NumberFormatException nfe) {
+                JOptionPane.showMessageDialog(this, "\"" + input + "\" is not a frame number or marker",
+                        "Bad start", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+        }
+
+        FramePeriod period = getFramePeriod();
+        if (period == null) {
             return;
         }
 
         int x = Integer.parseInt(xOffsetField.getText()),
                 y = Integer.parseInt(yOffsetField.getText());
-        SimpleInstruction.setX_OFFSET(x);
-        SimpleInstruction.setY_OFFSET(y);
+        InputSink target;
+        try {
+            target = createInputSink();
+        } catch (AWTException e) {
+            showRobotFailure(e);
+            return;
+        }
+
+        prepare("run of " + file.getName() + " from frame " + startFrame, progress -> {
+            CompiledPlayback compiled = compileForSessions(file, progress);
+
+            return () -> {
+                if (startFrame < 0 || startFrame > compiled.getFrameCount()) {
+                    JOptionPane.showMessageDialog(this, "The frame must be between 0 and " +
+                            compiled.getFrameCount(), "Bad start", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
 
-        SimplePlayback uncompiled;
-        CompiledPlayback compiled;
+                log.info("Running {} from frame {}", file.getName(), startFrame);
+                running = null;
+                sessions.start(new PlaybackSession(file.getName(), compiled, (int) startFrame, target, x, y, period,
+                        report -> SwingUtilities.invokeLater(() -> showTimingReport(report))));
+            };
+        });
+    }
+
+    /**
+     * Loads the compiled movie of the given file, or compiles and saves it if it is missing or out of date.
+     * This is slow for a large file, so it should be called from a {@link PreparationTask}.
+     *
+     * @param file     the file to compile
+     * @param progress the {@link ProgressListener} to tell how far along loading or compiling is
+     * @return the compiled movie
+     * @throws InvalidFileFormatException if the file is badly formatted
+     * @throws NumberFormatException      if a number in the file is badly formatted
+     */
+    private CompiledPlayback compileForSessions(File file, ProgressListener progress) {
+        progress.progress("Loading", 0, 0);
+        Path binary = CompiledMovieFile.pathFor(file.toPath());
+        byte[] sourceHash = null;
         try {
-            SimplePlayback.clearCache();
-            uncompiled = SimplePlayback.createPlayback(file);
-            compiled = uncompiled.compile();
-        } catch (InvalidFileFormatException ife) {
-            JOptionPane.showMessageDialog(this, "The format of the file was incorrect:\n" + ife.getMessage(),
+            sourceHash = SimplePlayback.hashSource(file);
+            CompiledPlayback compiled = CompiledMovieFile.load(binary, sourceHash);
+            if (compiled != null) {
+                log.info("Reusing the compiled movie at {}", binary);
+                return compiled;
+            }
+        } catch (IOException e) {
+            log.warn("Could not hash the source of " + file, e);
+        }
+
+        CompiledPlayback compiled = new ParallelPlaybackLoader().load(file, progress).compile(progress);
+        progress.progress("Optimizing", 0, 0);
+        compiled = compiled.optimize();
+        if (sourceHash != null) {
+            progress.progress("Saving", 0, 0);
+            try {
+                CompiledMovieFile.write(compiled, binary, sourceHash);
+            } catch (IOException e) {
+                log.warn("Could not save the compiled movie to " + binary, e);
+            }
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Starts a {@link PreparationTask}, cancelling the one before it if it is still going
+     *
+     * @param name a description of the task, for the log
+     * @param work the work to do in the background
+     */
+    private void prepare(String name, PreparationTask.Work work) {
+        if (preparing != null) {
+            preparing.cancel(true);
+        }
+
+        preparing = new PreparationTask(name, progressBar, work, this::showPreparationError);
+        preparing.start();
+    }
+
+    /**
+     * Shows a problem that stopped a {@link PreparationTask} to the user
+     *
+     * @param t the problem
+     */
+    private void showPreparationError(Throwable t) {
+        if (t instanceof InvalidFileFormatException) {
+            JOptionPane.showMessageDialog(this, "The format of the file was incorrect:\n" + t.getMessage(),
                     "Badly formatted file", JOptionPane.WARNING_MESSAGE);
-            log.info("InvalidFileFormatException was thrown", ife);
-            return;
-        } catch (NumberFormatException nfe) {
-            JOptionPane.showMessageDialog(this, "Please check the data of the file:\n" + nfe.getMessage(),
+            log.info("InvalidFileFormatException was thrown", t);
+        } else if (t instanceof NumberFormatException) {
+            JOptionPane.showMessageDialog(this, "Please check the data of the file:\n" + t.getMessage(),
                     "Bad file data", JOptionPane.WARNING_MESSAGE);
-            log.info("NumberFormatException was thrown", nfe);
-            return;
+            log.info("NumberFormatException was thrown", t);
+        } else {
+            JOptionPane.showMessageDialog(this, "The run could not be prepared:\n" + t,
+                    "Preparation failed", JOptionPane.ERROR_MESSAGE);
+            log.error("A run could not be prepared", t);
+        }
+    }
+
+    /**
+     * Starts saving the selected tab for a {@link PreparationTask}. A tab without a file is saved through the save
+     * dialog right away.
+     *
+     * @param evt the event that started the save
+     * @return a task that writes the tab to its file, or {@code null} if the tab still has no file
+     * @see FileTab#saveLater()
+     */
+    private BooleanSupplier saveLater(ActionEvent evt) {
+        FileTab selectedTab = getSelectedTab();
+        if (selectedTab.getFile() == null) {
+            saveAs(evt);
+            return selectedTab.getFile() == null ? null : () -> true;
+        }
+
+        return selectedTab.saveLater();
+    }
+
+    /**
+     * Runs the given save task, telling the user if it failed. The run goes on with what is already in the file.
+     *
+     * @param save the task from {@link #saveLater(ActionEvent)}
+     * @param file the file that is being saved
+     */
+    private void writeSaved(BooleanSupplier save, File file) {
+        if (!save.getAsBoolean()) {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                    file.getName() + " could not be saved", "Save failed", JOptionPane.ERROR_MESSAGE));
         }
+    }
 
-        int frameDelay = Integer.parseInt(frameDelayField.getText());
+    /**
+     * Compiles the given playback and saves it as a binary movie, so that the next run can skip parsing.
+     * This is done after the playback has finished so that it does not compete with it.
+     *
+     * @param playback   the {@link SimplePlayback} to compile
+     * @param binary     the path to save the compiled movie at
+     * @param sourceHash the hash of the source of the playback
+     */
+    private void saveCompiled(SimplePlayback playback, Path binary, byte[] sourceHash) {
         try {
-            running = compiled.execute(new Robot(), frameDelay);
-        } catch (AWTException e) {
-            log.warn("An exception was thrown while creating a Robot", e);
+            CompiledMovieFile.write(playback.compile().optimize(), binary, sourceHash);
+            log.info("Saved the compiled movie to {}", binary);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save the compiled movie to " + binary, e);
         }
     }
 
+    private void showTimingReport(TimingReport report) {
+        if (report.isFailed()) {
+            JOptionPane.showMessageDialog(this, "The run stopped partway through:\n" + report.getFailure(),
+                    "Run failed", JOptionPane.ERROR_MESSAGE);
+        }
+
+        lastReport = report;
+        timingLabel.setText(String.format("Last run: %d frames, %d missed, p99 late %.3f ms",
+                report.getFrames(), report.getMissed(), report.getLateness().getP99() / 1e6));
+        timingLabel.setToolTipText("<html>Lateness: " + report.getLateness() +
+                "<br>Cost: " + report.getCost() + "</html>");
+    }
+
+    private void openTimingReport(ActionEvent evt) {
+        if (lastReport == null) {
+            JOptionPane.showMessageDialog(this, "No run has finished yet", "Timing Report",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JOptionPane.showMessageDialog(this, new JLabel(
+                        "<html><body>" +
+                                "<p>Frames executed: " + lastReport.getFrames() + "<br>" +
+                                "Frames missed: " + lastReport.getMissed() + "</p><br>" +
+                                "<p>Lateness: " + lastReport.getLateness() + "<br>" +
+                                "Cost: " + lastReport.getCost() + "</p>" +
+                                "</body></html>"),
+                "Timing Report", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    /**
+     * Returns the frame timing of the last finished run
+     *
+     * @return the {@link TimingReport} of the last finished run, or {@code null} if no run has finished yet
+     */
+    public TimingReport getLastReport() {
+        return lastReport;
+    }
+
     private void closeTab(ActionEvent evt) {
         int temp = fileTabbedPane.getSelectedIndex();
         FileTab selectedTab = getSelectedTab();
@@ -684,7 +1168,9 @@ public final class MainFrame extends JFrame {
 
     private void stop(ActionEvent evt) {
         log.info("running: {}", running);
+        if (preparing != null) preparing.cancel(true);
         if (running != null) running.interrupt();
+        sessions.stopAll();
     }
 
     private FileTab newFileTab() {
@@ -706,6 +1192,35 @@ public final class MainFrame extends JFrame {
         return tab;
     }
 
+    private InputSink createInputSink() throws AWTException {
+        if (recordInputMenuItem.isSelected()) {
+            return new RecordingInputSink();
+        } else if (discardInputMenuItem.isSelected()) {
+            return NoOpInputSink.INSTANCE;
+        } else {
+            return new RobotInputSink();
+        }
+    }
+
+    private void showRobotFailure(AWTException e) {
+        log.warn("An exception was thrown while creating a Robot", e);
+        JOptionPane.showMessageDialog(this, "Could not take control of the mouse and keyboard:\n" + e.getMessage(),
+                "Run failed", JOptionPane.ERROR_MESSAGE);
+    }
+
+    private FramePeriod getFramePeriod() {
+        try {
+            frameDelayField.commitEdit();
+            BigDecimal amount = (BigDecimal) frameDelayField.getValue();
+            return FramePeriod.of(amount, (FramePeriod.Unit) frameDelayUnitBox.getSelectedItem());
+        } catch (ParseException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Please check the frame delay:\n" + e.getMessage(),
+                    "Bad frame delay", JOptionPane.WARNING_MESSAGE);
+            log.info("The frame delay could not be read", e);
+            return null;
+        }
+    }
+
     private FileTab getSelectedTab() {
         int idx = fileTabbedPane.getSelectedIndex();
         return tabs.get(idx);
@@ -0,0 +1,180 @@
+package com.github.leftisttachyon.gui;
+
+import com.github.leftisttachyon.input.ProgressListener;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * A task that gets a run ready, such as by saving, parsing and compiling the file to run, without freezing the
+ * interface.<br/>
+ * The work is done off the event dispatch thread and shows its progress on a {@link JProgressBar}. It returns what to
+ * do once it is done, which is then run on the event dispatch thread; anything it throws is given to an error handler
+ * there instead. Cancelling the task makes the next progress report throw a {@link CancellationException}, which
+ * stops the work wherever it is, even on other threads.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+class PreparationTask extends SwingWorker<Runnable, PreparationTask.Progress> implements ProgressListener {
+    /**
+     * A description of this task, for the log
+     */
+    @Getter
+    private final String name;
+    /**
+     * The {@link JProgressBar} to show the progress on
+     */
+    private final JProgressBar progressBar;
+    /**
+     * The work to do in the background
+     */
+    private final Work work;
+    /**
+     * Told about anything that the work throws, on the event dispatch thread
+     */
+    private final Consumer<Throwable> onError;
+
+    /**
+     * Creates a new {@link PreparationTask}
+     *
+     * @param name        a description of the task, for the log
+     * @param progressBar the {@link JProgressBar} to show the progress on
+     * @param work        the work to do in the background
+     * @param onError     told about anything that the work throws, on the event dispatch thread
+     */
+    PreparationTask(String name, JProgressBar progressBar, Work work, Consumer<Throwable> onError) {
+        this.name = name;
+        this.progressBar = progressBar;
+        this.work = work;
+        this.onError = onError;
+    }
+
+    /**
+     * Shows the progress bar and starts the work. This must be called on the event dispatch thread.
+     */
+    void start() {
+        log.info("Preparing {}", name);
+        progressBar.setIndeterminate(true);
+        progressBar.setString("Preparing");
+        progressBar.setVisible(true);
+        execute();
+    }
+
+    @Override
+    protected Runnable doInBackground() throws Exception {
+        return work.prepare(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CancellationException if this task has been cancelled
+     */
+    @Override
+    public void progress(String stage, long done, long total) {
+        if (isCancelled()) {
+            throw new CancellationException(name + " was cancelled");
+        }
+
+        publish(new Progress(stage, done, total));
+    }
+
+    @Override
+    protected void process(List<Progress> chunks) {
+        if (isDone()) {
+            return;
+        }
+
+        Progress last = chunks.get(chunks.size() - 1);
+        if (last.total <= 0) {
+            progressBar.setIndeterminate(true);
+            progressBar.setString(last.stage);
+        } else {
+            progressBar.setIndeterminate(false);
+            progressBar.setMaximum(1000);
+            progressBar.setValue((int) (1000 * Math.min(last.done, last.total) / last.total));
+            progressBar.setString(String.format("%s %,d / %,d", last.stage, last.done, last.total));
+        }
+    }
+
+    @Override
+    protected void done() {
+        progressBar.setVisible(false);
+        if (isCancelled()) {
+            log.info("{} was cancelled", name);
+            return;
+        }
+
+        Runnable then;
+        try {
+            then = get();
+        } catch (InterruptedException e) {
+            log.warn("Interrupted while getting the result of " + name, e);
+            return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                log.info("{} was cancelled", name);
+            } else {
+                onError.accept(e.getCause());
+            }
+            return;
+        }
+
+        log.info("Prepared {}", name);
+        then.run();
+    }
+
+    /**
+     * The work of a {@link PreparationTask}
+     */
+    @FunctionalInterface
+    interface Work {
+        /**
+         * Does the work, off the event dispatch thread
+         *
+         * @param progress the {@link ProgressListener} to report progress to, which throws a
+         *                 {@link CancellationException} once the task has been cancelled
+         * @return what to do once the work is done, which is run on the event dispatch thread
+         * @throws Exception if the work fails
+         */
+        Runnable prepare(ProgressListener progress) throws Exception;
+    }
+
+    /**
+     * One progress report
+     */
+    static final class Progress {
+        /**
+         * What the task is doing
+         */
+        private final String stage;
+        /**
+         * How much of the stage is done
+         */
+        private final long done;
+        /**
+         * How much there is to do in the stage, or {@code 0} if it is not known
+         */
+        private final long total;
+
+        /**
+         * Creates a new {@link Progress}
+         *
+         * @param stage what the task is doing
+         * @param done  how much of the stage is done
+         * @param total how much there is to do in the stage, or {@code 0} if it is not known
+         */
+        private Progress(String stage, long done, long total) {
+            this.stage = stage;
+            this.done = done;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.leftisttachyon.input;
+
+import com.github.leftisttachyon.input.compiled.EventTape;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A {@link PlaybackNode} that holds a run of consecutive plain instruction lines.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+class BlockNode extends PlaybackNode {
+    /**
+     * The instructions in this block, in order
+     */
+    private final ArrayList<SimpleInstruction> instructions;
+
+    /**
+     * Creates a new {@link BlockNode}
+     *
+     * @param instructions the instructions in this block, in order
+     */
+    BlockNode(List<SimpleInstruction> instructions) {
+        this.instructions = new ArrayList<>(instructions);
+    }
+
+    @Override
+    protected long countFrames() {
+        return instructions.size();
+    }
+
+    @Override
+    void forEachInstruction(Consumer<SimpleInstruction> action) {
+        instructions.forEach(action);
+    }
+
+    @Override
+    void collectMarkers(long offset, Map<String, Long> markers) {
+    }
+
+    @Override
+    Iterator<SimpleInstruction> iterator(long start) {
+        return instructions.listIterator((int) start);
+    }
+
+    @Override
+    void compileFrames(SimpleInstruction preceding, EventTape.Builder tape, Map<PlaybackNode, EventTape> compiled) {
+        SimpleInstruction prev = preceding;
+        for (SimpleInstruction curr : instructions) {
+            tape.append(curr.compile(prev));
+            prev = curr;
+        }
+    }
+
+    @Override
+    PlaybackNode relinkChildren(Map<PlaybackNode, PlaybackNode> replacements) {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return instructions.toString();
+    }
+}
@@ -0,0 +1,444 @@
+package com.github.leftisttachyon.input;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.awt.event.KeyEvent.*;
+
+/**
+ * The set of columns that a group of {@link SimpleInstruction}s share.<br/>
+ * What every column does, such as the key code of a {@code K} column or the button mask of an {@code M} column, is
+ * worked out once when the schema is created. Each column also interns the values that appear in it, so an
+ * instruction only has to store one {@code char} code per column, and whether a value is an input and what number it
+ * stands for are looked up by code instead of being worked out again on every frame.<br/>
+ * Each parsed file has its own schema, with the columns in the order its format declares them, so the values it
+ * interns are dropped along with the file. Instructions from an included file that has the same columns, in any
+ * order, can still be compared with those of the file that includes it; see {@link #hasSameColumns(ColumnSchema)}.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public final class ColumnSchema {
+    /**
+     * The names of the columns, in the order they were declared
+     */
+    @Getter
+    private final List<String> names;
+    /**
+     * The names of the columns, for comparing with other schemas
+     */
+    private final Set<String> nameSet;
+    /**
+     * The columns, in the same order as {@link #names}
+     */
+    private final Column[] columns;
+    /**
+     * The index of the {@code MX} column, or -1 if there is none
+     */
+    @Getter
+    private final int mouseXIndex;
+    /**
+     * The index of the {@code MY} column, or -1 if there is none
+     */
+    @Getter
+    private final int mouseYIndex;
+
+    /**
+     * Creates a new {@link ColumnSchema}
+     *
+     * @param names the names of the columns, in the order they were declared
+     */
+    private ColumnSchema(List<String> names) {
+        this.names = names;
+        nameSet = Set.copyOf(names);
+        columns = new Column[names.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new Column(names.get(i));
+        }
+
+        mouseXIndex = names.indexOf("MX");
+        mouseYIndex = names.indexOf("MY");
+    }
+
+    /**
+     * Creates a new schema with the given columns
+     *
+     * @param names the names of the columns, in the order they were declared
+     * @return a {@link ColumnSchema} with the given columns
+     * @throws InvalidFileFormatException if a column is repeated or is not a known kind of column
+     */
+    public static ColumnSchema of(List<String> names) {
+        HashSet<String> seen = new HashSet<>();
+        for (String name : names) {
+            if (!seen.add(name)) {
+                throw new InvalidFileFormatException("Repeated column: " + name);
+            }
+        }
+
+        List<String> copy = List.copyOf(names);
+        log.trace("Created a schema for {}", copy);
+        return new ColumnSchema(copy);
+    }
+
+    /**
+     * Determines whether the given schema has the same columns as this one, in any order, so that instructions of
+     * the two can follow each other
+     *
+     * @param other the schema to compare with
+     * @return whether the given schema has the same columns as this one
+     */
+    public boolean hasSameColumns(ColumnSchema other) {
+        return other == this || nameSet.equals(other.nameSet);
+    }
+
+    /**
+     * Returns the number of columns in this schema
+     *
+     * @return the number of columns in this schema
+     */
+    public int size() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the index of the column with the given name
+     *
+     * @param name the name of the column
+     * @return the index of the column with the given name, or -1 if there is none
+     */
+    public int indexOf(String name) {
+        return names.indexOf(name);
+    }
+
+    /**
+     * Returns the column at the given index
+     *
+     * @param index the index of the column
+     * @return the {@link Column} at the given index
+     */
+    public Column getColumn(int index) {
+        return columns[index];
+    }
+
+    /**
+     * The kinds of columns there are
+     */
+    public enum Kind {
+        /**
+         * The x-coordinate of the mouse, {@code MX}
+         */
+        MOUSE_X,
+        /**
+         * The y-coordinate of the mouse, {@code MY}
+         */
+        MOUSE_Y,
+        /**
+         * A mouse button, {@code M<button-number>}
+         */
+        MOUSE_BUTTON,
+        /**
+         * A keyboard key, {@code K<key>}
+         */
+        KEY
+    }
+
+    /**
+     * One column of a {@link ColumnSchema}, along with the values that have appeared in it.<br/>
+     * Values are only ever added, so a code handed out by {@link #intern(String)} stays valid for as long as the
+     * schema.
+     */
+    public static final class Column {
+        /**
+         * The largest number of distinct values one column can hold
+         */
+        private static final int MAX_VALUES = Character.MAX_VALUE + 1;
+
+        /**
+         * The name of this column
+         */
+        @Getter
+        private final String name;
+        /**
+         * What kind of column this is
+         */
+        @Getter
+        private final Kind kind;
+        /**
+         * The key code of a {@link Kind#KEY} column, or the button mask of a {@link Kind#MOUSE_BUTTON} column
+         */
+        @Getter
+        private final int code;
+        /**
+         * The code of each value, by value. A value is only put in here once its {@link Snapshot} is published, so
+         * parsers on different threads can look values up without locking.
+         */
+        private final ConcurrentHashMap<String, Character> codes = new ConcurrentHashMap<>();
+        /**
+         * The values of this column and what was worked out about them. Readers do not lock, so adding a value
+         * publishes a new snapshot through this one field instead of changing arrays that readers may be using.
+         */
+        private volatile Snapshot snapshot = new Snapshot(8);
+
+        /**
+         * Creates a new {@link Column}
+         *
+         * @param name the name of the column
+         * @throws InvalidFileFormatException if the name is not a known kind of column
+         */
+        private Column(String name) {
+            this.name = name;
+            if ("MX".equals(name)) {
+                kind = Kind.MOUSE_X;
+                code = 0;
+            } else if ("MY".equals(name)) {
+                kind = Kind.MOUSE_Y;
+                code = 0;
+            } else if (name.startsWith("K")) {
+                kind = Kind.KEY;
+                code = getKeyCode(name.substring(1));
+            } else if (name.startsWith("M")) {
+                kind = Kind.MOUSE_BUTTON;
+                try {
+                    code = getButtonMask(Integer.parseInt(name.substring(1)));
+                } catch (NumberFormatException nfe) {
+                    throw new InvalidFileFormatException("Unknown instruction key: " + name, nfe);
+                }
+            } else {
+                throw new InvalidFileFormatException("Unknown instruction key: " + name);
+            }
+        }
+
+        /**
+         * Returns the code of the given value, adding it to this column if it has not appeared before
+         *
+         * @param value the value
+         * @return the code of the given value
+         * @throws InvalidFileFormatException if this column already holds too many distinct values
+         */
+        public char intern(String value) {
+            Character existing = codes.get(value);
+            return existing != null ? existing : add(value);
+        }
+
+        /**
+         * Adds the given value to this column, unless another thread just added it
+         *
+         * @param value the value
+         * @return the code of the given value
+         * @throws InvalidFileFormatException if this column already holds too many distinct values
+         */
+        private synchronized char add(String value) {
+            Character existing = codes.get(value);
+            if (existing != null) {
+                return existing;
+            }
+
+            Snapshot current = snapshot;
+            if (current.size == MAX_VALUES) {
+                throw new InvalidFileFormatException("Too many distinct values in column " + name);
+            }
+
+            char output = (char) current.size;
+            snapshot = current.append(value);
+            codes.put(value, output);
+            return output;
+        }
+
+        /**
+         * Returns the value of the given code
+         *
+         * @param code the code
+         * @return the value of the given code
+         */
+        public String getValue(char code) {
+            return snapshot.values[code];
+        }
+
+        /**
+         * Returns whether the value of the given code is an input
+         *
+         * @param code the code
+         * @return whether the value of the given code is an input
+         */
+        public boolean isInput(char code) {
+            return snapshot.inputs[code];
+        }
+
+        /**
+         * Returns the number that the value of the given code stands for
+         *
+         * @param code the code
+         * @return the number that the value of the given code stands for
+         * @throws NumberFormatException if the value is not a number
+         */
+        public int getNumber(char code) {
+            Snapshot current = snapshot;
+            if (!current.numeric[code]) {
+                throw new NumberFormatException("For input string: \"" + current.values[code] + "\" in column "
+                        + name);
+            }
+
+            return current.numbers[code];
+        }
+
+        /**
+         * From the given mouse button number, determines and returns the button mask
+         *
+         * @param button the number of the mouse button, from 1 to 3
+         * @return the associated button mask, or 0 if there is none
+         */
+        private static int getButtonMask(int button) {
+            switch (button) {
+                case 1:
+                    return MouseEvent.BUTTON1_DOWN_MASK;
+                case 2:
+                    return MouseEvent.BUTTON2_DOWN_MASK;
+                case 3:
+                    return MouseEvent.BUTTON3_DOWN_MASK;
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * From the given word representation of a key, determines and returns the keycode
+         *
+         * @param key the word representation of a key
+         * @return the associated keycode
+         * @throws InvalidFileFormatException if the key is not known
+         */
+        private static int getKeyCode(String key) {
+            switch (key) {
+                case "SHIFT":
+                    return VK_SHIFT;
+                case "TAB":
+                    return VK_TAB;
+                case "CTRL":
+                    return VK_CONTROL;
+                case "ALT":
+                    return VK_ALT;
+                case "BACKSPACE":
+                    return VK_BACK_SPACE;
+                case "INSERT":
+                    return VK_INSERT;
+                case "DELETE":
+                    return VK_DELETE;
+                case "UP":
+                    return VK_UP;
+                case "LEFT":
+                    return VK_LEFT;
+                case "DOWN":
+                    return VK_DOWN;
+                case "RIGHT":
+                    return VK_RIGHT;
+                case "ENTER":
+                    return VK_ENTER;
+                default:
+                    if (key.length() == 1) {
+                        char c = key.charAt(0);
+                        int keyCode = KeyEvent.getExtendedKeyCodeForChar(c);
+                        if (keyCode == VK_UNDEFINED) {
+                            throw new InvalidFileFormatException("Unknown instruction key: K" + key);
+                        } else {
+                            return keyCode;
+                        }
+                    } else {
+                        throw new InvalidFileFormatException("Unknown instruction key: K" + key);
+                    }
+            }
+        }
+
+        /**
+         * The values of a {@link Column} up to some point. The first {@link #size} entries of its arrays are never
+         * changed once the snapshot is published; {@link #append(String)} only writes past them.
+         */
+        private static final class Snapshot {
+            /**
+             * The value of each code
+             */
+            private final String[] values;
+            /**
+             * Whether the value of each code is an input
+             */
+            private final boolean[] inputs;
+            /**
+             * The number that the value of each code stands for, if it is a number
+             */
+            private final int[] numbers;
+            /**
+             * Whether the value of each code is a number
+             */
+            private final boolean[] numeric;
+            /**
+             * The number of values
+             */
+            private final int size;
+
+            /**
+             * Creates a new, empty {@link Snapshot}
+             *
+             * @param capacity the number of values that can be added before the arrays have to grow
+             */
+            private Snapshot(int capacity) {
+                this(new String[capacity], new boolean[capacity], new int[capacity], new boolean[capacity], 0);
+            }
+
+            /**
+             * Creates a new {@link Snapshot}
+             *
+             * @param values  the value of each code
+             * @param inputs  whether the value of each code is an input
+             * @param numbers the number that the value of each code stands for
+             * @param numeric whether the value of each code is a number
+             * @param size    the number of values
+             */
+            private Snapshot(String[] values, boolean[] inputs, int[] numbers, boolean[] numeric, int size) {
+                this.values = values;
+                this.inputs = inputs;
+                this.numbers = numbers;
+                this.numeric = numeric;
+                this.size = size;
+            }
+
+            /**
+             * Returns a snapshot with the given value added after the values of this one. The arrays are shared
+             * while they have room, and copied when they have to grow.
+             *
+             * @param value the value to add
+             * @return a {@link Snapshot} with one more value
+             */
+            private Snapshot append(String value) {
+                String[] values = this.values;
+                boolean[] inputs = this.inputs, numeric = this.numeric;
+                int[] numbers = this.numbers;
+                if (size == values.length) {
+                    int length = Math.min(size * 2, MAX_VALUES);
+                    values = Arrays.copyOf(values, length);
+                    inputs = Arrays.copyOf(inputs, length);
+                    numbers = Arrays.copyOf(numbers, length);
+                    numeric = Arrays.copyOf(numeric, length);
+                }
+
+                values[size] = value;
+                inputs[size] = SimpleInstruction.isInput(value);
+                try {
+                    numbers[size] = Integer.parseInt(value);
+                    numeric[size] = true;
+                } catch (NumberFormatException nfe) {
+                    numeric[size] = false;
+                }
+
+                return new Snapshot(values, inputs, numbers, numeric, size + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.github.leftisttachyon.input;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * A class that watches directories for files being created, changed or deleted, so that caches of those files can be
+ * trusted until they are told otherwise instead of checking the disk every time they are used.<br/>
+ * A daemon thread waits on a {@link WatchService} and tells every {@link Listener} which files changed. If the
+ * operating system dropped events, the listeners are told that anything in the directory may have changed. A
+ * directory that cannot be watched is reported by {@link #watch(Path)}; caches should keep checking the disk for the
+ * files in it. A directory stays watched until {@link #release(Path)} finds that no listener uses it any more.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public final class FileWatcher {
+    /**
+     * The shared instance
+     */
+    private static final FileWatcher INSTANCE = new FileWatcher();
+
+    /**
+     * The {@link WatchService} to wait on, or {@code null} if files cannot be watched
+     */
+    private final WatchService service;
+    /**
+     * The directories being watched, by absolute, normalized path
+     */
+    private final ConcurrentHashMap<Path, WatchKey> directories = new ConcurrentHashMap<>();
+    /**
+     * The listeners to tell about changes
+     */
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns the shared instance
+     *
+     * @return the shared {@link FileWatcher}
+     */
+    public static FileWatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a new {@link FileWatcher} and starts its thread
+     */
+    private FileWatcher() {
+        WatchService watchService = null;
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Could not watch files, so caches will check the disk instead", e);
+        }
+        service = watchService;
+
+        if (service != null) {
+            Thread thread = new Thread(this::run, "file-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Starts telling the given listener about changes. Listeners are held until they are removed.
+     *
+     * @param listener the {@link Listener} to tell
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops telling the given listener about changes
+     *
+     * @param listener the {@link Listener} to stop telling
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the given directory, if it is not watched already
+     *
+     * @param directory the directory to watch
+     * @return whether the directory is being watched, so that changes to the files in it will be reported
+     */
+    public synchronized boolean watch(Path directory) {
+        if (service == null || directory == null) {
+            return false;
+        }
+
+        Path path = directory.toAbsolutePath().normalize();
+        if (directories.containsKey(path)) {
+            return true;
+        }
+
+        WatchKey key;
+        try {
+            key = path.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+        } catch (IOException | ClosedWatchServiceException e) {
+            log.debug("Could not watch {}: {}", path, e.toString());
+            return false;
+        }
+        if (!path.equals(key.watchable())) {
+            // the same directory is already watched through another path, which events would be reported under
+            log.debug("{} is already watched as {}", path, key.watchable());
+            return false;
+        }
+
+        if (directories.putIfAbsent(path, key) == null) {
+            log.debug("Watching {}", path);
+        }
+        return true;
+    }
+
+    /**
+     * Stops watching the given directory if no listener uses it any more. The listeners are told that anything in
+     * it may have changed, so that a file that was being checked while the directory was released is not trusted.
+     *
+     * @param directory the directory that the caller no longer has files in
+     */
+    public void release(Path directory) {
+        if (directory == null) {
+            return;
+        }
+
+        Path path = directory.toAbsolutePath().normalize();
+        synchronized (this) {
+            WatchKey key = directories.get(path);
+            if (key == null) {
+                return;
+            }
+            for (Listener listener : listeners) {
+                if (listener.isUsing(path)) {
+                    return;
+                }
+            }
+
+            directories.remove(path, key);
+            key.cancel();
+        }
+
+        log.debug("Stopped watching {}", path);
+        fire(changed -> path.equals(changed.getParent()));
+    }
+
+    /**
+     * Determines whether the given directory is being watched
+     *
+     * @param directory the directory to check
+     * @return whether changes to the files in the directory will be reported
+     */
+    public boolean isWatching(Path directory) {
+        return directory != null && directories.containsKey(directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Tells the listeners right away that this program wrote the given file, instead of waiting for the operating
+     * system to report it, so that nothing uses a stale cache of it in between
+     *
+     * @param file the file that was written
+     */
+    public void written(Path file) {
+        Path path;
+        try {
+            path = file.toRealPath();
+        } catch (IOException e) {
+            path = file.toAbsolutePath().normalize();
+        }
+
+        Path absolute = file.toAbsolutePath().normalize(), real = path;
+        fire(changed -> changed.equals(real) || changed.equals(absolute));
+    }
+
+    /**
+     * Waits for changes and tells the listeners about them, until the {@link WatchService} is closed
+     */
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                log.debug("Stopped watching files");
+                return;
+            }
+
+            Path directory = (Path) key.watchable();
+            HashSet<Path> files = new HashSet<>();
+            boolean overflowed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    overflowed = true;
+                } else {
+                    files.add(directory.resolve((Path) event.context()));
+                }
+            }
+
+            if (!key.reset()) {
+                directories.remove(directory, key);
+                log.debug("{} can no longer be watched", directory);
+                overflowed = true;
+            }
+
+            if (overflowed) {
+                log.debug("Anything in {} may have changed", directory);
+                fire(path -> directory.equals(path.getParent()));
+            } else if (!files.isEmpty()) {
+                log.debug("Changed: {}", files);
+                fire(files::contains);
+            }
+        }
+    }
+
+    /**
+     * Tells every listener about a change
+     *
+     * @param changed tests whether a file may have changed
+     */
+    private void fire(Predicate<Path> changed) {
+        for (Listener listener : listeners) {
+            try {
+                listener.filesChanged(changed);
+            } catch (RuntimeException e) {
+                log.warn("A listener failed to handle a change", e);
+            }
+        }
+    }
+
+    /**
+     * A listener that is told when files in watched directories change.<br/>
+     * It is called on the thread of the {@link FileWatcher}, so it should only note what changed and return quickly.
+     */
+    public interface Listener {
+        /**
+         * Tells this listener that some files may have changed
+         *
+         * @param changed tests whether the file at an absolute, normalized path may have changed
+         */
+        void filesChanged(Predicate<Path> changed);
+
+        /**
+         * Determines whether this listener still relies on changes to the given directory being reported. This is
+         * called while the {@link FileWatcher} is locked, so it must not wait for anything.
+         *
+         * @param directory the absolute, normalized path of the directory
+         * @return whether this listener has files in the directory
+         */
+        boolean isUsing(Path directory);
+    }
+}
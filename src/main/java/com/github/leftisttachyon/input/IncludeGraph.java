@@ -0,0 +1,122 @@
+package com.github.leftisttachyon.input;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The {@code INCLUDE} dependency graph of the files that have been read: which files each file includes, and which
+ * files include it.<br/>
+ * The graph is filled in as files are parsed or counted, and is kept when their cached results are dropped, so that a
+ * change to any file can be traced to everything that depends on it. It is safe to use from several threads.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public final class IncludeGraph {
+    /**
+     * The files that each file includes, in order, with repeats
+     */
+    private final HashMap<Path, List<Path>> includes = new HashMap<>();
+    /**
+     * The files that directly include each file
+     */
+    private final HashMap<Path, Set<Path>> dependents = new HashMap<>();
+
+    /**
+     * Records the files that the given file includes, replacing what was recorded before
+     *
+     * @param file     the file that was read
+     * @param included the files that it includes, in order
+     */
+    public synchronized void setIncludes(Path file, List<Path> included) {
+        List<Path> old = includes.put(file, List.copyOf(included));
+        if (old != null) {
+            for (Path include : old) {
+                Set<Path> set = dependents.get(include);
+                if (set != null) {
+                    set.remove(file);
+                }
+            }
+        }
+
+        for (Path include : included) {
+            dependents.computeIfAbsent(include, key -> new HashSet<>()).add(file);
+        }
+    }
+
+    /**
+     * Returns the files that the given file includes
+     *
+     * @param file the file to look up
+     * @return the files that it includes, in order, or {@code null} if the file has not been read
+     */
+    public synchronized List<Path> getIncludes(Path file) {
+        return includes.get(file);
+    }
+
+    /**
+     * Returns the files that directly include the given file
+     *
+     * @param file the file to look up
+     * @return the files that directly include it
+     */
+    public synchronized Set<Path> getDependents(Path file) {
+        Set<Path> set = dependents.get(file);
+        return set == null ? Set.of() : Collections.unmodifiableSet(new HashSet<>(set));
+    }
+
+    /**
+     * Finds the files in this graph that may have changed, along with every file that includes one of them, directly
+     * or not
+     *
+     * @param changed tests whether a file may have changed
+     * @return the files that changed or depend on a file that changed
+     */
+    public synchronized Set<Path> affectedBy(Predicate<Path> changed) {
+        HashSet<Path> output = new HashSet<>();
+        ArrayDeque<Path> queue = new ArrayDeque<>();
+        for (Path file : includes.keySet()) {
+            if (changed.test(file) && output.add(file)) {
+                queue.add(file);
+            }
+        }
+        for (Path file : dependents.keySet()) {
+            if (changed.test(file) && output.add(file)) {
+                queue.add(file);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            for (Path dependent : dependents.getOrDefault(queue.poll(), Set.of())) {
+                if (output.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Returns the number of files that have been read
+     *
+     * @return the number of files that have been read
+     */
+    public synchronized int size() {
+        return includes.size();
+    }
+
+    /**
+     * Forgets every file
+     */
+    public synchronized void clear() {
+        includes.clear();
+        dependents.clear();
+    }
+}
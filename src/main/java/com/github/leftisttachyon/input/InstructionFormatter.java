@@ -1,16 +1,19 @@
 package com.github.leftisttachyon.input;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * A class that parses formatted instructions.<br />
  * For keyboard inputs, use the format {@code K&lt;character&gt;}.<br />
- * For mouse inputs, use the format {@code M&lt;button-number&gt;}.
+ * For mouse inputs, use the format {@code M&lt;button-number&gt;}.<br />
+ * The format is compiled once into the literal separators between its columns, and lines are split on those
+ * separators directly, without any regular expressions. Each column value is one or more letters, digits,
+ * underscores, hyphens or periods and ends at the first place where the next separator follows.
  *
  * @author Jed Wang
  * @since 1.0.0
@@ -20,36 +23,166 @@ public class InstructionFormatter {
     /**
      * The format to use for this InstructionFormatter
      */
-    public final Pattern format;
+    @Getter
+    private final String format;
     /**
-     * The list of names of the capturing groups
+     * The list of names of the columns, in order
      */
-    private final ArrayList<String> names;
+    private final List<String> names;
+    /**
+     * The literal text around the columns: the text before the first column, the text between each pair of columns
+     * and the text after the last column
+     */
+    private final String[] separators;
+    /**
+     * The {@link ColumnSchema} of the instructions this formatter parses, whose columns are in the same order as
+     * {@link #names}
+     */
+    @Getter
+    private final ColumnSchema schema;
+    /**
+     * The array that {@link #parse(String)} splits lines into
+     */
+    private final String[] tokens;
 
     /**
      * Creates a new InstructionFormatter
      *
      * @param format the format to use
+     * @throws InvalidFileFormatException if the format has a repeated or unknown column
      */
     public InstructionFormatter(final String format) {
-        names = new ArrayList<>();
-
-        Matcher m = Pattern.compile("<[A-Za-z0-9]+?>").matcher(format);
-        StringBuilder regex = new StringBuilder();
-        int prev;
-        for (prev = 0; m.find(); prev = m.end()) {
-            regex.append(format, prev, m.start());
-            regex.append("(?");
-            regex.append(format, m.start(), m.end());
-            regex.append("[\\w-\\.]+?)");
-
-            names.add(format.substring(m.start() + 1, m.end() - 1));
+        this.format = format;
+
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> separators = new ArrayList<>();
+        int prev = 0;
+        for (int i = format.indexOf('<'); i != -1; i = format.indexOf('<', i + 1)) {
+            int end = i + 1;
+            while (end < format.length() && isNameChar(format.charAt(end))) {
+                end++;
+            }
+            if (end == i + 1 || end == format.length() || format.charAt(end) != '>') {
+                continue;
+            }
+
+            separators.add(format.substring(prev, i));
+            names.add(format.substring(i + 1, end));
+            prev = end + 1;
+            i = end;
         }
-        regex.append(format.substring(prev));
-        regex.append("\\s*");
+        separators.add(format.substring(prev));
+
+        this.names = Collections.unmodifiableList(names);
+        this.separators = separators.toArray(new String[0]);
+
+        schema = ColumnSchema.of(names);
+        tokens = new String[names.size()];
+        log.trace("Columns for \"{}\": {}", format, names);
+    }
 
-        log.trace("Regex format for \"{}\": \"{}\"", format, regex);
-        this.format = Pattern.compile(regex.toString());
+    /**
+     * Determines whether the given character can be part of a column name
+     *
+     * @param c the character to check
+     * @return whether the given character can be part of a column name
+     */
+    private static boolean isNameChar(char c) {
+        return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9';
+    }
+
+    /**
+     * Determines whether the given character can be part of a column value
+     *
+     * @param c the character to check
+     * @return whether the given character can be part of a column value
+     */
+    private static boolean isValueChar(char c) {
+        return isNameChar(c) || c == '_' || c == '-' || c == '.';
+    }
+
+    /**
+     * Determines whether the given character is whitespace that may trail a line
+     *
+     * @param c the character to check
+     * @return whether the given character is whitespace that may trail a line
+     */
+    private static boolean isTrailingSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Returns the names of the columns of this format, in order
+     *
+     * @return an unmodifiable {@link List} of the names of the columns
+     */
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    /**
+     * Returns the number of columns in this format
+     *
+     * @return the number of columns in this format
+     */
+    public int getColumnCount() {
+        return names.size();
+    }
+
+    /**
+     * Splits the given line into its column values.
+     *
+     * @param line   the line to split
+     * @param values the array to put the value of each column in, by index, which must be at least
+     *               {@link #getColumnCount()} long
+     * @return whether the given line matches this object's format; if not, the contents of {@code values} are
+     * unspecified
+     */
+    public boolean tokenize(String line, String[] values) {
+        String prefix = separators[0];
+        if (!line.startsWith(prefix)) {
+            return false;
+        }
+
+        int pos = prefix.length(), len = line.length(), columns = names.size();
+        for (int i = 0; i < columns; i++) {
+            String next = separators[i + 1];
+            boolean last = i == columns - 1;
+
+            int end = pos, found = -1;
+            while (end < len && isValueChar(line.charAt(end))) {
+                end++;
+                if (line.startsWith(next, end) && (!last || isBlank(line, end + next.length()))) {
+                    found = end;
+                    break;
+                }
+            }
+            if (found == -1) {
+                return false;
+            }
+
+            values[i] = line.substring(pos, found);
+            pos = found + next.length();
+        }
+
+        return columns != 0 || isBlank(line, pos);
+    }
+
+    /**
+     * Determines whether the given line only has trailing whitespace from the given index onward
+     *
+     * @param line  the line to check
+     * @param start the index to check from
+     * @return whether the given line only has trailing whitespace from the given index onward
+     */
+    private static boolean isBlank(String line, int start) {
+        for (int i = start, len = line.length(); i < len; i++) {
+            if (!isTrailingSpace(line.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -59,7 +192,7 @@ public class InstructionFormatter {
      * @return whether the given input line matches this object's format
      */
     public boolean matches(String line) {
-        return format.matcher(line).matches();
+        return tokenize(line, new String[names.size()]);
     }
 
     /**
@@ -70,17 +203,15 @@ public class InstructionFormatter {
      * is returned.
      */
     public SimpleInstruction parse(String line) {
-        Matcher matcher = format.matcher(line);
-
-        if (!matcher.matches()) {
+        if (!tokenize(line, tokens)) {
             return null;
         }
 
-        HashMap<String, String> inputMap = new HashMap<>();
-        for (String s : names) {
-            inputMap.put(s, matcher.group(s));
+        char[] codes = new char[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            codes[i] = schema.getColumn(i).intern(tokens[i]);
         }
 
-        return new SimpleInstruction(inputMap);
+        return new SimpleInstruction(schema, codes);
     }
 }
@@ -19,4 +19,24 @@ public class InvalidFileFormatException extends RuntimeException {
     public InvalidFileFormatException(String message) {
         super(message);
     }
+
+    /**
+     * Creates a new InvalidFileException
+     *
+     * @param message the message
+     * @param cause   the cause
+     */
+    public InvalidFileFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * Creates a new InvalidFileException with the same message as the given cause. This is what lets the exception
+     * keep its message when it is rethrown on another thread, for example by a {@link java.util.concurrent.ForkJoinTask}.
+     *
+     * @param cause the cause
+     */
+    public InvalidFileFormatException(Throwable cause) {
+        super(cause.getMessage(), cause);
+    }
 }
@@ -0,0 +1,66 @@
+package com.github.leftisttachyon.input;
+
+import com.github.leftisttachyon.input.compiled.EventTape;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A {@link PlaybackNode} for a {@code MARKER} line, which names the frame after it so that playback can be started
+ * there. It has no frames of its own.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+class MarkerNode extends PlaybackNode {
+    /**
+     * The name of the marker
+     */
+    @Getter
+    private final String name;
+
+    /**
+     * Creates a new {@link MarkerNode}
+     *
+     * @param name the name of the marker
+     */
+    MarkerNode(String name) {
+        this.name = name;
+    }
+
+    @Override
+    protected long countFrames() {
+        return 0;
+    }
+
+    @Override
+    void forEachInstruction(Consumer<SimpleInstruction> action) {
+    }
+
+    @Override
+    void collectMarkers(long offset, Map<String, Long> markers) {
+        markers.putIfAbsent(name, offset);
+    }
+
+    @Override
+    Iterator<SimpleInstruction> iterator(long start) {
+        return Collections.emptyIterator();
+    }
+
+    @Override
+    void compileFrames(SimpleInstruction preceding, EventTape.Builder tape, Map<PlaybackNode, EventTape> compiled) {
+    }
+
+    @Override
+    PlaybackNode relinkChildren(Map<PlaybackNode, PlaybackNode> replacements) {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "MARKER " + name;
+    }
+}
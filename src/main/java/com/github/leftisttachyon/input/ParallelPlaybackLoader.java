@@ -0,0 +1,248 @@
+package com.github.leftisttachyon.input;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * A class that loads a playback and all of the files it includes in parallel.<br/>
+ * The {@code INCLUDE} lines of every file are scanned first, without parsing anything, to find the whole include
+ * graph and to reject cycles. Then each file is parsed by its own task on a {@link ForkJoinPool}: a task starts the
+ * tasks of the files it includes, waits for them, and then parses its own file, which picks the already parsed
+ * includes up from the {@link PlaybackCache} in the order they appear. Files that are included from several places
+ * are only parsed once. The lines of every file are counted while scanning, so that a {@link ProgressListener} can be
+ * told how many of them have been parsed.<br/>
+ * Files that the cache trusts are not scanned at all, since they and everything they include are known to be
+ * unchanged; only the part of the graph that may have changed is read. If the file to load is trusted itself, nothing
+ * is read.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public class ParallelPlaybackLoader {
+    /**
+     * The {@link PlaybackCache} to parse files into
+     */
+    @Getter
+    private final PlaybackCache cache;
+    /**
+     * The {@link ForkJoinPool} to parse files on
+     */
+    @Getter
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new {@link ParallelPlaybackLoader} that uses the shared playback cache and the common pool
+     */
+    public ParallelPlaybackLoader() {
+        this(SimplePlayback.getCache(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new {@link ParallelPlaybackLoader}
+     *
+     * @param cache the {@link PlaybackCache} to parse files into
+     * @param pool  the {@link ForkJoinPool} to parse files on
+     */
+    public ParallelPlaybackLoader(PlaybackCache cache, ForkJoinPool pool) {
+        this.cache = cache;
+        this.pool = pool;
+    }
+
+    /**
+     * Loads the playback of the given file, parsing the files it includes in parallel.
+     *
+     * @param file the file to load
+     * @return the {@link SimplePlayback} of the given file
+     * @throws InvalidFileFormatException if a file is badly formatted or the files include each other
+     */
+    public SimplePlayback load(File file) {
+        return load(file, ProgressListener.NONE);
+    }
+
+    /**
+     * Loads the playback of the given file, parsing the files it includes in parallel and telling the given listener
+     * how many lines have been parsed. Lines of files that are already in the cache count as parsed right away, and
+     * files that the cache trusts are not counted at all.
+     *
+     * @param file     the file to load
+     * @param progress the {@link ProgressListener} to tell about the lines parsed
+     * @return the {@link SimplePlayback} of the given file
+     * @throws InvalidFileFormatException if a file is badly formatted or the files include each other
+     */
+    public SimplePlayback load(File file, ProgressListener progress) {
+        Path root;
+        try {
+            root = file.toPath().toRealPath();
+        } catch (IOException e) {
+            log.warn("Could not find the real path of " + file, e);
+            return cache.get(file);
+        }
+        if (cache.getTrustedIncludes(root) != null) {
+            log.debug("{} and everything it includes are unchanged", root);
+            return cache.get(file);
+        }
+
+        HashMap<Path, List<Path>> graph = new HashMap<>();
+        HashMap<Path, Long> lines = new HashMap<>();
+        scan(root, graph, lines, new HashSet<>());
+        long total = lines.values().stream().mapToLong(Long::longValue).sum();
+        log.debug("Found {} file(s) with {} line(s) in the include graph of {}", graph.size(), total, root);
+
+        AtomicLong parsed = new AtomicLong();
+        progress.progress("Parsing", 0, total);
+        LongConsumer linesRead = count -> progress.progress("Parsing", parsed.addAndGet(count), total);
+        return pool.invoke(new ParseTask(root, graph, lines, linesRead, new ConcurrentHashMap<>()));
+    }
+
+    /**
+     * Finds the files that the given file includes, and so on, and adds them to the graph. A file that the cache
+     * trusts is added without any includes, since the cache already has everything it includes.
+     *
+     * @param path  the real path of the file to scan
+     * @param graph the include graph so far: the files that each scanned file includes, in order
+     * @param lines the number of lines in each scanned file
+     * @param open  the files currently being scanned, to find cycles
+     * @throws InvalidFileFormatException if the files include each other
+     */
+    private void scan(Path path, Map<Path, List<Path>> graph, Map<Path, Long> lines, HashSet<Path> open) {
+        if (!open.add(path)) {
+            throw new InvalidFileFormatException("INCLUDE cycle through " + path);
+        }
+        if (graph.containsKey(path)) {
+            open.remove(path);
+            return;
+        }
+        if (cache.getTrustedIncludes(path) != null) {
+            graph.put(path, List.of());
+            lines.put(path, 0L);
+            open.remove(path);
+            return;
+        }
+
+        ArrayList<Path> includes = new ArrayList<>();
+        long count = 0;
+        try (BufferedReader in = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                count++;
+                String content = line.strip();
+                if (content.startsWith("INCLUDE ")) {
+                    Path include = Paths.get(path.getParent().toString(), content.substring(8));
+                    try {
+                        includes.add(include.toRealPath());
+                    } catch (IOException e) {
+                        log.warn("Could not find the real path of " + include, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not scan " + path + " for includes", e);
+        }
+
+        graph.put(path, includes);
+        lines.put(path, count);
+        for (Path include : includes) {
+            scan(include, graph, lines, open);
+        }
+        open.remove(path);
+    }
+
+    /**
+     * A task that parses one file after the files it includes
+     */
+    private final class ParseTask extends RecursiveTask<SimplePlayback> {
+        /**
+         * The version of the serialized form
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The real path of the file to parse
+         */
+        private final Path path;
+        /**
+         * The include graph
+         */
+        private final Map<Path, List<Path>> graph;
+        /**
+         * The number of lines in each file of the include graph
+         */
+        private final Map<Path, Long> lines;
+        /**
+         * Told how many lines have been parsed, shared by all tasks of one load
+         */
+        private final LongConsumer linesRead;
+        /**
+         * The task of every file that has been started, shared by all tasks of one load
+         */
+        private final ConcurrentHashMap<Path, ParseTask> tasks;
+
+        /**
+         * Creates a new {@link ParseTask}
+         *
+         * @param path      the real path of the file to parse
+         * @param graph     the include graph
+         * @param lines     the number of lines in each file of the include graph
+         * @param linesRead told how many lines have been parsed
+         * @param tasks     the task of every file that has been started
+         */
+        private ParseTask(Path path, Map<Path, List<Path>> graph, Map<Path, Long> lines, LongConsumer linesRead,
+                          ConcurrentHashMap<Path, ParseTask> tasks) {
+            this.path = path;
+            this.graph = graph;
+            this.lines = lines;
+            this.linesRead = linesRead;
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected SimplePlayback compute() {
+            ArrayList<ParseTask> waitFor = new ArrayList<>();
+            for (Path include : graph.getOrDefault(path, List.of())) {
+                ParseTask task = new ParseTask(include, graph, lines, linesRead, tasks);
+                ParseTask existing = tasks.putIfAbsent(include, task);
+                if (existing == null) {
+                    task.fork();
+                    waitFor.add(task);
+                } else {
+                    waitFor.add(existing);
+                }
+            }
+
+            for (ParseTask task : waitFor) {
+                task.join();
+            }
+
+            // lines of a cached file, or that were changed since the scan, are reported once it is done
+            long[] read = new long[1];
+            SimplePlayback output = cache.get(path.toFile(), count -> {
+                read[0] += count;
+                linesRead.accept(count);
+            });
+            long rest = lines.getOrDefault(path, 0L) - read[0];
+            if (rest > 0) {
+                linesRead.accept(rest);
+            }
+
+            return output;
+        }
+    }
+}
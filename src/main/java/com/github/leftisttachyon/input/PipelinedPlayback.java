@@ -0,0 +1,215 @@
+package com.github.leftisttachyon.input;
+
+import com.github.leftisttachyon.input.compiled.EventTape;
+import com.github.leftisttachyon.input.compiled.OptimizationReport;
+import com.github.leftisttachyon.input.compiled.PeepholeOptimizer;
+import com.github.leftisttachyon.input.sink.HeldInputSink;
+import com.github.leftisttachyon.input.sink.InputSink;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.FrameScheduler;
+import com.github.leftisttachyon.timing.FrameTimingRecorder;
+import com.github.leftisttachyon.timing.TimingReport;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A class that compiles a {@link SimplePlayback} while it is being executed.<br/>
+ * A producer thread compiles the playback a chunk of frames at a time into a bounded buffer, and the playback thread
+ * starts executing as soon as the first chunk is ready. Only a few chunks are held in memory at once, no matter how
+ * long the movie is. Each chunk goes through a {@link PeepholeOptimizer} before it is buffered. The playback is
+ * validated before anything is started, so a bad line near the end of the file is reported before any input is sent.
+ * For the same reason the file is parsed in full before playback starts; only compiling overlaps with it. If
+ * compiling fails partway through anyway, the playback stops there and the problem is reported in its
+ * {@link TimingReport}.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public class PipelinedPlayback {
+    /**
+     * The default number of frames in each compiled chunk
+     */
+    public static final int DEFAULT_CHUNK_FRAMES = 256;
+    /**
+     * The default number of compiled chunks that can wait in the buffer
+     */
+    public static final int DEFAULT_BUFFERED_CHUNKS = 16;
+    /**
+     * The chunk that marks the end of the playback
+     */
+    private static final EventTape END = new EventTape.Builder().build();
+
+    /**
+     * The {@link SimplePlayback} to execute
+     */
+    @Getter
+    private final SimplePlayback playback;
+    /**
+     * The number of frames in each compiled chunk
+     */
+    @Getter
+    private final int chunkFrames;
+    /**
+     * The number of compiled chunks that can wait in the buffer
+     */
+    @Getter
+    private final int bufferedChunks;
+    /**
+     * What the optimizer removed during the last run, once its compilation has finished
+     */
+    @Getter
+    private volatile OptimizationReport optimizationReport;
+
+    /**
+     * Creates a new {@link PipelinedPlayback} with the default chunk and buffer sizes
+     *
+     * @param playback the {@link SimplePlayback} to execute
+     * @throws InvalidFileFormatException if the playback does not validate
+     */
+    public PipelinedPlayback(SimplePlayback playback) {
+        this(playback, DEFAULT_CHUNK_FRAMES, DEFAULT_BUFFERED_CHUNKS);
+    }
+
+    /**
+     * Creates a new {@link PipelinedPlayback}
+     *
+     * @param playback       the {@link SimplePlayback} to execute
+     * @param chunkFrames    the number of frames in each compiled chunk
+     * @param bufferedChunks the number of compiled chunks that can wait in the buffer
+     * @throws InvalidFileFormatException if the playback does not validate
+     */
+    public PipelinedPlayback(SimplePlayback playback, int chunkFrames, int bufferedChunks) {
+        if (chunkFrames <= 0 || bufferedChunks <= 0) {
+            throw new IllegalArgumentException("Chunk and buffer sizes must be positive");
+        }
+
+        playback.validate();
+
+        this.playback = playback;
+        this.chunkFrames = chunkFrames;
+        this.bufferedChunks = bufferedChunks;
+    }
+
+    /**
+     * Executes one frame once every the given frame period, compiling ahead of the playback on another thread and
+     * recording the timing of every frame that sends input.
+     *
+     * @param sink     the {@link InputSink} to execute these instructions with
+     * @param period   the time between the starts of consecutive frames
+     * @param recorder the {@link FrameTimingRecorder} to record frame timing with
+     * @param onFinish called from the playback thread with the {@link TimingReport} of the run once it ends, which
+     *                 holds the problem if compiling failed partway through, may be {@code null}
+     * @return the started playback {@link Thread}; interrupting it also stops the producer. If the run ends before the
+     * end of the movie, for any reason, every key and mouse button that the playback still holds is released
+     * @see FrameScheduler
+     */
+    public Thread execute(InputSink sink, FramePeriod period, FrameTimingRecorder recorder,
+                          Consumer<TimingReport> onFinish) {
+        BlockingQueue<EventTape> buffer = new ArrayBlockingQueue<>(bufferedChunks);
+        // the exception that stopped the producer of this run, if there was one
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(() -> produce(buffer, failure), "playback-compiler");
+        producer.setDaemon(true);
+
+        FrameScheduler scheduler = new FrameScheduler(period);
+        Thread output = new Thread(() -> {
+            HeldInputSink held = new HeldInputSink(sink);
+            boolean completed = false;
+            try {
+                EventTape chunk = buffer.take();
+                scheduler.start();
+                long base = 0;
+                while (chunk != END) {
+                    for (int step = 0, steps = chunk.getStepCount(); step < steps; step++) {
+                        long lateness = scheduler.awaitFrame(base + chunk.getStepFrame(step));
+
+                        long start = System.nanoTime();
+                        chunk.executeStep(step, held);
+
+                        recorder.record(lateness, System.nanoTime() - start);
+                    }
+
+                    base += chunk.getFrameCount();
+                    chunk = buffer.take();
+                }
+                if (scheduler.getFrame() < base) {
+                    scheduler.awaitFrame(base - 1);
+                }
+                completed = true;
+            } catch (InterruptedException ie) {
+                log.info("Execution was interrupted");
+                recorder.setStopped(true);
+            } catch (RuntimeException re) {
+                log.error("Execution failed", re);
+                recorder.setFailure(re);
+            } finally {
+                producer.interrupt();
+                if (!completed || failure.get() != null) {
+                    held.releaseAll();
+                }
+            }
+
+            if (failure.get() != null && recorder.getFailure() == null) {
+                log.error("Compilation failed partway through playback", failure.get());
+                recorder.setFailure(failure.get());
+            }
+            recorder.setMissed(scheduler.getMissed());
+
+            TimingReport report = recorder.getReport();
+            log.info("Execution finished: {}", report);
+            if (onFinish != null) {
+                onFinish.accept(report);
+            }
+        });
+
+        log.info("Execution started");
+        producer.start();
+        output.start();
+
+        return output;
+    }
+
+    /**
+     * Compiles the playback into chunks and puts them in the given buffer, followed by {@link #END}.
+     *
+     * @param buffer  the buffer to put the compiled chunks in
+     * @param failure set to the exception that stopped compiling, if there is one
+     */
+    private void produce(BlockingQueue<EventTape> buffer, AtomicReference<RuntimeException> failure) {
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        try {
+            try {
+                Iterator<SimpleInstruction> iter = playback.iterator();
+                SimpleInstruction prev = null;
+                while (iter.hasNext()) {
+                    EventTape.Builder chunk = new EventTape.Builder();
+                    for (int i = 0; i < chunkFrames && iter.hasNext(); i++) {
+                        SimpleInstruction curr = iter.next();
+                        chunk.append(curr.compile(prev));
+
+                        prev = curr;
+                    }
+
+                    buffer.put(optimizer.optimize(chunk.build()));
+                }
+            } catch (RuntimeException re) {
+                failure.set(re);
+            }
+
+            optimizationReport = optimizer.getReport();
+            log.info("Optimized the playback: {}", optimizationReport);
+
+            buffer.put(END);
+        } catch (InterruptedException ie) {
+            log.debug("The compiler thread was interrupted");
+        }
+    }
+}
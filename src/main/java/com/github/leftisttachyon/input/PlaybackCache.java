@@ -0,0 +1,870 @@
+package com.github.leftisttachyon.input;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache of parsed {@link SimplePlayback}s, keyed by canonical path.<br/>
+ * An entry is only reused while its file is unchanged: if the size and modification time still match, the entry is
+ * used as is; if they do not, the file is read and hashed, and only re-parsed if its contents really changed. A
+ * playback whose file is unchanged but that includes a file that was re-parsed is relinked to the new playback of
+ * that file instead of being parsed again, which only rebuilds the nodes that lead to it. The files that each file
+ * includes are kept in an {@link IncludeGraph}. Entries are evicted in least-recently-used order once their
+ * estimated memory use, which counts the compiled frames of the playbacks that have been compiled, goes over the
+ * budget.<br/>
+ * A cache can be given a {@link FileWatcher}, which it asks to watch the directory of every file it loads. While the
+ * directory of a file and of everything it includes are watched, its entry is trusted without touching the disk for
+ * up to {@link #TRUST_NANOS}, after which it is checked against the disk again, in case the operating system lost an
+ * event; when the watcher reports that the file changed, the entry and every entry that includes it, directly or not,
+ * are checked against the disk again the next time they are used. Once the last entry in a directory is evicted, the
+ * watcher is told that the cache no longer needs the directory.<br/>
+ * The cache is safe to use from several threads. Each file is loaded by at most one thread at a time; other threads
+ * that want it wait for that load, and files that include each other are reported instead of recursing forever.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public class PlaybackCache {
+    /**
+     * The default memory budget, in bytes
+     */
+    public static final long DEFAULT_BUDGET = 64L << 20;
+    /**
+     * How long an entry is trusted without touching the disk after it was checked, in nanoseconds
+     */
+    public static final long TRUST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The entries of this cache, from least to most recently used
+     */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The most memory that the cached playbacks should use, in bytes
+     */
+    @Getter
+    private long budget;
+    /**
+     * The estimated memory used by the cached playbacks, in bytes
+     */
+    @Getter
+    private long usedBytes;
+    /**
+     * The number of lookups that reused an entry
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The number of lookups that had to parse the file
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * The number of lookups that waited for another thread's load of the same file
+     */
+    private final LongAdder shared = new LongAdder();
+    /**
+     * The number of lookups that relinked an unchanged file to the new playbacks of the files it includes
+     */
+    private final LongAdder relinks = new LongAdder();
+    /**
+     * The files that each file that has been parsed includes
+     */
+    @Getter
+    private final IncludeGraph graph = new IncludeGraph();
+    /**
+     * The loads that are running, by canonical path
+     */
+    private final ConcurrentHashMap<Path, Load> loading = new ConcurrentHashMap<>();
+    /**
+     * The file that each thread is waiting for another thread to load
+     */
+    private final ConcurrentHashMap<Thread, Path> waitingFor = new ConcurrentHashMap<>();
+    /**
+     * The number of entries evicted to stay under the budget
+     */
+    @Getter
+    private long evictions;
+    /**
+     * The {@link FileWatcher} that reports changes to the cached files, or {@code null} if there is none
+     */
+    private final FileWatcher watcher;
+    /**
+     * The number of changes that the watcher has reported, to tell whether a file may have changed while it was
+     * being checked
+     */
+    private long changes;
+    /**
+     * The number of entries in each directory that has any, so that the watcher can tell which directories this
+     * cache uses without locking it
+     */
+    private final ConcurrentHashMap<Path, Integer> directories = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new {@link PlaybackCache} with the default budget and no {@link FileWatcher}
+     */
+    public PlaybackCache() {
+        this(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a new {@link PlaybackCache} with no {@link FileWatcher}
+     *
+     * @param budget the most memory that the cached playbacks should use, in bytes
+     */
+    public PlaybackCache(long budget) {
+        this(budget, null);
+    }
+
+    /**
+     * Creates a new {@link PlaybackCache}. A cache that is given a {@link FileWatcher} listens to it for as long as
+     * the watcher lives.
+     *
+     * @param budget  the most memory that the cached playbacks should use, in bytes
+     * @param watcher the {@link FileWatcher} that reports changes to the cached files, may be {@code null}
+     */
+    public PlaybackCache(long budget, FileWatcher watcher) {
+        this.budget = budget;
+        this.watcher = watcher;
+        if (watcher != null) {
+            watcher.addListener(new FileWatcher.Listener() {
+                @Override
+                public void filesChanged(Predicate<Path> changed) {
+                    invalidate(changed);
+                }
+
+                @Override
+                public boolean isUsing(Path directory) {
+                    return directories.containsKey(directory);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the parsed playback of the given file, from the cache if it is still up to date.
+     * If another thread is already loading the same file, this waits for that load instead of starting another.
+     *
+     * @param file the file to get the playback of
+     * @return the {@link SimplePlayback} of the given file
+     * @throws InvalidFileFormatException if the file includes itself, directly or through other files
+     */
+    public SimplePlayback get(File file) {
+        return get(file, lines -> {
+        });
+    }
+
+    /**
+     * Returns the parsed playback of the given file, from the cache if it is still up to date.
+     * If the file has to be parsed, the given consumer is told how many lines have been read every so often.
+     *
+     * @param file      the file to get the playback of
+     * @param linesRead told how many lines of the file have been read, if it is parsed
+     * @return the {@link SimplePlayback} of the given file
+     * @throws InvalidFileFormatException if the file includes itself, directly or through other files
+     * @see #get(File)
+     */
+    public SimplePlayback get(File file, LongConsumer linesRead) {
+        return get(file, linesRead, new Lookup());
+    }
+
+    /**
+     * Returns the parsed playback of the given file as part of the given lookup, which only looks each file up once
+     *
+     * @param file      the file to get the playback of
+     * @param linesRead told how many lines of the file have been read, if it is parsed
+     * @param lookup    the {@link Lookup} that this is part of
+     * @return the {@link SimplePlayback} of the given file
+     * @throws InvalidFileFormatException if the file includes itself, directly or through other files
+     */
+    private SimplePlayback get(File file, LongConsumer linesRead, Lookup lookup) {
+        Path path;
+        try {
+            path = file.toPath().toRealPath();
+        } catch (IOException e) {
+            log.warn("Could not find the real path of " + file, e);
+            misses.increment();
+            return SimplePlayback.parse(file, null, lookup, linesRead);
+        }
+
+        SimplePlayback output = lookup.visited.get(path);
+        if (output == null) {
+            output = find(file, path, linesRead, lookup);
+            lookup.visited.put(path, output);
+        }
+        return output;
+    }
+
+    /**
+     * Finds the parsed playback of the given file, from the cache if it is still up to date
+     *
+     * @param file      the file to get the playback of
+     * @param path      the canonical path of the file
+     * @param linesRead told how many lines of the file have been read, if it is parsed
+     * @param lookup    the {@link Lookup} that this is part of
+     * @return the {@link SimplePlayback} of the given file
+     * @throws InvalidFileFormatException if the file includes itself, directly or through other files
+     */
+    private SimplePlayback find(File file, Path path, LongConsumer linesRead, Lookup lookup) {
+        boolean watched = watcher != null && watcher.watch(path.getParent());
+        Entry entry;
+        long epoch;
+        synchronized (this) {
+            entry = entries.get(path);
+            if (entry != null && entry.isTrusted()) {
+                hits.increment();
+                return entry.playback;
+            }
+            epoch = changes;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            log.warn("Could not read the attributes of " + file, e);
+            misses.increment();
+            return SimplePlayback.parse(file, null, lookup, linesRead);
+        }
+
+        long size = attributes.size(), modified = attributes.lastModifiedTime().toMillis();
+        if (unchanged(entry, size, modified) && sameIncludes(entry, currentIncludes(entry, lookup))) {
+            trust(entry, watched, epoch);
+            hits.increment();
+            return entry.playback;
+        }
+
+        Load load = new Load();
+        Load existing = loading.putIfAbsent(path, load);
+        if (existing != null) {
+            shared.increment();
+            return await(path, existing);
+        }
+
+        try {
+            SimplePlayback output = load(file, path, size, modified, entry, linesRead, watched, epoch, lookup);
+            load.result.complete(output);
+            return output;
+        } catch (RuntimeException | Error e) {
+            load.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(path, load);
+        }
+    }
+
+    /**
+     * Determines whether the given entry was made from a file of the given size and modification time
+     *
+     * @param entry    the entry to check, may be {@code null}
+     * @param size     the size of the file, in bytes
+     * @param modified the modification time of the file, in milliseconds since the epoch
+     * @return whether the file looks unchanged since the entry was made
+     */
+    private synchronized boolean unchanged(Entry entry, long size, long modified) {
+        return entry != null && entry.size == size && entry.modified == modified;
+    }
+
+    /**
+     * Reads the given file and re-parses it if its contents changed, or relinks it if only files it includes changed.
+     * Only one thread runs this for a file at a time.
+     *
+     * @param file      the file to load
+     * @param path      the canonical path of the file
+     * @param size      the size of the file, in bytes
+     * @param modified  the modification time of the file, in milliseconds since the epoch
+     * @param entry     the cached entry of the file, may be {@code null}
+     * @param linesRead told how many lines of the file have been read, if it is parsed
+     * @param watched   whether the directory of the file is watched
+     * @param epoch     the number of changes reported before the file was checked
+     * @param lookup    the {@link Lookup} that this is part of
+     * @return the {@link SimplePlayback} of the given file
+     */
+    private SimplePlayback load(File file, Path path, long size, long modified, Entry entry, LongConsumer linesRead,
+                                boolean watched, long epoch, Lookup lookup) {
+        if (unchanged(entry, size, modified)) {
+            return relink(path, entry, watched, epoch, lookup);
+        }
+
+        byte[] contents;
+        try {
+            contents = Files.readAllBytes(path);
+        } catch (IOException e) {
+            log.warn("Could not read " + path, e);
+            misses.increment();
+            return SimplePlayback.parse(file, null, lookup, linesRead);
+        }
+
+        byte[] hash = hash(contents);
+        if (entry != null && Arrays.equals(entry.hash, hash)) {
+            log.debug("{} was touched but not changed", path);
+            synchronized (this) {
+                entry.size = contents.length;
+                entry.modified = modified;
+            }
+            return relink(path, entry, watched, epoch, lookup);
+        }
+
+        misses.increment();
+        log.debug("Parsing {}", path);
+        SimplePlayback playback = SimplePlayback.parse(file, contents, lookup, linesRead);
+        Entry parsed = new Entry(playback, contents.length, modified, hash, realPaths(playback));
+        put(path, parsed);
+        trust(parsed, watched, epoch);
+        return playback;
+    }
+
+    /**
+     * Returns the playback of an unchanged file, relinked to the current playbacks of the files it includes if any
+     * of them changed
+     *
+     * @param path    the canonical path of the file
+     * @param entry   the cached entry of the file
+     * @param watched whether the directory of the file is watched
+     * @param epoch   the number of changes reported before the file was checked
+     * @param lookup  the {@link Lookup} that this is part of
+     * @return the {@link SimplePlayback} of the file
+     */
+    private SimplePlayback relink(Path path, Entry entry, boolean watched, long epoch, Lookup lookup) {
+        List<SimplePlayback> includes = currentIncludes(entry, lookup);
+        if (sameIncludes(entry, includes)) {
+            trust(entry, watched, epoch);
+            hits.increment();
+            return entry.playback;
+        }
+
+        relinks.increment();
+        log.debug("Relinking {}", path);
+        SimplePlayback playback = entry.playback.relink(includes);
+        Entry relinked;
+        synchronized (this) {
+            relinked = new Entry(playback, entry.size, entry.modified, entry.hash, entry.includes);
+        }
+        put(path, relinked);
+        trust(relinked, watched, epoch);
+        return playback;
+    }
+
+    /**
+     * Finds the real paths of the files that the given playback includes
+     *
+     * @param playback the playback to find the includes of
+     * @return the real paths of the included files
+     */
+    private static Path[] realPaths(SimplePlayback playback) {
+        return playback.getIncludes().stream().map(include -> {
+            Path path = include.getFile().toPath();
+            try {
+                return path.toRealPath();
+            } catch (IOException e) {
+                return path.toAbsolutePath().normalize();
+            }
+        }).toArray(Path[]::new);
+    }
+
+    /**
+     * Trusts the given entry from now on, if its directory is watched, no change was reported since it was checked,
+     * and everything it includes is trusted as well. The entry stops being trusted no later than the first of the
+     * entries it includes does.
+     *
+     * @param entry   the entry that was just checked against the disk
+     * @param watched whether the directory of the file is watched
+     * @param epoch   the number of changes reported before the file was checked
+     */
+    private synchronized void trust(Entry entry, boolean watched, long epoch) {
+        if (!watched || changes != epoch) {
+            return;
+        }
+        long checked = System.nanoTime();
+        for (Path include : entry.includes) {
+            Entry included = entries.get(include);
+            if (included == null || !included.isTrusted()) {
+                return;
+            }
+            if (included.checked - checked < 0) {
+                checked = included.checked;
+            }
+        }
+
+        entry.trusted = true;
+        entry.checked = checked;
+    }
+
+    /**
+     * Stops trusting the entries of the given files and every entry that includes them, directly or not. The changed
+     * files are read and hashed again the next time they are used, even if their size and modification time match.
+     *
+     * @param changed tests whether a file may have changed
+     */
+    private synchronized void invalidate(Predicate<Path> changed) {
+        changes++;
+
+        Set<Path> stale = graph.affectedBy(changed);
+        if (stale.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Path, Entry> mapEntry : entries.entrySet()) {
+            if (stale.contains(mapEntry.getKey())) {
+                Entry entry = mapEntry.getValue();
+                entry.trusted = false;
+                if (changed.test(mapEntry.getKey())) {
+                    entry.modified = -1;
+                }
+            }
+        }
+        log.debug("Invalidated {}", stale);
+    }
+
+    /**
+     * Waits for another load of the given file to finish.
+     * Before waiting, the chain of threads that are waiting on each other is followed; if it leads back to this
+     * thread, the files include each other and waiting would never end.
+     *
+     * @param path the canonical path of the file
+     * @param load the load to wait for
+     * @return the {@link SimplePlayback} of the given file
+     * @throws InvalidFileFormatException if the files include each other
+     */
+    private SimplePlayback await(Path path, Load load) {
+        Thread current = Thread.currentThread();
+        waitingFor.put(current, path);
+        try {
+            Path next = path;
+            for (int i = 0, limit = loading.size() + 1; next != null && i <= limit; i++) {
+                Load blocking = loading.get(next);
+                if (blocking == null) {
+                    break;
+                }
+                if (blocking.owner == current) {
+                    throw new InvalidFileFormatException("INCLUDE cycle through " + path);
+                }
+
+                next = waitingFor.get(blocking.owner);
+            }
+
+            return load.result.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            throw ce;
+        } finally {
+            waitingFor.remove(current);
+        }
+    }
+
+    /**
+     * Gets the current playback of every file that the given entry includes, loading them if needed
+     *
+     * @param entry  the entry to get the includes of, may be {@code null}
+     * @param lookup the {@link Lookup} that this is part of, so that files included from several places are only
+     *               checked once
+     * @return the current playbacks of the included files, in order
+     */
+    private List<SimplePlayback> currentIncludes(Entry entry, Lookup lookup) {
+        if (entry == null) {
+            return List.of();
+        }
+
+        ArrayList<SimplePlayback> output = new ArrayList<>();
+        for (SimplePlayback include : entry.playback.getIncludes()) {
+            output.add(lookup.get(include.getFile()));
+        }
+        return output;
+    }
+
+    /**
+     * Determines whether the given entry was made with the given playbacks of the files it includes
+     *
+     * @param entry    the entry to check, may be {@code null}
+     * @param includes the current playbacks of the files it includes
+     * @return whether every included file is unchanged
+     */
+    private static boolean sameIncludes(Entry entry, List<SimplePlayback> includes) {
+        if (entry == null) {
+            return false;
+        }
+
+        List<SimplePlayback> old = entry.playback.getIncludes();
+        for (int i = 0; i < old.size(); i++) {
+            if (old.get(i) != includes.get(i)) {
+                log.debug("An include of {} changed", entry.playback.getFile());
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the real paths of the files that the given file includes, if its entry is trusted. A trusted file only
+     * includes trusted files, so none of them need to be looked at.
+     *
+     * @param path the real path of the file
+     * @return the real paths of the files that it includes, or {@code null} if the file is not trusted
+     */
+    synchronized List<Path> getTrustedIncludes(Path path) {
+        Entry entry = entries.get(path);
+        return entry != null && entry.isTrusted() ? List.of(entry.includes) : null;
+    }
+
+    /**
+     * Adds the hashes of the given file and of every file it includes to the given digest, in the same way as
+     * {@link SimplePlayback#hashSource(File)}, if they are all trusted. Nothing is added otherwise.
+     *
+     * @param path   the real path of the file
+     * @param digest the {@link MessageDigest} to add to
+     * @return whether the file and everything it includes were trusted, and so were added
+     */
+    synchronized boolean hashTrusted(Path path, MessageDigest digest) {
+        if (!trusted(path)) {
+            return false;
+        }
+
+        addHashes(path, digest);
+        return true;
+    }
+
+    /**
+     * Determines whether the given file and every file it includes are trusted
+     *
+     * @param path the real path of the file
+     * @return whether they are all trusted
+     */
+    private boolean trusted(Path path) {
+        Entry entry = entries.get(path);
+        if (entry == null || !entry.isTrusted()) {
+            return false;
+        }
+
+        for (Path include : entry.includes) {
+            if (!trusted(include)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the hashes of the given trusted file and of every file it includes to the given digest
+     *
+     * @param path   the real path of the file
+     * @param digest the {@link MessageDigest} to add to
+     */
+    private void addHashes(Path path, MessageDigest digest) {
+        Entry entry = entries.get(path);
+        digest.update(entry.hash);
+        for (Path include : entry.includes) {
+            addHashes(include, digest);
+        }
+    }
+
+    /**
+     * Adds the given entry, evicting the least recently used entries while over the budget
+     *
+     * @param path  the canonical path of the entry
+     * @param entry the entry to add
+     */
+    private void put(Path path, Entry entry) {
+        List<Path> emptied;
+        synchronized (this) {
+            recountEntries();
+            graph.setIncludes(path, List.of(entry.includes));
+            Entry old = entries.put(path, entry);
+            if (old != null) {
+                usedBytes -= old.bytes;
+            } else {
+                directories.merge(path.getParent(), 1, Integer::sum);
+            }
+            entry.bytes = entry.playback.getEstimatedSize();
+            usedBytes += entry.bytes;
+
+            emptied = evict(path);
+        }
+        release(emptied);
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache is within its budget
+     *
+     * @param keep the path of an entry that must not be evicted, may be {@code null}
+     * @return the directories that no longer have any entries
+     */
+    private List<Path> evict(Path keep) {
+        ArrayList<Path> emptied = new ArrayList<>();
+        for (Iterator<Map.Entry<Path, Entry>> iter = entries.entrySet().iterator();
+             usedBytes > budget && iter.hasNext(); ) {
+            Map.Entry<Path, Entry> eldest = iter.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+
+            usedBytes -= eldest.getValue().bytes;
+            iter.remove();
+            evictions++;
+            log.debug("Evicted {}", eldest.getKey());
+
+            Path directory = eldest.getKey().getParent();
+            if (directories.computeIfPresent(directory, (key, count) -> count == 1 ? null : count - 1) == null) {
+                emptied.add(directory);
+            }
+        }
+
+        return emptied;
+    }
+
+    /**
+     * Counts the memory that the cached playbacks use again, since compiling a playback makes it bigger, and evicts
+     * entries if that put the cache over its budget
+     */
+    void recount() {
+        List<Path> emptied;
+        synchronized (this) {
+            recountEntries();
+            emptied = evict(null);
+        }
+        release(emptied);
+    }
+
+    /**
+     * Counts the memory that each cached playback uses again
+     */
+    private void recountEntries() {
+        for (Entry entry : entries.values()) {
+            long bytes = entry.playback.getEstimatedSize();
+            usedBytes += bytes - entry.bytes;
+            entry.bytes = bytes;
+        }
+    }
+
+    /**
+     * Tells the watcher that this cache no longer needs the given directories. This must not be called while this
+     * cache is locked, since the watcher tells its listeners about the released directories.
+     *
+     * @param emptied the directories that no longer have any entries
+     */
+    private void release(List<Path> emptied) {
+        if (watcher == null) {
+            return;
+        }
+
+        for (Path directory : emptied) {
+            watcher.release(directory);
+        }
+    }
+
+    /**
+     * Returns the number of lookups that reused an entry
+     *
+     * @return the number of lookups that reused an entry
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to parse the file
+     *
+     * @return the number of lookups that had to parse the file
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of lookups that waited for another thread's load of the same file
+     *
+     * @return the number of lookups that waited for another thread's load of the same file
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    /**
+     * Returns the number of lookups that relinked an unchanged file to the new playbacks of the files it includes
+     *
+     * @return the number of lookups that relinked an unchanged file
+     */
+    public long getRelinks() {
+        return relinks.sum();
+    }
+
+    /**
+     * Sets the most memory that the cached playbacks should use, evicting entries if needed
+     *
+     * @param budget the most memory that the cached playbacks should use, in bytes
+     */
+    public void setBudget(long budget) {
+        List<Path> emptied;
+        synchronized (this) {
+            this.budget = budget;
+            emptied = evict(null);
+        }
+        release(emptied);
+    }
+
+    /**
+     * Returns the number of playbacks in this cache
+     *
+     * @return the number of playbacks in this cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes every playback from this cache, along with the include graph. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        graph.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Computes the SHA-256 hash of the given bytes
+     *
+     * @param contents the bytes to hash
+     * @return the SHA-256 hash of the given bytes
+     */
+    static byte[] hash(byte[] contents) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contents);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("[PlaybackCache entries=%d used=%d/%d bytes hits=%d misses=%d shared=%d relinks=%d "
+                + "evictions=%d]", entries.size(), usedBytes, budget, hits.sum(), misses.sum(), shared.sum(),
+                relinks.sum(), evictions);
+    }
+
+    /**
+     * One lookup of a file along with everything it includes, on one thread.<br/>
+     * Each file is only looked up once per lookup, so a file that is included from many places, such as the shared
+     * fragments of a diamond-shaped include graph, is checked once instead of once per path that leads to it.
+     */
+    final class Lookup {
+        /**
+         * The playback found for each file so far, by canonical path
+         */
+        private final HashMap<Path, SimplePlayback> visited = new HashMap<>();
+
+        /**
+         * Returns the parsed playback of the given included file
+         *
+         * @param file the file to get the playback of
+         * @return the {@link SimplePlayback} of the given file
+         * @throws InvalidFileFormatException if the file includes itself, directly or through other files
+         */
+        SimplePlayback get(File file) {
+            return PlaybackCache.this.get(file, lines -> {
+            }, this);
+        }
+    }
+
+    /**
+     * A load of one file that other threads can wait for
+     */
+    private static final class Load {
+        /**
+         * The thread running the load
+         */
+        private final Thread owner = Thread.currentThread();
+        /**
+         * The result of the load
+         */
+        private final CompletableFuture<SimplePlayback> result = new CompletableFuture<>();
+    }
+
+    /**
+     * A cached playback, along with what its file looked like when it was parsed
+     */
+    private static final class Entry {
+        /**
+         * The parsed playback
+         */
+        private final SimplePlayback playback;
+        /**
+         * The SHA-256 hash of the contents of the file
+         */
+        private final byte[] hash;
+        /**
+         * The size of the file, in bytes
+         */
+        private long size;
+        /**
+         * The modification time of the file, in milliseconds since the epoch, or {@code -1} if the file is known to
+         * have changed since
+         */
+        private long modified;
+        /**
+         * The real paths of the files that the file includes
+         */
+        private final Path[] includes;
+        /**
+         * Whether the entry can be used without checking the disk, since the file and everything it includes are
+         * watched and have not changed since they were checked
+         */
+        private boolean trusted;
+        /**
+         * When the file and everything it includes were last checked against the disk, as given by
+         * {@link System#nanoTime()}
+         */
+        private long checked;
+        /**
+         * The estimated memory used by the playback when it was last counted, in bytes
+         */
+        private long bytes;
+
+        /**
+         * Creates a new {@link Entry}
+         *
+         * @param playback the parsed playback
+         * @param size     the size of the file, in bytes
+         * @param modified the modification time of the file, in milliseconds since the epoch
+         * @param hash     the SHA-256 hash of the contents of the file
+         * @param includes the real paths of the files that the file includes
+         */
+        private Entry(SimplePlayback playback, long size, long modified, byte[] hash, Path[] includes) {
+            this.playback = playback;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.includes = includes;
+        }
+
+        /**
+         * Determines whether the entry can still be used without checking the disk
+         *
+         * @return whether the entry is trusted and was checked recently enough
+         */
+        private boolean isTrusted() {
+            return trusted && System.nanoTime() - checked < TRUST_NANOS;
+        }
+    }
+}
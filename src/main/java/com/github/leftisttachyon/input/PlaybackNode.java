@@ -0,0 +1,142 @@
+package com.github.leftisttachyon.input;
+
+import com.github.leftisttachyon.input.compiled.EventTape;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A node of the tree that a parsed {@link SimplePlayback} is kept as.<br/>
+ * {@code REPEAT} blocks are kept as a single {@link RepeatNode} instead of being copied out once per repetition, so
+ * the tree stays as large as the source file no matter how many frames it expands to. Frames are produced lazily by
+ * {@link #iterator()}.<br/>
+ * Nodes never change once they are built. A node that includes a file that changed is replaced, along with the nodes
+ * above it, by {@link #relink(Map)}, which shares everything else with the old tree.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+abstract class PlaybackNode implements Iterable<SimpleInstruction> {
+    /**
+     * The number of frames this node expands to, or -1 if it has not been computed yet
+     */
+    private long frameCount = -1;
+
+    /**
+     * Returns the number of frames this node expands to. The count is computed the first time it is needed.
+     *
+     * @return the number of frames this node expands to
+     */
+    public long getFrameCount() {
+        if (frameCount == -1) {
+            frameCount = countFrames();
+        }
+
+        return frameCount;
+    }
+
+    /**
+     * Counts the number of frames this node expands to
+     *
+     * @return the number of frames this node expands to
+     */
+    protected abstract long countFrames();
+
+    /**
+     * Calls the given action on every instruction in this node once, without expanding any repetitions
+     *
+     * @param action the action to call on every instruction
+     */
+    abstract void forEachInstruction(Consumer<SimpleInstruction> action);
+
+    /**
+     * Adds the frame of every {@code MARKER} in this node to the given map. A marker that is reached more than once,
+     * such as one inside a {@code REPEAT}, is given the first frame it is reached at.
+     *
+     * @param offset  the frame that this node starts at
+     * @param markers the map of marker names to frames to add to
+     */
+    abstract void collectMarkers(long offset, Map<String, Long> markers);
+
+    @Override
+    public Iterator<SimpleInstruction> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * Returns an {@link Iterator} over the frames of this node, starting at the given frame. The frames before it are
+     * skipped over without being visited.
+     *
+     * @param start the index of the first frame to return, from 0 to {@link #getFrameCount()}
+     * @return an {@link Iterator} over the frames of this node from the given frame on
+     */
+    abstract Iterator<SimpleInstruction> iterator(long start);
+
+    /**
+     * Returns the first frame of this node, which must have at least one frame
+     *
+     * @return the first frame of this node
+     */
+    SimpleInstruction first() {
+        return iterator(0).next();
+    }
+
+    /**
+     * Returns the last frame of this node, which must have at least one frame
+     *
+     * @return the last frame of this node
+     */
+    SimpleInstruction last() {
+        return iterator(getFrameCount() - 1).next();
+    }
+
+    /**
+     * Compiles the frames of this node onto the given tape. Nodes that have already been compiled on their own, such
+     * as the roots of included files, are copied from their tapes instead; only their first frame is compiled again,
+     * since it is the only one that depends on what comes before.
+     *
+     * @param preceding the instruction just before this node, or {@code null} if there is none
+     * @param tape      the {@link EventTape.Builder} to add the frames to
+     * @param compiled  the tapes of the nodes that have already been compiled on their own, by node
+     */
+    final void compile(SimpleInstruction preceding, EventTape.Builder tape, Map<PlaybackNode, EventTape> compiled) {
+        EventTape own = compiled.get(this);
+        if (own == null) {
+            compileFrames(preceding, tape, compiled);
+        } else if (own.getFrameCount() > 0) {
+            tape.append(first().compile(preceding));
+            tape.appendTape(own, 1);
+        }
+    }
+
+    /**
+     * Compiles the frames of this node onto the given tape, compiling its children with
+     * {@link #compile(SimpleInstruction, EventTape.Builder, Map)}
+     *
+     * @param preceding the instruction just before this node, or {@code null} if there is none
+     * @param tape      the {@link EventTape.Builder} to add the frames to
+     * @param compiled  the tapes of the nodes that have already been compiled on their own, by node
+     */
+    abstract void compileFrames(SimpleInstruction preceding, EventTape.Builder tape,
+                                Map<PlaybackNode, EventTape> compiled);
+
+    /**
+     * Returns this node with the given nodes replaced. Nodes that are replaced are not looked into.
+     *
+     * @param replacements the nodes to replace, by the node to replace them with
+     * @return the node with the replacements made, which is this node if nothing in it was replaced
+     */
+    final PlaybackNode relink(Map<PlaybackNode, PlaybackNode> replacements) {
+        PlaybackNode replacement = replacements.get(this);
+        return replacement == null ? relinkChildren(replacements) : replacement;
+    }
+
+    /**
+     * Returns this node with the given nodes replaced in its children, with {@link #relink(Map)}
+     *
+     * @param replacements the nodes to replace, by the node to replace them with
+     * @return a new node with the replacements made, or this node if nothing in it was replaced
+     */
+    abstract PlaybackNode relinkChildren(Map<PlaybackNode, PlaybackNode> replacements);
+}
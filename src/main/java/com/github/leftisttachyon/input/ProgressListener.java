@@ -0,0 +1,28 @@
+package com.github.leftisttachyon.input;
+
+/**
+ * A listener that is told how far along a long task, such as loading or compiling a playback, is.<br/>
+ * Tasks call it from whichever thread is doing the work, possibly from several at once, so implementations must be
+ * thread-safe. A listener may throw a {@link java.util.concurrent.CancellationException} to stop the task; it is
+ * passed on to the caller of the task.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@FunctionalInterface
+public interface ProgressListener {
+    /**
+     * A listener that ignores all progress
+     */
+    ProgressListener NONE = (stage, done, total) -> {
+    };
+
+    /**
+     * Reports how far along the task is
+     *
+     * @param stage a short description of what the task is doing, such as {@code "Parsing"}
+     * @param done  how much of the stage is done
+     * @param total how much there is to do in the stage, or {@code 0} if it is not known
+     */
+    void progress(String stage, long done, long total);
+}
@@ -0,0 +1,127 @@
+package com.github.leftisttachyon.input;
+
+import com.github.leftisttachyon.input.compiled.EventTape;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A {@link PlaybackNode} that plays its body a number of times in a row.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+class RepeatNode extends PlaybackNode {
+    /**
+     * The number of times to play the body
+     */
+    private final int count;
+    /**
+     * The {@link PlaybackNode} to repeat
+     */
+    private final PlaybackNode body;
+
+    /**
+     * Creates a new {@link RepeatNode}
+     *
+     * @param count the number of times to play the body, which must not be negative
+     * @param body  the {@link PlaybackNode} to repeat
+     * @throws IllegalArgumentException if the count is negative
+     */
+    RepeatNode(int count, PlaybackNode body) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Negative repeat count: " + count);
+        }
+
+        this.count = count;
+        this.body = body;
+    }
+
+    @Override
+    protected long countFrames() {
+        return Math.multiplyExact(count, body.getFrameCount());
+    }
+
+    @Override
+    void forEachInstruction(Consumer<SimpleInstruction> action) {
+        body.forEachInstruction(action);
+    }
+
+    @Override
+    void collectMarkers(long offset, Map<String, Long> markers) {
+        if (count > 0) {
+            body.collectMarkers(offset, markers);
+        }
+    }
+
+    @Override
+    Iterator<SimpleInstruction> iterator(long start) {
+        long bodyFrames = body.getFrameCount();
+        if (count <= 0 || bodyFrames == 0 || start >= getFrameCount()) {
+            return Collections.emptyIterator();
+        }
+
+        return new Iterator<>() {
+            /**
+             * The number of times the body has been started
+             */
+            private int started = (int) (start / bodyFrames) + 1;
+            /**
+             * The {@link Iterator} over the current repetition of the body
+             */
+            private Iterator<SimpleInstruction> current = body.iterator(start % bodyFrames);
+
+            @Override
+            public boolean hasNext() {
+                return current.hasNext() || started < count;
+            }
+
+            @Override
+            public SimpleInstruction next() {
+                if (!current.hasNext()) {
+                    if (started >= count) {
+                        throw new NoSuchElementException();
+                    }
+
+                    current = body.iterator();
+                    started++;
+                }
+
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Only the first two repetitions are compiled, since every repetition after the first is preceded by the same
+     * instruction; the second is then copied for the rest.
+     */
+    @Override
+    void compileFrames(SimpleInstruction preceding, EventTape.Builder tape, Map<PlaybackNode, EventTape> compiled) {
+        if (count <= 0 || body.getFrameCount() == 0) {
+            return;
+        }
+
+        body.compile(preceding, tape, compiled);
+        if (count > 1) {
+            int second = tape.getFrameCount();
+            body.compile(body.last(), tape, compiled);
+            tape.repeat(second, count - 2);
+        }
+    }
+
+    @Override
+    PlaybackNode relinkChildren(Map<PlaybackNode, PlaybackNode> replacements) {
+        PlaybackNode relinked = body.relink(replacements);
+        return relinked == body ? this : new RepeatNode(count, relinked);
+    }
+
+    @Override
+    public String toString() {
+        return "REPEAT " + count + " " + body;
+    }
+}
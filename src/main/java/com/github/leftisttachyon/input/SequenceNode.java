@@ -0,0 +1,135 @@
+package com.github.leftisttachyon.input;
+
+import com.github.leftisttachyon.input.compiled.EventTape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * A {@link PlaybackNode} that plays its children one after another.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+class SequenceNode extends PlaybackNode {
+    /**
+     * The children of this node, in order
+     */
+    private final ArrayList<PlaybackNode> children;
+
+    /**
+     * Creates a new {@link SequenceNode}
+     *
+     * @param children the children of this node, in order
+     */
+    SequenceNode(List<PlaybackNode> children) {
+        this.children = new ArrayList<>(children);
+    }
+
+    @Override
+    protected long countFrames() {
+        long output = 0;
+        for (PlaybackNode child : children) {
+            output = Math.addExact(output, child.getFrameCount());
+        }
+
+        return output;
+    }
+
+    @Override
+    void forEachInstruction(Consumer<SimpleInstruction> action) {
+        for (PlaybackNode child : children) {
+            child.forEachInstruction(action);
+        }
+    }
+
+    @Override
+    void collectMarkers(long offset, Map<String, Long> markers) {
+        for (PlaybackNode child : children) {
+            child.collectMarkers(offset, markers);
+            offset += child.getFrameCount();
+        }
+    }
+
+    @Override
+    Iterator<SimpleInstruction> iterator(long start) {
+        int first = 0;
+        long skipped = 0;
+        while (first < children.size() && skipped + children.get(first).getFrameCount() <= start) {
+            skipped += children.get(first).getFrameCount();
+            first++;
+        }
+        if (first == children.size()) {
+            return Collections.emptyIterator();
+        }
+
+        int firstChild = first;
+        long offset = start - skipped;
+        return new Iterator<>() {
+            /**
+             * The index of the next child to start
+             */
+            private int next = firstChild + 1;
+            /**
+             * The {@link Iterator} over the current child
+             */
+            private Iterator<SimpleInstruction> current = children.get(firstChild).iterator(offset);
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (next == children.size()) {
+                        return false;
+                    }
+
+                    current = children.get(next++).iterator();
+                }
+
+                return true;
+            }
+
+            @Override
+            public SimpleInstruction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return current.next();
+            }
+        };
+    }
+
+    @Override
+    void compileFrames(SimpleInstruction preceding, EventTape.Builder tape, Map<PlaybackNode, EventTape> compiled) {
+        SimpleInstruction prev = preceding;
+        for (PlaybackNode child : children) {
+            if (child.getFrameCount() > 0) {
+                child.compile(prev, tape, compiled);
+                prev = child.last();
+            }
+        }
+    }
+
+    @Override
+    PlaybackNode relinkChildren(Map<PlaybackNode, PlaybackNode> replacements) {
+        ArrayList<PlaybackNode> relinked = new ArrayList<>(children.size());
+        boolean changed = false;
+        for (PlaybackNode child : children) {
+            PlaybackNode replacement = child.relink(replacements);
+            relinked.add(replacement);
+            changed |= replacement != child;
+        }
+
+        return changed ? new SequenceNode(relinked) : this;
+    }
+
+    @Override
+    public String toString() {
+        return children.toString();
+    }
+}
@@ -1,22 +1,16 @@
 package com.github.leftisttachyon.input;
 
 import com.github.leftisttachyon.input.compiled.CompiledInstruction;
+import com.github.leftisttachyon.input.sink.InputSink;
 import lombok.AccessLevel;
 import lombok.Data;
-import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.awt.*;
-import java.awt.event.KeyEvent;
-import java.awt.event.MouseEvent;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
-import static java.awt.event.KeyEvent.*;
-
 /**
  * A class that represents a set of key presses and mouse movements and presses.
  *
@@ -32,39 +26,41 @@ public class SimpleInstruction {
      */
     private static final Set<String> NO_INPUT = Set.of(".", "_", "-");
     /**
-     * The offset for the mouse in the x-direction
+     * An empty array of key codes
      */
-    @Getter
-    @Setter
-    private static int X_OFFSET = 0;
+    private static final int[] NO_KEYS = new int[0];
     /**
-     * The offset for the mouse in the y-direction
+     * The {@link ColumnSchema} of this instruction, shared by every instruction of the same file
      */
-    @Getter
-    @Setter
-    private static int Y_OFFSET = 0;
+    private final ColumnSchema schema;
     /**
-     * The map of button presses and mouse movements to do
+     * The code of the value of each column, by the column's index in {@link #schema}
      */
-    private final HashMap<String, String> inputMap;
+    private final char[] codes;
 
     /**
-     * Gets the mouse offset for instruction execution
+     * Returns the estimated memory used by this instruction, in bytes
      *
-     * @return a {@link Point} object that represents the offsets being used
+     * @return the estimated memory used by this instruction, in bytes
      */
-    public static Point getOffset() {
-        return new Point(X_OFFSET, Y_OFFSET);
+    public int getEstimatedSize() {
+        // the object itself, the code array and the reference to it in its block
+        return 24 + ((16 + 2 * codes.length + 7) & ~7) + 4;
     }
 
     /**
-     * Sets the mouse offset for instruction execution
+     * Returns a map of each column name to its value
      *
-     * @param p a {@link Point} object that represents the offsets to use
+     * @return a new {@link HashMap} of each column name to its value
      */
-    public static void setOffset(Point p) {
-        X_OFFSET = p.x;
-        Y_OFFSET = p.y;
+    public HashMap<String, String> getInputMap() {
+        HashMap<String, String> output = new HashMap<>();
+        for (int i = 0; i < codes.length; i++) {
+            ColumnSchema.Column column = schema.getColumn(i);
+            output.put(column.getName(), column.getValue(codes[i]));
+        }
+
+        return output;
     }
 
     /**
@@ -81,256 +77,125 @@ public class SimpleInstruction {
      * Executes this instruction.<br/>
      * <b>NOTE: for the mouse, first mouse movement actions are parsed, then mouse button actions.</b>
      *
-     * @param r         the {@link Robot} to execute these instructions with
+     * @param sink      the {@link InputSink} to execute these instructions with
      * @param preceding the preceding instructions
      */
-    public void execute(Robot r, SimpleInstruction preceding) {
-        if (preceding != null &&
-                !preceding.inputMap.keySet().equals(inputMap.keySet())) {
-            throw new IllegalArgumentException("Invalid preceding instructions");
-        }
-
-        int x = -1, y = -1;
-        HashSet<Integer> mouse = new HashSet<>();
-        for (Map.Entry<String, String> inputEntry : inputMap.entrySet()) {
-            String key = inputEntry.getKey(),
-                    currInput = inputEntry.getValue(),
-                    prevInput = preceding == null ? null : preceding.inputMap.get(key);
-
-            if ("MX".equals(key)) {
-                if (!NO_INPUT.contains(currInput)) {
-                    x = Integer.parseInt(currInput);
-                }
-            } else if ("MY".equals(key)) {
-                if (!NO_INPUT.contains(currInput)) {
-                    y = Integer.parseInt(currInput);
-                }
-            } else if (key.startsWith("K")) {
-                log.trace("{} -> {}", prevInput, currInput);
-                if (prevInput != null && prevInput.equals(currInput)) {
-                    continue;
-                }
-
-                int keyCode = getKeyCode(key.substring(1));
-                log.trace("Dealing with {} / keycode {}", key, keyCode);
-                if (NO_INPUT.contains(currInput)) {
-                    if (prevInput == null || NO_INPUT.contains(prevInput)) {
-                        log.trace("Continuing");
-                        continue;
-                    }
-
-                    r.keyRelease(keyCode);
-                } else {
-                    r.keyPress(keyCode);
-                }
-            } else if (key.startsWith("M")) {
-                if (prevInput != null && prevInput.equals(currInput)) {
-                    continue;
-                }
-
-                int button = Integer.parseInt(key.substring(1));
-                if (NO_INPUT.contains(currInput)) {
-                    if (prevInput == null || NO_INPUT.contains(prevInput)) {
-                        log.trace("Continuing: {} -> {}", prevInput, currInput);
-                        continue;
-                    }
-
-//                    r.mouseRelease(button);
-                    switch (button) {
-                        case 1:
-                            mouse.add(~MouseEvent.BUTTON1_DOWN_MASK);
-                            break;
-                        case 2:
-                            mouse.add(~MouseEvent.BUTTON2_DOWN_MASK);
-                            break;
-                        case 3:
-                            mouse.add(~MouseEvent.BUTTON3_DOWN_MASK);
-                            break;
-                    }
-                } else {
-//                    r.mousePress(button);
-                    switch (button) {
-                        case 1:
-                            mouse.add(MouseEvent.BUTTON1_DOWN_MASK);
-                            break;
-                        case 2:
-                            mouse.add(MouseEvent.BUTTON2_DOWN_MASK);
-                            break;
-                        case 3:
-                            mouse.add(MouseEvent.BUTTON3_DOWN_MASK);
-                            break;
-                    }
-                }
-            } else {
-                throw new IllegalArgumentException("Unknown instruction key: " + key);
-            }
-        }
-
-        log.trace("x: {}, y: {}", x, y);
-
-        if (x != -1 && y != -1) {
-            r.mouseMove(X_OFFSET + x, Y_OFFSET + y);
-        }
-        if (!mouse.isEmpty()) {
-            for (int b : mouse) {
-                if (b < 0) {
-                    r.mouseRelease(~b);
-                } else {
-                    r.mousePress(b);
-                }
-            }
-        }
+    public void execute(InputSink sink, SimpleInstruction preceding) {
+        compile(preceding).execute(sink);
     }
 
     /**
      * Compiles this instruction.
+     * Mouse coordinates are kept relative to the window; the origin of the window is added when the instruction is
+     * executed, through an {@link com.github.leftisttachyon.input.sink.OffsetInputSink}.
      *
      * @param preceding the preceding instructions
      * @return a compiled version of these instructions.
      * @see CompiledInstruction
      */
     public CompiledInstruction compile(SimpleInstruction preceding) {
-        if (preceding != null &&
-                !preceding.inputMap.keySet().equals(inputMap.keySet())) {
+        if (preceding != null && !preceding.schema.hasSameColumns(schema)) {
             throw new IllegalArgumentException("Invalid preceding instructions: " + toString() + " vs "
                     + preceding.toString());
         }
 
-        int x = -1, y = -1;
-        Set<Integer> mP = new HashSet<>(), mR = new HashSet<>(),
-                kP = new HashSet<>(), kR = new HashSet<>();
-
-        for (Map.Entry<String, String> inputEntry : inputMap.entrySet()) {
-            String key = inputEntry.getKey(),
-                    currInput = inputEntry.getValue(),
-                    prevInput = preceding == null ? null : preceding.inputMap.get(key);
-
-            if ("MX".equals(key)) {
-                if (!NO_INPUT.contains(currInput)) {
-                    x = Integer.parseInt(currInput);
-                }
-            } else if ("MY".equals(key)) {
-                if (!NO_INPUT.contains(currInput)) {
-                    y = Integer.parseInt(currInput);
-                }
-            } else if (key.startsWith("K")) {
-                log.trace("{} -> {}", prevInput, currInput);
-                if (prevInput != null && prevInput.equals(currInput)) {
-                    continue;
-                }
-
-                int keyCode = getKeyCode(key.substring(1));
-                log.trace("Dealing with {} / keycode {}", key, keyCode);
-                if (NO_INPUT.contains(currInput)) {
-                    if (prevInput == null || NO_INPUT.contains(prevInput)) {
-                        log.trace("Continuing");
-                        continue;
-                    }
-
-                    kR.add(keyCode);
-                } else {
-                    kP.add(keyCode);
-                }
-            } else if (key.startsWith("M")) {
-                if (prevInput != null && prevInput.equals(currInput)) {
+        int mP = 0, mR = 0, kPSize = 0, kRSize = 0;
+        int[] kP = null, kR = null;
+
+        // codes can only be compared directly within one schema; across files, the values are compared instead
+        boolean shared = preceding == null || preceding.schema == schema;
+        for (int i = 0; i < codes.length; i++) {
+            char curr = codes[i];
+            ColumnSchema.Column column = schema.getColumn(i);
+            boolean currInput = column.isInput(curr), prevInput = false;
+            if (preceding != null) {
+                int index = shared ? i : preceding.schema.indexOf(column.getName());
+                ColumnSchema.Column prevColumn = preceding.schema.getColumn(index);
+                char prev = preceding.codes[index];
+                if (shared ? prev == curr : prevColumn.getValue(prev).equals(column.getValue(curr))) {
                     continue;
                 }
+                prevInput = prevColumn.isInput(prev);
+            }
 
-                int button = Integer.parseInt(key.substring(1));
-                if (NO_INPUT.contains(currInput)) {
-                    if (prevInput == null || NO_INPUT.contains(prevInput)) {
-                        log.trace("Continuing: {} -> {}", prevInput, currInput);
-                        continue;
-                    }
+            if (currInput == prevInput && !currInput) {
+                continue;
+            }
 
-//                    mR.add(button);
-                    switch (button) {
-                        case 1:
-                            mR.add(MouseEvent.BUTTON1_DOWN_MASK);
-                            break;
-                        case 2:
-                            mR.add(MouseEvent.BUTTON2_DOWN_MASK);
-                            break;
-                        case 3:
-                            mR.add(MouseEvent.BUTTON3_DOWN_MASK);
-                            break;
+            switch (column.getKind()) {
+                case KEY:
+                    if (currInput) {
+                        if (kP == null) {
+                            kP = new int[codes.length];
+                        }
+                        kP[kPSize++] = column.getCode();
+                    } else {
+                        if (kR == null) {
+                            kR = new int[codes.length];
+                        }
+                        kR[kRSize++] = column.getCode();
                     }
-                } else {
-//                    mP.add(button);
-                    switch (button) {
-                        case 1:
-                            mP.add(MouseEvent.BUTTON1_DOWN_MASK);
-                            break;
-                        case 2:
-                            mP.add(MouseEvent.BUTTON2_DOWN_MASK);
-                            break;
-                        case 3:
-                            mP.add(MouseEvent.BUTTON3_DOWN_MASK);
-                            break;
+                    break;
+                case MOUSE_BUTTON:
+                    if (currInput) {
+                        mP |= column.getCode();
+                    } else {
+                        mR |= column.getCode();
                     }
-                }
-            } else {
-                throw new IllegalArgumentException("Unknown instruction key: " + key);
+                    break;
+                default:
+                    break;
             }
         }
 
+        int x = getCoordinate(schema.getMouseXIndex()), y = getCoordinate(schema.getMouseYIndex());
         log.trace("x: {}, y: {}", x, y);
 
-        Point p;
+        int coords;
         if (x != -1 && y != -1) {
-            p = new Point(X_OFFSET + x, Y_OFFSET + y);
+            coords = CompiledInstruction.pack(x, y);
         } else {
-            p = null;
+            coords = CompiledInstruction.NO_MOVE;
         }
 
-        return new CompiledInstruction(p, mP.isEmpty() ? null : mP, mR.isEmpty() ? null : mR,
-                kP.isEmpty() ? null : kP, kR.isEmpty() ? null : kR);
+        return CompiledInstruction.of(coords, mP, mR,
+                kP == null ? NO_KEYS : Arrays.copyOf(kP, kPSize), kR == null ? NO_KEYS : Arrays.copyOf(kR, kRSize));
     }
 
     /**
-     * From the given word representation of a key, determines and returns the keycode
+     * Returns the mouse coordinate in the given column
      *
-     * @param key the word representation of a key
-     * @return the associated keycode
+     * @param index the index of the {@code MX} or {@code MY} column, or -1 if there is none
+     * @return the mouse coordinate in the given column, or -1 if there is none
+     * @throws NumberFormatException if the value in the column is not a number
      */
-    private int getKeyCode(String key) {
-        switch (key) {
-            case "SHIFT":
-                return VK_SHIFT;
-            case "TAB":
-                return VK_TAB;
-            case "CTRL":
-                return VK_CONTROL;
-            case "ALT":
-                return VK_ALT;
-            case "BACKSPACE":
-                return VK_BACK_SPACE;
-            case "INSERT":
-                return VK_INSERT;
-            case "DELETE":
-                return VK_DELETE;
-            case "UP":
-                return VK_UP;
-            case "LEFT":
-                return VK_LEFT;
-            case "DOWN":
-                return VK_DOWN;
-            case "RIGHT":
-                return VK_RIGHT;
-            case "ENTER":
-                return VK_ENTER;
-            default:
-                if (key.length() == 1) {
-                    char c = key.charAt(0);
-                    int keyCode = KeyEvent.getExtendedKeyCodeForChar(c);
-                    if (keyCode == VK_UNDEFINED) {
-                        throw new IllegalArgumentException("Unknown instruction key: " + key);
-                    } else {
-                        return keyCode;
-                    }
-                } else {
-                    throw new IllegalArgumentException("Unknown instruction key: " + key);
-                }
+    private int getCoordinate(int index) {
+        if (index == -1) {
+            return -1;
+        }
+
+        ColumnSchema.Column column = schema.getColumn(index);
+        return column.isInput(codes[index]) ? column.getNumber(codes[index]) : -1;
+    }
+
+    /**
+     * Checks that this instruction can be compiled after the given one, without compiling it.
+     *
+     * @param reference an instruction of the same playback, which this one must have the same keys as
+     * @throws InvalidFileFormatException if this instruction would fail to compile
+     */
+    public void validate(SimpleInstruction reference) {
+        if (!reference.schema.hasSameColumns(schema)) {
+            throw new InvalidFileFormatException("Instruction keys differ: " + this + " vs " + reference);
+        }
+
+        try {
+            int x = getCoordinate(schema.getMouseXIndex()), y = getCoordinate(schema.getMouseYIndex());
+            if (x != -1 && y != -1) {
+                CompiledInstruction.pack(x, y);
+            }
+        } catch (IllegalArgumentException iae) {
+            throw new InvalidFileFormatException("Invalid instruction " + this + ": " + iae.getMessage(), iae);
         }
     }
 
@@ -341,6 +206,6 @@ public class SimpleInstruction {
      */
     @Override
     public String toString() {
-        return "[SimpleInstruction " + inputMap + ']';
+        return "[SimpleInstruction " + getInputMap() + ']';
     }
 }
@@ -1,22 +1,39 @@
 package com.github.leftisttachyon.input;
 
-import com.github.leftisttachyon.input.compiled.CompiledInstruction;
 import com.github.leftisttachyon.input.compiled.CompiledPlayback;
+import com.github.leftisttachyon.input.compiled.EventTape;
+import com.github.leftisttachyon.input.sink.InputSink;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.FrameScheduler;
+import com.github.leftisttachyon.timing.FrameTimingRecorder;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.awt.*;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * A class that represents a collection of instructions to execute.
@@ -29,43 +46,123 @@ public class SimplePlayback implements Iterable<SimpleInstruction> {
     /**
      * A cache to store {@link SimplePlayback} objects to prevent duplication
      */
-    private static final HashMap<String, SimplePlayback> PLAYBACK_CACHE = new HashMap<>();
+    @Getter
+    private static final PlaybackCache cache = new PlaybackCache(PlaybackCache.DEFAULT_BUDGET,
+            FileWatcher.getInstance());
+    /**
+     * The number of frames in each chunk that {@link #compile()} compiles in parallel
+     */
+    static final int COMPILE_CHUNK_FRAMES = 1 << 16;
+    /**
+     * The estimated size of a {@link PlaybackNode}, in bytes
+     */
+    private static final int NODE_BYTES = 64;
+    /**
+     * The number of lines that are read between reports of parsing progress
+     */
+    private static final int PROGRESS_LINES = 4096;
 
     /**
-     * Creates a new {@link SimplePlayback} object from the given {@link File}.
+     * Creates a new {@link SimplePlayback} object from the given {@link File}, or reuses a cached one if the file
+     * and everything it includes have not changed.
      *
      * @param file the {@code File} to parse
      * @return the created {@link SimplePlayback} object
+     * @see PlaybackCache
      */
     public static SimplePlayback createPlayback(File file) {
-        String absPath = null;
-        try {
-            absPath = file.getCanonicalPath();
-        } catch (IOException e) {
-            log.warn("Could not find the canonical path of file", e);
-        }
+        return cache.get(file);
+    }
 
-        if (absPath != null && PLAYBACK_CACHE.containsKey(absPath)) {
-            return PLAYBACK_CACHE.get(absPath);
-        } else {
-            SimplePlayback output = new SimplePlayback(file);
-            PLAYBACK_CACHE.put(absPath, output);
+    /**
+     * Clears the playback cache.
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
 
-            return output;
+    /**
+     * Computes the SHA-256 hash of the source of the given file: the hashes of its contents and of the contents of
+     * every file it includes, in order. The hashes of files that the cache trusts, along with everything they
+     * include, are taken from it without reading them.
+     *
+     * @param file the file to hash
+     * @return the SHA-256 hash of the source of the given file
+     * @throws IOException if a file could not be read
+     */
+    public static byte[] hashSource(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
+
+        hashSource(file.toPath(), digest, new HashSet<>());
+        return digest.digest();
     }
 
     /**
-     * Clears the playback cache.
+     * Adds the given file and the files it includes to the given digest
+     *
+     * @param path   the path of the file to hash
+     * @param digest the {@link MessageDigest} to add to
+     * @param open   the files that are currently being hashed, to stop include cycles
+     * @throws IOException if a file could not be read
      */
-    public static void clearCache() {
-        PLAYBACK_CACHE.clear();
+    private static void hashSource(Path path, MessageDigest digest, HashSet<Path> open) throws IOException {
+        Path canonical = path.toRealPath();
+        if (cache.hashTrusted(canonical, digest)) {
+            return;
+        }
+        if (!open.add(canonical)) {
+            throw new InvalidFileFormatException("Include cycle at " + canonical);
+        }
+
+        byte[] contents = Files.readAllBytes(canonical);
+        digest.update(PlaybackCache.hash(contents));
+
+        for (String line : new String(contents, StandardCharsets.UTF_8).split("\n")) {
+            String content = line.strip();
+            if (content.startsWith("INCLUDE ")) {
+                hashSource(Paths.get(canonical.getParent().toString(), content.substring(8)), digest, open);
+            }
+        }
+
+        open.remove(canonical);
     }
 
     /**
-     * The collection of instructions to execute.
+     * The file that this playback was parsed from
+     */
+    @Getter
+    private final File file;
+    /**
+     * The playbacks of the files that this one includes, in order
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final ArrayList<SimplePlayback> includes = new ArrayList<>();
+    /**
+     * The estimated memory used by the nodes of this playback, not counting the files it includes, in bytes
+     */
+    private long estimatedSize = NODE_BYTES;
+    /**
+     * Told how many lines have been read while this playback is being parsed, {@code null} once it has been parsed
      */
-    private ArrayList<SimpleInstruction> simpleInstructions;
+    private LongConsumer linesRead;
+    /**
+     * The number of lines read that have not been reported to {@link #linesRead} yet
+     */
+    private int unreportedLines;
+    /**
+     * The root of the tree of instructions to execute.
+     */
+    private PlaybackNode root = new SequenceNode(List.of());
+    /**
+     * The compiled frames of this playback on its own, as if nothing came before it, or {@code null} if it has not
+     * been compiled yet. Playbacks that include this one copy it instead of compiling its frames again.
+     */
+    private volatile EventTape tape;
 
     /**
      * Creates a {@link SimplePlayback} object from the given {@link File}.
@@ -73,18 +170,44 @@ public class SimplePlayback implements Iterable<SimpleInstruction> {
      * @param toParse the {@code File} to parse
      */
     private SimplePlayback(File toParse) {
-        parseFile(toParse);
+        file = toParse;
+    }
+
+    /**
+     * Parses the given {@link File} without going through the cache.
+     *
+     * @param toParse   the {@link File} to parse
+     * @param contents  the contents of the file, or {@code null} to read them from the file
+     * @param lookup    the {@link PlaybackCache.Lookup} to load included files through
+     * @param linesRead told how many lines have been read, every so often while parsing
+     * @return the parsed {@link SimplePlayback}
+     */
+    static SimplePlayback parse(File toParse, byte[] contents, PlaybackCache.Lookup lookup, LongConsumer linesRead) {
+        SimplePlayback output = new SimplePlayback(toParse);
+        output.linesRead = linesRead;
+        try {
+            output.parseFile(toParse, contents, lookup);
+            linesRead.accept(output.unreportedLines);
+        } finally {
+            output.linesRead = null;
+        }
+
+        return output;
     }
 
     /**
      * Parses the given {@link File}.
      *
-     * @param toParse the {@link File} to parse
+     * @param toParse  the {@link File} to parse
+     * @param contents the contents of the file, or {@code null} to read them from the file
+     * @param lookup   the {@link PlaybackCache.Lookup} to load included files through
      */
-    private void parseFile(File toParse) {
-        try (BufferedReader in = new BufferedReader(new FileReader(toParse))) {
+    private void parseFile(File toParse, byte[] contents, PlaybackCache.Lookup lookup) {
+        try (BufferedReader in = contents == null ? new BufferedReader(new FileReader(toParse)) :
+                new BufferedReader(new InputStreamReader(new ByteArrayInputStream(contents)))) {
             // read the header
             String line = in.readLine();
+            lineRead();
             InstructionFormatter format;
             if (line == null || !line.startsWith("!FORMAT: ")) {
                 throw new InvalidFileFormatException("Invalid or missing format declaration");
@@ -93,7 +216,7 @@ public class SimplePlayback implements Iterable<SimpleInstruction> {
             }
 
             // great, now start reading the file's true contents
-            simpleInstructions = readIndented(in, format, 0, toParse.getParent());
+            root = readIndented(in, format, 0, toParse.getParent(), lookup);
         } catch (IOException e) {
             log.warn("While reading the file, an IOException was thrown", e);
         }
@@ -106,14 +229,16 @@ public class SimplePlayback implements Iterable<SimpleInstruction> {
      * @param format           the {@link InstructionFormatter} object used to parse information
      * @param indentationLevel the amount of indentation this block is in
      * @param filePath         the path of the file that is being worked with
-     * @return an {@link ArrayList} of {@link SimpleInstruction}s to execute
+     * @param lookup           the {@link PlaybackCache.Lookup} to load included files through
+     * @return a {@link PlaybackNode} that holds the {@link SimpleInstruction}s to execute
      * @throws IOException if something goes wrong while reading the file
      * @see SimpleInstruction
      */
-    private ArrayList<SimpleInstruction> readIndented(BufferedReader in, InstructionFormatter format,
-                                                      final int indentationLevel, final String filePath)
+    private PlaybackNode readIndented(BufferedReader in, InstructionFormatter format,
+                                      final int indentationLevel, final String filePath, PlaybackCache.Lookup lookup)
             throws IOException {
-        ArrayList<SimpleInstruction> output = new ArrayList<>();
+        ArrayList<PlaybackNode> output = new ArrayList<>();
+        ArrayList<SimpleInstruction> block = new ArrayList<>();
 
         String line;
         while ((line = in.readLine()) != null) {
@@ -122,6 +247,7 @@ public class SimplePlayback implements Iterable<SimpleInstruction> {
             log.trace("content: {}", content);
 
             if (line.isBlank() || content.startsWith("#")) {
+                lineRead();
                 continue;
             }
 
@@ -139,106 +265,380 @@ public class SimplePlayback implements Iterable<SimpleInstruction> {
             }
 
             // guaranteed: indentationLevel * 4 == firstNonSpace
+            lineRead();
             if (content.startsWith("INCLUDE ")) {
                 Path path = Paths.get(filePath, content.substring(8));
                 log.trace("Fragment path: {}", path);
-                SimplePlayback inner = SimplePlayback.createPlayback(path.toFile());
-                output.addAll(inner.simpleInstructions);
+                SimplePlayback inner = lookup.get(path.toFile());
+                includes.add(inner);
+                flushBlock(block, output);
+                output.add(inner.root);
+            } else if (content.startsWith("MARKER ")) {
+                String name = content.substring(7).strip();
+                if (name.isEmpty()) {
+                    throw new InvalidFileFormatException("Marker without a name");
+                }
+                flushBlock(block, output);
+                output.add(new MarkerNode(name));
+                estimatedSize += NODE_BYTES;
             } else if (content.startsWith("REPEAT ")) {
                 int repeat = Integer.parseInt(content.substring(7));
-                ArrayList<SimpleInstruction> repeated = readIndented(in, format, indentationLevel + 1, filePath);
-                for (int i = 0; i < repeat; i++) {
-                    output.addAll(repeated);
+                if (repeat < 0) {
+                    throw new InvalidFileFormatException("Negative repeat count: " + content);
                 }
+                PlaybackNode repeated = readIndented(in, format, indentationLevel + 1, filePath, lookup);
+                flushBlock(block, output);
+                output.add(new RepeatNode(repeat, repeated));
+                estimatedSize += NODE_BYTES;
             } else {
-                output.add(format.parse(content));
+                SimpleInstruction parsed = format.parse(content);
+                if (parsed == null) {
+                    throw new InvalidFileFormatException("Line does not match the format: " + content);
+                }
+                block.add(parsed);
+                estimatedSize += parsed.getEstimatedSize();
             }
 
             in.mark(1_000);
         }
+        flushBlock(block, output);
+
+        return output.size() == 1 ? output.get(0) : new SequenceNode(output);
+    }
+
+    /**
+     * Counts a line as read, and reports the lines read so far every {@link #PROGRESS_LINES} lines
+     */
+    private void lineRead() {
+        if (++unreportedLines == PROGRESS_LINES) {
+            linesRead.accept(unreportedLines);
+            unreportedLines = 0;
+        }
+    }
 
+    /**
+     * Moves the given run of plain instructions, if there are any, into a {@link BlockNode} at the end of the given
+     * list of nodes.
+     *
+     * @param block the run of plain instructions, which is cleared afterwards
+     * @param nodes the list of nodes to add to
+     */
+    private void flushBlock(ArrayList<SimpleInstruction> block, ArrayList<PlaybackNode> nodes) {
+        if (!block.isEmpty()) {
+            nodes.add(new BlockNode(block));
+            estimatedSize += NODE_BYTES;
+            block.clear();
+        }
+    }
+
+    /**
+     * Returns a copy of this playback that includes the given playbacks instead of the ones it was parsed with, for
+     * when this file is unchanged but files it includes changed. Only the nodes that lead to a changed include are
+     * rebuilt; everything else, including the compiled frames of the includes that did not change, is shared.
+     *
+     * @param current the playbacks of the files that this one includes now, in the same order as
+     *                {@link #getIncludes()}
+     * @return a {@link SimplePlayback} of the same file with the given includes
+     */
+    SimplePlayback relink(List<SimplePlayback> current) {
+        IdentityHashMap<PlaybackNode, PlaybackNode> replacements = new IdentityHashMap<>();
+        for (int i = 0; i < includes.size(); i++) {
+            // unchanged includes map to themselves, so that they are not looked into
+            replacements.put(includes.get(i).root, current.get(i).root);
+        }
+
+        SimplePlayback output = new SimplePlayback(file);
+        output.root = root.relink(replacements);
+        output.includes.addAll(current);
+        output.estimatedSize = estimatedSize;
         return output;
     }
 
+    /**
+     * Returns the estimated memory used by this playback, not counting the files it includes. Once the playback has
+     * been compiled, this includes its compiled frames.
+     *
+     * @return the estimated memory used by this playback, in bytes
+     */
+    public long getEstimatedSize() {
+        EventTape compiled = tape;
+        return compiled == null ? estimatedSize : estimatedSize + compiled.getEstimatedSize();
+    }
+
+    /**
+     * Returns the number of frames that this playback expands to. Nothing is expanded to count them.
+     *
+     * @return the number of frames that this playback expands to
+     */
+    public long getFrameCount() {
+        return root.getFrameCount();
+    }
+
+    /**
+     * Returns the frame of every {@code MARKER} in this playback and the files it includes. A marker that is reached
+     * more than once, such as one inside a {@code REPEAT}, is given the first frame it is reached at.
+     *
+     * @return an unmodifiable map of each marker name to the frame it marks, in the order they are reached
+     */
+    public Map<String, Long> getMarkers() {
+        LinkedHashMap<String, Long> output = new LinkedHashMap<>();
+        root.collectMarkers(0, output);
+
+        return Collections.unmodifiableMap(output);
+    }
+
+    /**
+     * Checks every instruction of this playback without expanding or compiling anything, so that mistakes anywhere
+     * in the file are found before any input is sent. Each line is checked once, no matter how often it repeats.
+     *
+     * @throws InvalidFileFormatException if an instruction would fail to compile
+     */
+    public void validate() {
+        SimpleInstruction[] first = new SimpleInstruction[1];
+        root.forEachInstruction(instruction -> {
+            if (first[0] == null) {
+                first[0] = instruction;
+            }
+            instruction.validate(first[0]);
+        });
+    }
+
     /**
      * Returns an {@link Iterator} that goes through all of the {@link SimpleInstruction}s in this object.
      *
      * @return an {@link Iterator} that goes through all of the {@link SimpleInstruction}s in this object.
      */
     public Iterator<SimpleInstruction> iterator() {
-        return simpleInstructions.iterator();
+        return root.iterator();
     }
 
     /**
      * Executes these instructions as fast as possible.
      *
-     * @param r the {@link Robot} object to execute these actions with
+     * @param sink the {@link InputSink} object to execute these actions with
      */
-    public void executeQuick(Robot r) {
+    public void executeQuick(InputSink sink) {
         Iterator<SimpleInstruction> iter = iterator();
         SimpleInstruction prev = null;
         while (iter.hasNext()) {
             SimpleInstruction curr = iter.next();
-            curr.execute(r, prev);
+            curr.execute(sink, prev);
 
             prev = curr;
         }
     }
 
     /**
-     * Executes one set of instructions once every given amount of milliseconds until no simpleInstructions remain.
+     * Executes one set of instructions once every given frame period until no simpleInstructions remain.
+     * Instructions are paced against absolute deadlines, so the time spent executing an instruction does not add to
+     * the frame period.
      *
-     * @param r      the {@link Robot} object to execute these actions with
-     * @param millis the amount of milliseconds to wait before executing the next set of instructions
+     * @param sink   the {@link InputSink} object to execute these actions with
+     * @param period the time between the starts of consecutive sets of instructions
+     * @return the started {@link Thread}
+     * @see FrameScheduler
      */
-    public void execute(Robot r, long millis) {
+    public Thread execute(InputSink sink, FramePeriod period) {
+        return execute(sink, period, new FrameTimingRecorder());
+    }
+
+    /**
+     * Executes one set of instructions once every given frame period until no simpleInstructions remain, recording
+     * the timing of every frame.
+     *
+     * @param sink     the {@link InputSink} object to execute these actions with
+     * @param period   the time between the starts of consecutive sets of instructions
+     * @param recorder the {@link FrameTimingRecorder} to record frame timing with
+     * @return the started {@link Thread}
+     * @see FrameScheduler
+     */
+    public Thread execute(InputSink sink, FramePeriod period, FrameTimingRecorder recorder) {
         Iterator<SimpleInstruction> iter = iterator();
-        ScheduledExecutorService ses = Executors.newSingleThreadScheduledExecutor();
-        SimpleInstruction[] prev = new SimpleInstruction[1];
-        double[] prevEnd = {System.nanoTime()};
-        ses.scheduleAtFixedRate(() -> {
-            double start = System.nanoTime(), total, betweenTotal = start - prevEnd[0];
-            betweenTotal /= 1_000_000;
-            log.trace("Between instructions: {} ms", String.format("%.3f", betweenTotal));
-
-            try {
-                if (iter.hasNext()) {
+        FrameScheduler scheduler = new FrameScheduler(period);
+
+        Thread output = new Thread(() -> {
+            SimpleInstruction prev = null;
+            scheduler.start();
+            for (long frame = 0; iter.hasNext(); frame++) {
+                long lateness;
+                try {
+                    lateness = scheduler.awaitFrame(frame);
+                } catch (InterruptedException e) {
+                    recorder.setStopped(true);
+                    break;
+                }
+
+                long start = System.nanoTime();
+                try {
                     SimpleInstruction curr = iter.next();
-                    curr.execute(r, prev[0]);
+                    curr.execute(sink, prev);
 
-                    prev[0] = curr;
-                } else {
-                    ses.shutdown();
-                    log.info("Shutdown initiated");
+                    prev = curr;
+                } catch (Exception e) {
+                    log.error("While executing the instruction set, an exception was thrown.", e);
                 }
-            } catch (Exception e) {
-                log.error("While executing the instruction set, an exception was thrown.", e);
+
+                recorder.record(lateness, System.nanoTime() - start);
             }
+            recorder.setMissed(scheduler.getMissed());
 
-            total = (prevEnd[0] = System.nanoTime()) - start;
-            total /= 1_000_000;
-            log.trace("Executing one instruction: {} ms", String.format("%.3f", total));
-            log.info("Total for frame: {} ms", String.format("%.3f", total + betweenTotal));
-        }, 0, millis, TimeUnit.MILLISECONDS);
+            log.info("Execution finished: {}", recorder.getReport());
+        });
+        output.start();
+
+        return output;
     }
 
     /**
-     * Compiles this {@link SimplePlayback} into a {@link CompiledPlayback}.
+     * Compiles this {@link SimplePlayback} into a {@link CompiledPlayback}.<br/>
+     * Each file is compiled on its own and kept, so only files that changed, or that include a file that changed,
+     * are compiled again. They are compiled in order of their includes: first the files that include nothing that
+     * needs compiling, in parallel, then the files that include only those, and so on. A file that includes others
+     * copies their compiled frames in bulk, compiling only the first frame of each again since it depends on what
+     * comes before. A file that includes nothing is split into chunks of {@link #COMPILE_CHUNK_FRAMES} frames that
+     * are compiled in parallel and joined in order; each chunk only needs the instruction just before it, which is
+     * read straight from the tree.
      *
      * @return a {@link CompiledPlayback} that represents this object
      */
     public CompiledPlayback compile() {
-        ArrayList<CompiledInstruction> list = new ArrayList<>();
-        log.debug("Instructions to compile: {}", simpleInstructions);
-        if (!simpleInstructions.isEmpty()) {
-            list.add(simpleInstructions.get(0).compile(null));
-            int max = simpleInstructions.size() - 1;
-            for (int i = 0; i < max; i++) {
-                list.add(simpleInstructions.get(i + 1).compile(simpleInstructions.get(i)));
+        return compile(ProgressListener.NONE);
+    }
+
+    /**
+     * Compiles this {@link SimplePlayback} into a {@link CompiledPlayback}, telling the given listener how many frames
+     * have been compiled after each chunk.
+     *
+     * @param progress the {@link ProgressListener} to tell about the frames compiled
+     * @return a {@link CompiledPlayback} that represents this object
+     * @see #compile()
+     */
+    public CompiledPlayback compile(ProgressListener progress) {
+        checkFrameCount();
+
+        IdentityHashMap<SimplePlayback, Integer> levels = new IdentityHashMap<>();
+        int height = uncompiledLevel(levels);
+        List<List<SimplePlayback>> byLevel = new ArrayList<>();
+        for (int i = 0; i <= height; i++) {
+            byLevel.add(new ArrayList<>());
+        }
+        levels.forEach((playback, level) -> {
+            if (level >= 0) {
+                byLevel.get(level).add(playback);
             }
+        });
+        long total = byLevel.stream().flatMap(List::stream).mapToLong(SimplePlayback::getFrameCount).sum();
+        log.debug("Frames to compile: {} in {} of {} file(s)", total, byLevel.stream().mapToInt(List::size).sum(),
+                levels.size());
+
+        AtomicLong compiled = new AtomicLong();
+        progress.progress("Compiling", 0, total);
+        LongConsumer framesCompiled = count -> progress.progress("Compiling", compiled.addAndGet(count), total);
+        for (List<SimplePlayback> level : byLevel) {
+            level.parallelStream().forEach(playback -> playback.tape = playback.compileTape(framesCompiled));
         }
+        // the new tapes count against the budget of the cache
+        cache.recount();
 
-        return new CompiledPlayback(list);
+        return new CompiledPlayback(tape);
+    }
+
+    /**
+     * Makes sure that this playback is short enough to compile
+     *
+     * @throws InvalidFileFormatException if this playback has too many frames
+     */
+    private void checkFrameCount() {
+        long frames = getFrameCount();
+        if (frames > Integer.MAX_VALUE - 1) {
+            throw new InvalidFileFormatException("Too many frames to compile: " + frames);
+        }
+    }
+
+    /**
+     * Finds the level of this playback and of the playbacks it includes, which is the order they are compiled in.
+     * A playback that is already compiled has level -1, and the others have a level one higher than the highest of
+     * the playbacks they include.
+     *
+     * @param levels the levels found so far, which this adds to
+     * @return the level of this playback
+     */
+    private int uncompiledLevel(IdentityHashMap<SimplePlayback, Integer> levels) {
+        Integer known = levels.get(this);
+        if (known != null) {
+            return known;
+        }
+
+        int level = -1;
+        if (tape == null) {
+            level = 0;
+            for (SimplePlayback include : includes) {
+                level = Math.max(level, include.uncompiledLevel(levels) + 1);
+            }
+        }
+        levels.put(this, level);
+        return level;
+    }
+
+    /**
+     * Compiles this playback on its own, as if nothing came before it. The playbacks it includes must have been
+     * compiled already.
+     *
+     * @param framesCompiled told how many frames have been compiled after each part
+     * @return an {@link EventTape} of the frames of this playback
+     */
+    private EventTape compileTape(LongConsumer framesCompiled) {
+        checkFrameCount();
+        long frames = getFrameCount();
+        if (!includes.isEmpty()) {
+            IdentityHashMap<PlaybackNode, EventTape> compiled = new IdentityHashMap<>();
+            for (SimplePlayback include : includes) {
+                compiled.put(include.root, include.tape);
+            }
+
+            EventTape.Builder builder = new EventTape.Builder();
+            root.compile(null, builder, compiled);
+            framesCompiled.accept(frames);
+            return builder.build();
+        }
+
+        int chunks = (int) ((frames + COMPILE_CHUNK_FRAMES - 1) / COMPILE_CHUNK_FRAMES);
+        log.debug("Instructions to compile: {} in {} chunk(s)", frames, chunks);
+        if (chunks <= 1) {
+            EventTape output = compileRange(0, frames);
+            framesCompiled.accept(frames);
+            return output;
+        }
+
+        List<EventTape> tapes = IntStream.range(0, chunks).parallel()
+                .mapToObj(i -> {
+                    long start = (long) i * COMPILE_CHUNK_FRAMES, end = Math.min(start + COMPILE_CHUNK_FRAMES, frames);
+                    EventTape output = compileRange(start, end);
+                    framesCompiled.accept(end - start);
+                    return output;
+                })
+                .collect(Collectors.toList());
+        return EventTape.concat(tapes);
+    }
+
+    /**
+     * Compiles the given range of frames.
+     *
+     * @param start the index of the first frame to compile
+     * @param end   the index after the last frame to compile
+     * @return an {@link EventTape} of the given frames
+     */
+    private EventTape compileRange(long start, long end) {
+        EventTape.Builder tape = new EventTape.Builder();
+        Iterator<SimpleInstruction> iter = root.iterator(start == 0 ? 0 : start - 1);
+        SimpleInstruction prev = start == 0 ? null : iter.next();
+        for (long frame = start; frame < end; frame++) {
+            SimpleInstruction curr = iter.next();
+            tape.append(curr.compile(prev));
+            prev = curr;
+        }
+
+        return tape.build();
     }
 
     /**
@@ -248,15 +648,6 @@ public class SimplePlayback implements Iterable<SimpleInstruction> {
      */
     @Override
     public String toString() {
-        StringBuilder output = new StringBuilder("[SimplePlayback simpleInstructions={");
-        for (int i = 0; i < simpleInstructions.size(); i++) {
-            output.append(simpleInstructions.get(i).toString());
-            if (i != simpleInstructions.size() - 1) {
-                output.append(", ");
-            }
-        }
-        output.append("}]");
-
-        return output.toString();
+        return "[SimplePlayback frames=" + getFrameCount() + " root=" + root + "]";
     }
 }
@@ -0,0 +1,184 @@
+package com.github.leftisttachyon.input.compiled;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static com.github.leftisttachyon.input.compiled.EventTape.*;
+
+/**
+ * An index of what a compiled playback is holding at regular points, so that it can be started from any frame.<br/>
+ * The {@link InputState} before every {@link #INTERVAL}th step of the {@link EventTape} is stored in a few flat arrays,
+ * the same way the tape itself is. Finding the state at a frame takes a binary search for the step of the frame and
+ * then replays at most {@link #INTERVAL} steps from the checkpoint before it, however long the movie is.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public final class CheckpointIndex {
+    /**
+     * The number of steps between checkpoints
+     */
+    public static final int INTERVAL = 1024;
+
+    /**
+     * The {@link EventTape} that this index is over
+     */
+    private final EventTape tape;
+    /**
+     * Where the mouse was at each checkpoint, packed
+     */
+    private final int[] mouseCoords;
+    /**
+     * The mouse buttons held at each checkpoint
+     */
+    private final int[] buttons;
+    /**
+     * The index in {@link #keys} of the first key held at each checkpoint, plus the total number of keys at the end
+     */
+    private final int[] keyOffsets;
+    /**
+     * The keys held at each checkpoint, one checkpoint after another
+     */
+    private final int[] keys;
+
+    /**
+     * Builds the index of the given tape
+     *
+     * @param tape the {@link EventTape} to index
+     */
+    public CheckpointIndex(EventTape tape) {
+        this.tape = tape;
+
+        int checkpoints = tape.getStepCount() / INTERVAL + 1;
+        mouseCoords = new int[checkpoints];
+        buttons = new int[checkpoints];
+        keyOffsets = new int[checkpoints + 1];
+
+        int[] keys = new int[16];
+        Replay replay = new Replay(InputState.NONE);
+        for (int checkpoint = 0; checkpoint < checkpoints; checkpoint++) {
+            if (checkpoint != 0) {
+                replay.run(tape, (checkpoint - 1) * INTERVAL, checkpoint * INTERVAL);
+            }
+
+            InputState state = replay.getState();
+            mouseCoords[checkpoint] = state.getMouseCoords();
+            buttons[checkpoint] = state.getButtons();
+
+            int[] held = state.getKeys();
+            int offset = keyOffsets[checkpoint];
+            if (offset + held.length > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, offset + held.length));
+            }
+            System.arraycopy(held, 0, keys, offset, held.length);
+            keyOffsets[checkpoint + 1] = offset + held.length;
+        }
+        this.keys = Arrays.copyOf(keys, keyOffsets[checkpoints]);
+
+        log.debug("Indexed {} steps with {} checkpoints", tape.getStepCount(), checkpoints);
+    }
+
+    /**
+     * Returns what the playback is holding just before the given frame is executed
+     *
+     * @param frame the index of the frame, from 0 to the number of frames of the tape
+     * @return the {@link InputState} after every frame before the given one has been executed
+     */
+    public InputState getStateAt(int frame) {
+        if (frame < 0 || frame > tape.getFrameCount()) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + tape.getFrameCount());
+        }
+
+        int step = tape.nextStep(frame), checkpoint = step / INTERVAL;
+        InputState state = new InputState(mouseCoords[checkpoint], buttons[checkpoint],
+                Arrays.copyOfRange(keys, keyOffsets[checkpoint], keyOffsets[checkpoint + 1]));
+        if (step == checkpoint * INTERVAL) {
+            return state;
+        }
+
+        Replay replay = new Replay(state);
+        replay.run(tape, checkpoint * INTERVAL, step);
+        return replay.getState();
+    }
+
+    /**
+     * Follows the state of a playback through the operations of its tape
+     */
+    private static final class Replay {
+        /**
+         * Where the mouse is, packed
+         */
+        private int mouseCoords;
+        /**
+         * The mouse buttons that are held
+         */
+        private int buttons;
+        /**
+         * The keys that are held
+         */
+        private final HashSet<Integer> keys = new HashSet<>();
+
+        /**
+         * Creates a new {@link Replay}
+         *
+         * @param start the state to start from
+         */
+        private Replay(InputState start) {
+            mouseCoords = start.getMouseCoords();
+            buttons = start.getButtons();
+            for (int keyCode : start.getKeys()) {
+                keys.add(keyCode);
+            }
+        }
+
+        /**
+         * Applies the operations of the given steps
+         *
+         * @param tape  the {@link EventTape} to read
+         * @param start the index of the first step to apply
+         * @param end   the index after the last step to apply
+         */
+        private void run(EventTape tape, int start, int end) {
+            int[] offsets = tape.getStepOffsets(), args = tape.getArgs();
+            byte[] opcodes = tape.getOpcodes();
+            for (int i = offsets[start], last = offsets[end]; i < last; i++) {
+                switch (opcodes[i]) {
+                    case OP_MOVE:
+                        mouseCoords = args[i];
+                        break;
+                    case OP_MOUSE_PRESS:
+                        buttons |= args[i];
+                        break;
+                    case OP_MOUSE_RELEASE:
+                        buttons &= ~args[i];
+                        break;
+                    case OP_KEY_PRESS:
+                        keys.add(args[i]);
+                        break;
+                    case OP_KEY_RELEASE:
+                        keys.remove(args[i]);
+                        break;
+                }
+            }
+        }
+
+        /**
+         * Returns the state so far
+         *
+         * @return the {@link InputState} so far
+         */
+        private InputState getState() {
+            int[] held = new int[keys.size()];
+            int i = 0;
+            for (int keyCode : keys) {
+                held[i++] = keyCode;
+            }
+            Arrays.sort(held);
+
+            return new InputState(mouseCoords, buttons, held);
+        }
+    }
+}
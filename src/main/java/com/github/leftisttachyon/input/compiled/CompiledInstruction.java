@@ -1,104 +1,184 @@
 package com.github.leftisttachyon.input.compiled;
 
 import com.github.leftisttachyon.input.SimpleInstruction;
+import com.github.leftisttachyon.input.sink.InputSink;
 import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Setter;
-import lombok.extern.slf4j.Slf4j;
 
-import java.awt.*;
-import java.util.Set;
+import java.util.Arrays;
 
 /**
- * A class that represents a compiled {@link SimpleInstruction}
+ * A class that represents a compiled {@link SimpleInstruction}.<br/>
+ * Everything is stored as primitives: the mouse coordinates are packed into a single {@code int}, mouse buttons are
+ * kept as button masks and keys as arrays of key codes, so executing an instruction does not allocate. Instructions
+ * are immutable, and instructions that do nothing are all the same {@link #EMPTY} object.
  *
  * @author Jed Wang
  * @since 1.0.0
  */
-@Slf4j
 @Data
 @Setter(AccessLevel.NONE)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
 public class CompiledInstruction {
     /**
-     * The coordinates for the mouse to go to
+     * The packed mouse coordinates that mean "do not move the mouse"
      */
-    private final Point mouseCoords;
+    public static final int NO_MOVE = Integer.MIN_VALUE;
     /**
-     * The mouse buttons to be pressed
+     * The smallest coordinate that can be packed
      */
-    private final Set<Integer> mousePress;
+    public static final int MIN_COORDINATE = Short.MIN_VALUE + 1;
     /**
-     * The mouse buttons to be released
+     * The largest coordinate that can be packed
      */
-    private final Set<Integer> mouseRelease;
+    public static final int MAX_COORDINATE = Short.MAX_VALUE;
     /**
-     * The keyboard buttons to be pressed
+     * An empty array of key codes
      */
-    private final Set<Integer> keyPress;
+    private static final int[] NO_KEYS = new int[0];
     /**
-     * The keyboard buttons to be released
+     * The instruction that does nothing
      */
-    private final Set<Integer> keyRelease;
+    public static final CompiledInstruction EMPTY = new CompiledInstruction(NO_MOVE, 0, 0, NO_KEYS, NO_KEYS);
+
+    /**
+     * The coordinates for the mouse to go to, packed with {@link #pack(int, int)}, or {@link #NO_MOVE}
+     */
+    private final int mouseCoords;
+    /**
+     * The mask of the mouse buttons to be pressed
+     */
+    private final int mousePress;
+    /**
+     * The mask of the mouse buttons to be released
+     */
+    private final int mouseRelease;
+    /**
+     * The key codes of the keyboard buttons to be pressed
+     */
+    private final int[] keyPress;
+    /**
+     * The key codes of the keyboard buttons to be released
+     */
+    private final int[] keyRelease;
+
+    /**
+     * Creates a {@link CompiledInstruction}, reusing {@link #EMPTY} if the instruction would do nothing.
+     *
+     * @param mouseCoords  the packed coordinates for the mouse to go to, or {@link #NO_MOVE}
+     * @param mousePress   the mask of the mouse buttons to be pressed
+     * @param mouseRelease the mask of the mouse buttons to be released
+     * @param keyPress     the key codes of the keyboard buttons to be pressed, which must not be modified afterwards
+     * @param keyRelease   the key codes of the keyboard buttons to be released, which must not be modified afterwards
+     * @return the created {@link CompiledInstruction}
+     */
+    public static CompiledInstruction of(int mouseCoords, int mousePress, int mouseRelease,
+                                         int[] keyPress, int[] keyRelease) {
+        if (mouseCoords == NO_MOVE && mousePress == 0 && mouseRelease == 0 &&
+                keyPress.length == 0 && keyRelease.length == 0) {
+            return EMPTY;
+        }
+
+        return new CompiledInstruction(mouseCoords, mousePress, mouseRelease,
+                keyPress.length == 0 ? NO_KEYS : keyPress, keyRelease.length == 0 ? NO_KEYS : keyRelease);
+    }
+
+    /**
+     * Packs the given mouse coordinates into a single {@code int}
+     *
+     * @param x the x-coordinate, from {@link #MIN_COORDINATE} to {@link #MAX_COORDINATE}
+     * @param y the y-coordinate, from {@link #MIN_COORDINATE} to {@link #MAX_COORDINATE}
+     * @return the packed coordinates
+     */
+    public static int pack(int x, int y) {
+        if (x < MIN_COORDINATE || x > MAX_COORDINATE || y < MIN_COORDINATE || y > MAX_COORDINATE) {
+            throw new IllegalArgumentException("Mouse coordinates out of range: (" + x + ", " + y + ")");
+        }
+
+        return x << 16 | (y & 0xFFFF);
+    }
+
+    /**
+     * Returns the x-coordinate of the given packed coordinates
+     *
+     * @param packed the packed coordinates
+     * @return the x-coordinate
+     */
+    public static int unpackX(int packed) {
+        return packed >> 16;
+    }
+
+    /**
+     * Returns the y-coordinate of the given packed coordinates
+     *
+     * @param packed the packed coordinates
+     * @return the y-coordinate
+     */
+    public static int unpackY(int packed) {
+        return (short) packed;
+    }
+
+    /**
+     * Returns whether this instruction moves the mouse
+     *
+     * @return whether this instruction moves the mouse
+     */
+    public boolean hasMouseMove() {
+        return mouseCoords != NO_MOVE;
+    }
 
     /**
      * Executes this {@link CompiledInstruction}.
      *
-     * @param r the {@link Robot} object to execute these instructions with
+     * @param sink the {@link InputSink} object to execute these instructions with
      */
-    public void execute(Robot r) {
-        if (mouseCoords != null) {
-            r.mouseMove(mouseCoords.x, mouseCoords.y);
+    public void execute(InputSink sink) {
+        if (mouseCoords != NO_MOVE) {
+            sink.mouseMove(unpackX(mouseCoords), unpackY(mouseCoords));
         }
 
-        if (mousePress != null && !mousePress.isEmpty()) {
-            for (int i : mousePress) {
-                log.trace("Invalid? {}", i);
-                r.mousePress(i);
-            }
+        for (int buttons = mousePress; buttons != 0; buttons &= buttons - 1) {
+            sink.mousePress(Integer.lowestOneBit(buttons));
         }
-        if (mouseRelease != null && !mouseRelease.isEmpty()) {
-            for (int i : mouseRelease) {
-                r.mouseRelease(i);
-            }
+        for (int buttons = mouseRelease; buttons != 0; buttons &= buttons - 1) {
+            sink.mouseRelease(Integer.lowestOneBit(buttons));
         }
 
-        if (keyPress != null && !keyPress.isEmpty()) {
-            for (int i : keyPress) {
-                r.keyPress(i);
-            }
+        for (int i : keyPress) {
+            sink.keyPress(i);
         }
-        if (keyRelease != null && !keyRelease.isEmpty()) {
-            for (int i : keyRelease) {
-                r.keyRelease(i);
-            }
+        for (int i : keyRelease) {
+            sink.keyRelease(i);
         }
     }
 
     @Override
     public String toString() {
         StringBuilder output = new StringBuilder("[CompiledInstruction");
-        if (mouseCoords != null) {
+        if (mouseCoords != NO_MOVE) {
             output.append(" mouseCoords=(");
-            output.append(mouseCoords.x);
+            output.append(unpackX(mouseCoords));
             output.append(", ");
-            output.append(mouseCoords.y);
+            output.append(unpackY(mouseCoords));
             output.append(")");
         }
-        if (mousePress != null && !mousePress.isEmpty()) {
+        if (mousePress != 0) {
             output.append(" mousePress=");
             output.append(mousePress);
         }
-        if (mouseRelease != null && !mouseRelease.isEmpty()) {
+        if (mouseRelease != 0) {
             output.append(" mouseRelease=");
             output.append(mouseRelease);
         }
-        if (keyPress != null && !keyPress.isEmpty()) {
+        if (keyPress.length != 0) {
             output.append(" keyPress=");
-            output.append(keyPress);
+            output.append(Arrays.toString(keyPress));
         }
-        if (keyRelease != null && !keyRelease.isEmpty()) {
+        if (keyRelease.length != 0) {
             output.append(" keyRelease=");
-            output.append(keyRelease);
+            output.append(Arrays.toString(keyRelease));
         }
         output.append(']');
 
@@ -0,0 +1,288 @@
+package com.github.leftisttachyon.input.compiled;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A class that saves and loads {@link CompiledPlayback}s as binary {@code .rhoc} files.<br/>
+ * The file is laid out as:
+ * <ol>
+ * <li>the magic number {@code RHOC} and the format version</li>
+ * <li>the SHA-256 hash of the source that the movie was compiled from</li>
+ * <li>the schema: the number of opcodes, then each opcode and its name</li>
+ * <li>the number of frames, of steps and of operations</li>
+ * <li>the step frames, the step offsets, the operation arguments and the opcodes of the {@link EventTape}</li>
+ * <li>the CRC-32 of everything before it</li>
+ * </ol>
+ * Everything is big-endian. Files are loaded through a memory-mapped {@link FileChannel} and copied straight into
+ * the arrays of the tape, so nothing is parsed.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public final class CompiledMovieFile {
+    /**
+     * The file extension of compiled movies
+     */
+    public static final String EXTENSION = ".rhoc";
+    /**
+     * The magic number at the start of every compiled movie, {@code RHOC} in ASCII
+     */
+    private static final int MAGIC = 0x52484F43;
+    /**
+     * The version of the format that is written
+     */
+    private static final int VERSION = 3;
+    /**
+     * The length of a source hash, in bytes
+     */
+    private static final int HASH_LENGTH = 32;
+    /**
+     * The names of the opcodes, by opcode
+     */
+    private static final String[] OPCODE_NAMES = {"MOVE", "MOUSE_PRESS", "MOUSE_RELEASE", "KEY_PRESS", "KEY_RELEASE"};
+    /**
+     * The schema section, as it is written
+     */
+    private static final byte[] SCHEMA = createSchema();
+
+    /**
+     * No instances
+     */
+    private CompiledMovieFile() {
+    }
+
+    /**
+     * Creates the schema section
+     *
+     * @return the bytes of the schema section
+     */
+    private static byte[] createSchema() {
+        int length = Integer.BYTES;
+        for (String name : OPCODE_NAMES) {
+            length += 2 + name.length();
+        }
+
+        ByteBuffer output = ByteBuffer.allocate(length);
+        output.putInt(OPCODE_NAMES.length);
+        for (int i = 0; i < OPCODE_NAMES.length; i++) {
+            output.put((byte) i);
+            output.put((byte) OPCODE_NAMES[i].length());
+            output.put(OPCODE_NAMES[i].getBytes(StandardCharsets.US_ASCII));
+        }
+
+        return output.array();
+    }
+
+    /**
+     * Returns the path that the compiled version of the given source file is kept at
+     *
+     * @param source the path of the source file
+     * @return the path of the compiled movie
+     */
+    public static Path pathFor(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+
+    /**
+     * Writes the given {@link CompiledPlayback} to the given file. The file is written to a temporary file first and
+     * moved into place, so a half-written file is never left behind.
+     *
+     * @param playback   the {@link CompiledPlayback} to write
+     * @param path       the path of the file to write
+     * @param sourceHash the SHA-256 hash of the source that the playback was compiled from
+     * @throws IOException if the file could not be written
+     */
+    public static void write(CompiledPlayback playback, Path path, byte[] sourceHash) throws IOException {
+        if (sourceHash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("The source hash must be " + HASH_LENGTH + " bytes long");
+        }
+
+        EventTape tape = playback.getTape();
+        int[] stepFrames = tape.getStepFrames(), stepOffsets = tape.getStepOffsets(), args = tape.getArgs();
+        byte[] opcodes = tape.getOpcodes();
+
+        long length = 2L * Integer.BYTES + HASH_LENGTH + SCHEMA.length + 3L * Integer.BYTES
+                + (long) stepFrames.length * Integer.BYTES + (long) stepOffsets.length * Integer.BYTES
+                + (long) args.length * Integer.BYTES + opcodes.length + Integer.BYTES;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("The movie is too large to save: " + length + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.put(sourceHash);
+        buffer.put(SCHEMA);
+        buffer.putInt(tape.getFrameCount());
+        buffer.putInt(tape.getStepCount());
+        buffer.putInt(tape.getOperationCount());
+        buffer.asIntBuffer().put(stepFrames);
+        buffer.position(buffer.position() + stepFrames.length * Integer.BYTES);
+        buffer.asIntBuffer().put(stepOffsets);
+        buffer.position(buffer.position() + stepOffsets.length * Integer.BYTES);
+        buffer.asIntBuffer().put(args);
+        buffer.position(buffer.position() + args.length * Integer.BYTES);
+        buffer.put(opcodes);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Wrote {} frames to {}", tape.getFrameCount(), path);
+    }
+
+    /**
+     * Loads a {@link CompiledPlayback} from the given file, if the file exists, is intact and was compiled from the
+     * given source.
+     *
+     * @param path       the path of the file to load
+     * @param sourceHash the SHA-256 hash of the current source
+     * @return the loaded {@link CompiledPlayback}, or {@code null} if the file is missing, stale or damaged
+     */
+    public static CompiledPlayback load(Path path, byte[] sourceHash) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                log.warn("{} is too large to load", path);
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size < 2 * Integer.BYTES + HASH_LENGTH || buffer.getInt() != MAGIC) {
+                log.warn("{} is not a compiled movie", path);
+                return null;
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                log.info("{} is version {} instead of version {}", path, version, VERSION);
+                return null;
+            }
+
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(hash);
+            if (!Arrays.equals(hash, sourceHash)) {
+                log.debug("{} was compiled from a different source", path);
+                return null;
+            }
+
+            return readTape(path, buffer);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not load " + path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads everything after the source hash.
+     *
+     * @param path   the path of the file being read
+     * @param buffer the mapped file, positioned just after the source hash
+     * @return the loaded {@link CompiledPlayback}, or {@code null} if the file is damaged
+     */
+    private static CompiledPlayback readTape(Path path, MappedByteBuffer buffer) {
+        byte[] schema = new byte[SCHEMA.length];
+        buffer.get(schema);
+        if (!Arrays.equals(schema, SCHEMA)) {
+            log.warn("{} uses a different set of opcodes", path);
+            return null;
+        }
+
+        int frames = buffer.getInt(), steps = buffer.getInt(), ops = buffer.getInt();
+        long expected = buffer.position() + (2L * steps + 1) * Integer.BYTES + (long) ops * Integer.BYTES + ops
+                + Integer.BYTES;
+        if (frames < 0 || steps < 0 || steps > frames || ops < 0 || expected != buffer.limit()) {
+            log.warn("{} has the wrong length", path);
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer checked = buffer.duplicate();
+        checked.position(0).limit(buffer.limit() - Integer.BYTES);
+        crc.update(checked);
+        if ((int) crc.getValue() != buffer.getInt(buffer.limit() - Integer.BYTES)) {
+            log.warn("{} failed its checksum", path);
+            return null;
+        }
+
+        int[] stepFrames = new int[steps], stepOffsets = new int[steps + 1], args = new int[ops];
+        byte[] opcodes = new byte[ops];
+        buffer.asIntBuffer().get(stepFrames);
+        buffer.position(buffer.position() + stepFrames.length * Integer.BYTES);
+        buffer.asIntBuffer().get(stepOffsets);
+        buffer.position(buffer.position() + stepOffsets.length * Integer.BYTES);
+        buffer.asIntBuffer().get(args);
+        buffer.position(buffer.position() + args.length * Integer.BYTES);
+        buffer.get(opcodes);
+        if (!isConsistent(frames, stepFrames, stepOffsets, opcodes)) {
+            log.warn("{} has steps or operations out of range", path);
+            return null;
+        }
+
+        log.debug("Loaded {} frames in {} steps from {}", frames, steps, path);
+        return new CompiledPlayback(new EventTape(frames, stepFrames, stepOffsets, opcodes, args));
+    }
+
+    /**
+     * Checks that the arrays read from a file describe a valid {@link EventTape}, so that nothing indexes out of
+     * bounds when it is played. The checksum only catches damage, not a file that was written wrong.
+     *
+     * @param frames      the number of frames
+     * @param stepFrames  the frame of each step, which must be increasing and less than the number of frames
+     * @param stepOffsets the index of the first operation of each step, followed by the number of operations, which
+     *                    must start at 0 and never decrease
+     * @param opcodes     the opcode of each operation, which must be known
+     * @return whether the arrays are consistent
+     */
+    private static boolean isConsistent(int frames, int[] stepFrames, int[] stepOffsets, byte[] opcodes) {
+        int prev = -1;
+        for (int frame : stepFrames) {
+            if (frame <= prev || frame >= frames) {
+                return false;
+            }
+            prev = frame;
+        }
+
+        if (stepOffsets[0] != 0 || stepOffsets[stepOffsets.length - 1] != opcodes.length) {
+            return false;
+        }
+        for (int i = 1; i < stepOffsets.length; i++) {
+            if (stepOffsets[i] < stepOffsets[i - 1]) {
+                return false;
+            }
+        }
+
+        for (byte opcode : opcodes) {
+            if (opcode < 0 || opcode >= OPCODE_NAMES.length) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
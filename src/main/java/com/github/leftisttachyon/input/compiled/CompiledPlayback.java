@@ -1,16 +1,25 @@
 package com.github.leftisttachyon.input.compiled;
 
+import com.github.leftisttachyon.input.sink.HeldInputSink;
+import com.github.leftisttachyon.input.sink.InputSink;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.FrameScheduler;
+import com.github.leftisttachyon.timing.FrameTimingRecorder;
+import com.github.leftisttachyon.timing.TimingReport;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.awt.*;
-import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
 
 /**
- * A class that represents a compiled {@link com.github.leftisttachyon.input.SimplePlayback}
+ * A class that represents a compiled {@link com.github.leftisttachyon.input.SimplePlayback}.<br/>
+ * The frames are stored on an {@link EventTape} and are executed by stepping through it. Only the frames that send
+ * input wake the playback thread; stretches of idle frames are slept through in one wait.
  *
  * @author Jed Wang
  * @since 1.0.0
@@ -20,49 +29,132 @@ import java.util.Iterator;
 @Getter(AccessLevel.NONE)
 public class CompiledPlayback implements Iterable<CompiledInstruction> {
     /**
-     * An {@link ArrayList} of {@link CompiledInstruction}s
+     * The {@link EventTape} that holds the frames of this playback
      */
-    private final ArrayList<CompiledInstruction> instructions;
+    @Getter
+    private final EventTape tape;
+    /**
+     * The {@link CheckpointIndex} over {@link #tape}, built the first time it is needed
+     */
+    @EqualsAndHashCode.Exclude
+    private CheckpointIndex checkpoints;
+
+    /**
+     * Returns the number of frames in this playback
+     *
+     * @return the number of frames in this playback
+     */
+    public int getFrameCount() {
+        return tape.getFrameCount();
+    }
+
+    /**
+     * Returns the {@link CheckpointIndex} of this playback, building it the first time
+     *
+     * @return the {@link CheckpointIndex} of this playback
+     */
+    public synchronized CheckpointIndex getCheckpoints() {
+        if (checkpoints == null) {
+            checkpoints = new CheckpointIndex(tape);
+        }
+
+        return checkpoints;
+    }
+
+    /**
+     * Returns a version of this playback that sends the same input with as few {@link java.awt.Robot} calls as
+     * possible.
+     *
+     * @return an optimized {@link CompiledPlayback}
+     * @see PeepholeOptimizer
+     */
+    public CompiledPlayback optimize() {
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        CompiledPlayback output = new CompiledPlayback(optimizer.optimize(tape));
+        log.info("Optimized the playback: {}", optimizer.getReport());
+
+        return output;
+    }
 
     /**
      * Executes all of the instructions contained in this {@link CompiledPlayback} as quickly as possible.
      *
-     * @param r the {@link Robot} to execute these instructions with
+     * @param sink the {@link InputSink} to execute these instructions with
      */
-    public void executeQuick(Robot r) {
-        for (CompiledInstruction ins : instructions) {
-            ins.execute(r);
+    public void executeQuick(InputSink sink) {
+        for (int step = 0, steps = tape.getStepCount(); step < steps; step++) {
+            tape.executeStep(step, sink);
         }
     }
 
     /**
-     * Executes one instruction once every the given number of milliseconds.
+     * Executes one instruction once every the given frame period.
+     * Instructions are paced against absolute deadlines, so the time spent executing an instruction does not add to
+     * the frame period.
      *
-     * @param r      the {@link Robot} to execute these instructions with
-     * @param millis the number of milliseconds to wait before executing the next set of instructions
+     * @param sink   the {@link InputSink} to execute these instructions with
+     * @param period the time between the starts of consecutive instructions
      * @return the started {@link Thread}
+     * @see FrameScheduler
+     */
+    public Thread execute(InputSink sink, FramePeriod period) {
+        return execute(sink, period, new FrameTimingRecorder(), null);
+    }
+
+    /**
+     * Executes one instruction once every the given frame period, recording the timing of every frame.
+     * Instructions are paced against absolute deadlines, so the time spent executing an instruction does not add to
+     * the frame period.
+     *
+     * @param sink     the {@link InputSink} to execute these instructions with
+     * @param period   the time between the starts of consecutive instructions
+     * @param recorder the {@link FrameTimingRecorder} to record frame timing with
+     * @param onFinish called from the playback thread with the {@link TimingReport} of the run once it ends, may be
+     *                 {@code null}
+     * @return the started {@link Thread}; interrupting it stops the playback. If the run ends before the end of the
+     * movie, for any reason, every key and mouse button that it still holds is released
+     * @see FrameScheduler
      */
-    public Thread execute(Robot r, int millis) {
-        Iterator<CompiledInstruction> iter = instructions.iterator();
+    public Thread execute(InputSink sink, FramePeriod period, FrameTimingRecorder recorder,
+                          Consumer<TimingReport> onFinish) {
+        FrameScheduler scheduler = new FrameScheduler(period);
         log.info("Execution started");
 
         Thread output = new Thread(() -> {
-            double start = System.nanoTime();
-            while (iter.hasNext()) {
-                double total = System.nanoTime() - start;
-                total /= 1_000_000;
-                log.info("Cycle: {} ms", String.format("%.3f", total));
-                start = System.nanoTime();
-
-                CompiledInstruction curr = iter.next();
-                log.trace("Executing {} ...", curr);
-                curr.execute(r);
-
-                try {
-                    Thread.sleep(millis);
-                } catch(InterruptedException ite) {
-                    break;
+            int frames = tape.getFrameCount();
+            HeldInputSink held = new HeldInputSink(sink);
+            scheduler.start();
+            boolean completed = false;
+            try {
+                for (int step = 0, steps = tape.getStepCount(); step < steps; step++) {
+                    long lateness = scheduler.awaitFrame(tape.getStepFrame(step));
+
+                    long start = System.nanoTime();
+                    tape.executeStep(step, held);
+
+                    recorder.record(lateness, System.nanoTime() - start);
+                }
+                if (scheduler.getFrame() < frames) {
+                    scheduler.awaitFrame(frames - 1);
                 }
+                completed = true;
+            } catch (InterruptedException ite) {
+                log.info("Execution was interrupted");
+                recorder.setStopped(true);
+            } catch (RuntimeException re) {
+                log.error("Execution failed", re);
+                recorder.setFailure(re);
+            } finally {
+                if (!completed) {
+                    held.releaseAll();
+                }
+            }
+            recorder.setMissed(scheduler.getMissed());
+
+            TimingReport report = recorder.getReport();
+            log.info("Execution finished: {}", report);
+            if (onFinish != null) {
+                onFinish.accept(report);
             }
         });
         output.start();
@@ -76,15 +168,34 @@ public class CompiledPlayback implements Iterable<CompiledInstruction> {
      * @return an {@link Iterator} that goes through all of the {@link CompiledInstruction}s in this playback
      */
     public Iterator<CompiledInstruction> iterator() {
-        return instructions.iterator();
+        return new Iterator<>() {
+            /**
+             * The index of the next frame to decode
+             */
+            private int frame = 0;
+
+            @Override
+            public boolean hasNext() {
+                return frame < tape.getFrameCount();
+            }
+
+            @Override
+            public CompiledInstruction next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                return tape.getInstruction(frame++);
+            }
+        };
     }
 
     @Override
     public String toString() {
         StringBuilder output = new StringBuilder("[CompiledPlayback instructions={");
-        for (int i = 0; i < instructions.size(); i++) {
-            output.append(instructions.get(i).toString());
-            if (i != instructions.size() - 1) {
+        for (int i = 0, frames = tape.getFrameCount(); i < frames; i++) {
+            output.append(tape.getInstruction(i).toString());
+            if (i != frames - 1) {
                 output.append(", ");
             }
         }
@@ -0,0 +1,540 @@
+package com.github.leftisttachyon.input.compiled;
+
+import com.github.leftisttachyon.input.sink.InputSink;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A whole compiled movie flattened into a few contiguous primitive arrays.<br/>
+ * Every input is one operation: an opcode in {@code opcodes} and its argument at the same index in {@code args}.
+ * Only frames that send input are stored, as steps: step {@code n} runs on frame {@code stepFrames[n]} and its
+ * operations are those from {@code stepOffsets[n]} (inclusive) to {@code stepOffsets[n + 1]} (exclusive). The idle
+ * frames between two steps are not stored at all, so a long stretch of frames that change nothing costs nothing, and
+ * a player can wait for the frame of the next step directly instead of waking up on every frame in between. Any
+ * frame can still be found with a binary search over the step frames.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public final class EventTape {
+    /**
+     * Moves the mouse; the argument is the coordinates, packed with {@link CompiledInstruction#pack(int, int)}
+     */
+    public static final byte OP_MOVE = 0;
+    /**
+     * Presses mouse buttons; the argument is the button mask
+     */
+    public static final byte OP_MOUSE_PRESS = 1;
+    /**
+     * Releases mouse buttons; the argument is the button mask
+     */
+    public static final byte OP_MOUSE_RELEASE = 2;
+    /**
+     * Presses a key; the argument is the key code
+     */
+    public static final byte OP_KEY_PRESS = 3;
+    /**
+     * Releases a key; the argument is the key code
+     */
+    public static final byte OP_KEY_RELEASE = 4;
+
+    /**
+     * The number of frames on this tape, idle ones included
+     */
+    private final int frameCount;
+    /**
+     * The frame of each step, in increasing order
+     */
+    private final int[] stepFrames;
+    /**
+     * The index of the first operation of each step, plus the total number of operations at the end
+     */
+    private final int[] stepOffsets;
+    /**
+     * The opcode of each operation
+     */
+    private final byte[] opcodes;
+    /**
+     * The argument of each operation
+     */
+    private final int[] args;
+
+    /**
+     * Creates a new {@link EventTape}
+     *
+     * @param frameCount  the number of frames on the tape, idle ones included
+     * @param stepFrames  the frame of each step, in increasing order
+     * @param stepOffsets the index of the first operation of each step, plus the total number of operations
+     * @param opcodes     the opcode of each operation
+     * @param args        the argument of each operation
+     */
+    EventTape(int frameCount, int[] stepFrames, int[] stepOffsets, byte[] opcodes, int[] args) {
+        this.frameCount = frameCount;
+        this.stepFrames = stepFrames;
+        this.stepOffsets = stepOffsets;
+        this.opcodes = opcodes;
+        this.args = args;
+    }
+
+    /**
+     * Joins the given tapes into one, one after another.
+     *
+     * @param tapes the tapes to join, in order
+     * @return an {@link EventTape} with the frames of all of the given tapes
+     */
+    public static EventTape concat(List<EventTape> tapes) {
+        long frames = 0, steps = 0, ops = 0;
+        for (EventTape tape : tapes) {
+            frames += tape.frameCount;
+            steps += tape.getStepCount();
+            ops += tape.getOperationCount();
+        }
+        if (frames > Integer.MAX_VALUE || ops > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many frames to join: " + frames);
+        }
+
+        int[] stepFrames = new int[(int) steps], stepOffsets = new int[(int) steps + 1], args = new int[(int) ops];
+        byte[] opcodes = new byte[(int) ops];
+        int frame = 0, step = 0, op = 0;
+        for (EventTape tape : tapes) {
+            int tapeSteps = tape.getStepCount(), tapeOps = tape.getOperationCount();
+            for (int i = 0; i < tapeSteps; i++) {
+                stepFrames[step + i] = frame + tape.stepFrames[i];
+                stepOffsets[step + i] = op + tape.stepOffsets[i];
+            }
+            System.arraycopy(tape.opcodes, 0, opcodes, op, tapeOps);
+            System.arraycopy(tape.args, 0, args, op, tapeOps);
+
+            frame += tape.frameCount;
+            step += tapeSteps;
+            op += tapeOps;
+        }
+        stepOffsets[step] = op;
+
+        return new EventTape(frame, stepFrames, stepOffsets, opcodes, args);
+    }
+
+    /**
+     * Returns the number of frames on this tape, idle ones included
+     *
+     * @return the number of frames on this tape
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Returns the number of steps on this tape, which is the number of frames that send input
+     *
+     * @return the number of steps on this tape
+     */
+    public int getStepCount() {
+        return stepFrames.length;
+    }
+
+    /**
+     * Returns the number of operations on this tape
+     *
+     * @return the number of operations on this tape
+     */
+    public int getOperationCount() {
+        return stepOffsets[stepFrames.length];
+    }
+
+    /**
+     * Returns the estimated memory used by this tape, in bytes
+     *
+     * @return the estimated memory used by this tape, in bytes
+     */
+    public long getEstimatedSize() {
+        // the object itself, then the four arrays with their headers
+        return 32 + 16L * 4 + 4L * stepFrames.length + 4L * stepOffsets.length + opcodes.length + 4L * args.length;
+    }
+
+    /**
+     * Returns the frame that the given step runs on
+     *
+     * @param step the index of the step
+     * @return the frame that the given step runs on
+     */
+    public int getStepFrame(int step) {
+        return stepFrames[step];
+    }
+
+    /**
+     * Returns the frame of each step. The array is not copied and must not be modified.
+     *
+     * @return the frame of each step
+     */
+    int[] getStepFrames() {
+        return stepFrames;
+    }
+
+    /**
+     * Returns the index of the first operation of each step, plus the total number of operations. The array is not
+     * copied and must not be modified.
+     *
+     * @return the index of the first operation of each step, plus the total number of operations
+     */
+    int[] getStepOffsets() {
+        return stepOffsets;
+    }
+
+    /**
+     * Returns the opcode of each operation. The array is not copied and must not be modified.
+     *
+     * @return the opcode of each operation
+     */
+    byte[] getOpcodes() {
+        return opcodes;
+    }
+
+    /**
+     * Returns the argument of each operation. The array is not copied and must not be modified.
+     *
+     * @return the argument of each operation
+     */
+    int[] getArgs() {
+        return args;
+    }
+
+    /**
+     * Returns the step that runs on the given frame
+     *
+     * @param frame the index of the frame
+     * @return the index of the step that runs on the given frame, or -1 if the frame is idle
+     */
+    public int findStep(int frame) {
+        int step = Arrays.binarySearch(stepFrames, frame);
+        return step >= 0 ? step : -1;
+    }
+
+    /**
+     * Returns the first step that runs on or after the given frame
+     *
+     * @param frame the index of the frame
+     * @return the index of the first step that runs on or after the given frame, which is {@link #getStepCount()}
+     * if there is none
+     */
+    public int nextStep(int frame) {
+        int step = Arrays.binarySearch(stepFrames, frame);
+        return step >= 0 ? step : -step - 1;
+    }
+
+    /**
+     * Executes the operations of the given step.
+     *
+     * @param step the index of the step to execute
+     * @param sink the {@link InputSink} to send the inputs to
+     */
+    public void executeStep(int step, InputSink sink) {
+        for (int i = stepOffsets[step], end = stepOffsets[step + 1]; i < end; i++) {
+            int arg = args[i];
+            switch (opcodes[i]) {
+                case OP_MOVE:
+                    sink.mouseMove(CompiledInstruction.unpackX(arg), CompiledInstruction.unpackY(arg));
+                    break;
+                case OP_MOUSE_PRESS:
+                    for (int buttons = arg; buttons != 0; buttons &= buttons - 1) {
+                        sink.mousePress(Integer.lowestOneBit(buttons));
+                    }
+                    break;
+                case OP_MOUSE_RELEASE:
+                    for (int buttons = arg; buttons != 0; buttons &= buttons - 1) {
+                        sink.mouseRelease(Integer.lowestOneBit(buttons));
+                    }
+                    break;
+                case OP_KEY_PRESS:
+                    sink.keyPress(arg);
+                    break;
+                case OP_KEY_RELEASE:
+                    sink.keyRelease(arg);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + opcodes[i] + " at " + i);
+            }
+        }
+    }
+
+    /**
+     * Executes the operations of the given frame, if it has any.
+     *
+     * @param frame the index of the frame to execute
+     * @param sink  the {@link InputSink} to send the inputs to
+     */
+    public void executeFrame(int frame, InputSink sink) {
+        int step = findStep(frame);
+        if (step != -1) {
+            executeStep(step, sink);
+        }
+    }
+
+    /**
+     * Decodes the given frame back into a {@link CompiledInstruction}
+     *
+     * @param frame the index of the frame to decode
+     * @return a {@link CompiledInstruction} that does the same as the given frame
+     */
+    public CompiledInstruction getInstruction(int frame) {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + frameCount);
+        }
+
+        int step = findStep(frame);
+        if (step == -1) {
+            return CompiledInstruction.EMPTY;
+        }
+
+        int start = stepOffsets[step], end = stepOffsets[step + 1];
+        int coords = CompiledInstruction.NO_MOVE, mousePress = 0, mouseRelease = 0, kPSize = 0, kRSize = 0;
+        int[] keyPress = new int[end - start], keyRelease = new int[end - start];
+        for (int i = start; i < end; i++) {
+            switch (opcodes[i]) {
+                case OP_MOVE:
+                    coords = args[i];
+                    break;
+                case OP_MOUSE_PRESS:
+                    mousePress |= args[i];
+                    break;
+                case OP_MOUSE_RELEASE:
+                    mouseRelease |= args[i];
+                    break;
+                case OP_KEY_PRESS:
+                    keyPress[kPSize++] = args[i];
+                    break;
+                case OP_KEY_RELEASE:
+                    keyRelease[kRSize++] = args[i];
+                    break;
+            }
+        }
+
+        return CompiledInstruction.of(coords, mousePress, mouseRelease,
+                Arrays.copyOf(keyPress, kPSize), Arrays.copyOf(keyRelease, kRSize));
+    }
+
+    /**
+     * A class that builds an {@link EventTape} one frame at a time. Frames that get no operations are left as idle
+     * frames between steps.
+     */
+    public static final class Builder {
+        /**
+         * The frame of each step so far
+         */
+        private int[] stepFrames = new int[256];
+        /**
+         * The index of the first operation of each step so far
+         */
+        private int[] stepOffsets = new int[257];
+        /**
+         * The opcode of each operation so far
+         */
+        private byte[] opcodes = new byte[256];
+        /**
+         * The argument of each operation so far
+         */
+        private int[] args = new int[256];
+        /**
+         * The number of finished frames
+         */
+        private int frames;
+        /**
+         * The number of finished steps
+         */
+        private int steps;
+        /**
+         * The number of operations
+         */
+        private int size;
+
+        /**
+         * Adds an operation to the current frame
+         *
+         * @param opcode the opcode of the operation
+         * @param arg    the argument of the operation
+         * @return this {@link Builder}
+         */
+        public Builder add(byte opcode, int arg) {
+            if (size == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, size * 2);
+                args = Arrays.copyOf(args, size * 2);
+            }
+
+            opcodes[size] = opcode;
+            args[size] = arg;
+            size++;
+            return this;
+        }
+
+        /**
+         * Finishes the current frame and starts a new one. If the frame got any operations, it becomes a step.
+         *
+         * @return this {@link Builder}
+         */
+        public Builder endFrame() {
+            if (size != stepOffsets[steps]) {
+                if (steps == stepFrames.length) {
+                    stepFrames = Arrays.copyOf(stepFrames, steps * 2);
+                    stepOffsets = Arrays.copyOf(stepOffsets, steps * 2 + 1);
+                }
+
+                stepFrames[steps] = frames;
+                steps++;
+                stepOffsets[steps] = size;
+            }
+
+            frames++;
+            return this;
+        }
+
+        /**
+         * Adds the inputs of the given {@link CompiledInstruction} as one frame.
+         *
+         * @param ins the {@link CompiledInstruction} to add
+         * @return this {@link Builder}
+         */
+        public Builder append(CompiledInstruction ins) {
+            if (ins.hasMouseMove()) {
+                add(OP_MOVE, ins.getMouseCoords());
+            }
+            if (ins.getMousePress() != 0) {
+                add(OP_MOUSE_PRESS, ins.getMousePress());
+            }
+            if (ins.getMouseRelease() != 0) {
+                add(OP_MOUSE_RELEASE, ins.getMouseRelease());
+            }
+            for (int keyCode : ins.getKeyPress()) {
+                add(OP_KEY_PRESS, keyCode);
+            }
+            for (int keyCode : ins.getKeyRelease()) {
+                add(OP_KEY_RELEASE, keyCode);
+            }
+
+            return endFrame();
+        }
+
+        /**
+         * Returns the number of finished frames
+         *
+         * @return the number of finished frames
+         */
+        public int getFrameCount() {
+            return frames;
+        }
+
+        /**
+         * Adds the frames of the given tape from the given frame on, copying its operations in bulk
+         *
+         * @param tape      the {@link EventTape} to copy from
+         * @param fromFrame the first frame to copy
+         * @return this {@link Builder}
+         * @throws IllegalStateException if the current frame already has operations
+         */
+        public Builder appendTape(EventTape tape, int fromFrame) {
+            checkFrameEnded();
+            if (fromFrame >= tape.frameCount) {
+                return this;
+            }
+
+            int firstStep = tape.nextStep(fromFrame), stepCount = tape.getStepCount() - firstStep;
+            int firstOp = tape.stepOffsets[firstStep], opCount = tape.stepOffsets[tape.getStepCount()] - firstOp;
+            ensureCapacity(stepCount, opCount);
+
+            int frameShift = frames - fromFrame, opShift = size - firstOp;
+            for (int i = 0; i < stepCount; i++) {
+                stepFrames[steps + i] = tape.stepFrames[firstStep + i] + frameShift;
+                stepOffsets[steps + i + 1] = tape.stepOffsets[firstStep + i + 1] + opShift;
+            }
+            System.arraycopy(tape.opcodes, firstOp, opcodes, size, opCount);
+            System.arraycopy(tape.args, firstOp, args, size, opCount);
+
+            frames += tape.frameCount - fromFrame;
+            steps += stepCount;
+            size += opCount;
+            return this;
+        }
+
+        /**
+         * Adds the frames built so far from the given frame on again, the given number of times
+         *
+         * @param fromFrame the first frame to repeat
+         * @param times     the number of copies to add
+         * @return this {@link Builder}
+         * @throws IllegalStateException if the current frame already has operations
+         */
+        public Builder repeat(int fromFrame, int times) {
+            checkFrameEnded();
+            int firstStep = Arrays.binarySearch(stepFrames, 0, steps, fromFrame);
+            if (firstStep < 0) {
+                firstStep = -firstStep - 1;
+            }
+            int frameCount = frames - fromFrame, stepCount = steps - firstStep;
+            int firstOp = stepOffsets[firstStep], opCount = size - firstOp;
+            if (times <= 0 || frameCount <= 0) {
+                return this;
+            }
+            ensureCapacity(Math.multiplyExact(stepCount, times), Math.multiplyExact(opCount, times));
+
+            for (int copy = 0; copy < times; copy++) {
+                int frameShift = frames - fromFrame, opShift = size - firstOp;
+                for (int i = 0; i < stepCount; i++) {
+                    stepFrames[steps + i] = stepFrames[firstStep + i] + frameShift;
+                    stepOffsets[steps + i + 1] = stepOffsets[firstStep + i + 1] + opShift;
+                }
+                System.arraycopy(opcodes, firstOp, opcodes, size, opCount);
+                System.arraycopy(args, firstOp, args, size, opCount);
+
+                frames += frameCount;
+                steps += stepCount;
+                size += opCount;
+            }
+            return this;
+        }
+
+        /**
+         * Makes sure that operations are not being added to an unfinished frame, which copied frames would go
+         * around
+         *
+         * @throws IllegalStateException if the current frame already has operations
+         */
+        private void checkFrameEnded() {
+            if (size != stepOffsets[steps]) {
+                throw new IllegalStateException("The current frame has not been ended");
+            }
+        }
+
+        /**
+         * Grows the arrays to fit the given number of steps and operations more
+         *
+         * @param moreSteps the number of steps to fit
+         * @param moreOps   the number of operations to fit
+         */
+        private void ensureCapacity(int moreSteps, int moreOps) {
+            int neededSteps = Math.addExact(steps, moreSteps), neededOps = Math.addExact(size, moreOps);
+            if (neededSteps > stepFrames.length) {
+                int capacity = Math.max(neededSteps, stepFrames.length * 2);
+                stepFrames = Arrays.copyOf(stepFrames, capacity);
+                stepOffsets = Arrays.copyOf(stepOffsets, capacity + 1);
+            }
+            if (neededOps > opcodes.length) {
+                int capacity = Math.max(neededOps, opcodes.length * 2);
+                opcodes = Arrays.copyOf(opcodes, capacity);
+                args = Arrays.copyOf(args, capacity);
+            }
+        }
+
+        /**
+         * Builds the {@link EventTape}. Operations added after the last {@link #endFrame()} are left out.
+         *
+         * @return the built {@link EventTape}
+         */
+        public EventTape build() {
+            int ops = stepOffsets[steps];
+            log.debug("Built a tape of {} frames, {} steps and {} operations", frames, steps, ops);
+            return new EventTape(frames, Arrays.copyOf(stepFrames, steps), Arrays.copyOf(stepOffsets, steps + 1),
+                    Arrays.copyOf(opcodes, ops), Arrays.copyOf(args, ops));
+        }
+    }
+}
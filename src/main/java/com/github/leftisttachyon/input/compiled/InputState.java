@@ -0,0 +1,53 @@
+package com.github.leftisttachyon.input.compiled;
+
+import com.github.leftisttachyon.input.sink.InputSink;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Setter;
+
+/**
+ * What a playback is holding at one point: the keys and mouse buttons that are down and where the mouse is.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ * @see CheckpointIndex
+ */
+@Data
+@Setter(AccessLevel.NONE)
+public class InputState {
+    /**
+     * The state of a playback that has not sent anything yet
+     */
+    public static final InputState NONE = new InputState(CompiledInstruction.NO_MOVE, 0, new int[0]);
+
+    /**
+     * Where the mouse was last moved to, packed with {@link CompiledInstruction#pack(int, int)}, or
+     * {@link CompiledInstruction#NO_MOVE} if it has not been moved
+     */
+    private final int mouseCoords;
+    /**
+     * The mask of the mouse buttons that are held
+     */
+    private final int buttons;
+    /**
+     * The key codes of the keys that are held, in increasing order
+     */
+    private final int[] keys;
+
+    /**
+     * Sends the inputs that bring a sink that holds nothing into this state
+     *
+     * @param sink the {@link InputSink} to send the inputs to
+     */
+    public void apply(InputSink sink) {
+        if (mouseCoords != CompiledInstruction.NO_MOVE) {
+            sink.mouseMove(CompiledInstruction.unpackX(mouseCoords), CompiledInstruction.unpackY(mouseCoords));
+        }
+        for (int keyCode : keys) {
+            sink.keyPress(keyCode);
+        }
+        for (int held = buttons; held != 0; held &= held - 1) {
+            sink.mousePress(Integer.lowestOneBit(held));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.leftisttachyon.input.compiled;
+
+import lombok.Data;
+
+/**
+ * A summary of what a {@link PeepholeOptimizer} removed from a playback.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ * @see PeepholeOptimizer
+ */
+@Data
+public class OptimizationReport {
+    /**
+     * The number of operations before optimizing
+     */
+    private final long operationsBefore;
+    /**
+     * The number of operations after optimizing
+     */
+    private final long operationsAfter;
+    /**
+     * The number of {@link java.awt.Robot} calls that the operations would make before optimizing
+     */
+    private final long callsBefore;
+    /**
+     * The number of {@link java.awt.Robot} calls that the operations would make after optimizing
+     */
+    private final long callsAfter;
+    /**
+     * The number of mouse moves to where the mouse already was that were removed
+     */
+    private final long movesRemoved;
+    /**
+     * The number of presses of keys or buttons that were already held that were removed
+     */
+    private final long pressesRemoved;
+    /**
+     * The number of releases of keys or buttons that were not held that were removed
+     */
+    private final long releasesRemoved;
+    /**
+     * The number of operations that were merged into the operation next to them
+     */
+    private final long merged;
+    /**
+     * The number of frames that stopped sending input
+     */
+    private final long stepsRemoved;
+
+    /**
+     * Returns the number of {@link java.awt.Robot} calls that the optimizer saved
+     *
+     * @return the number of {@link java.awt.Robot} calls that the optimizer saved
+     */
+    public long getCallsSaved() {
+        return callsBefore - callsAfter;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a {@link String} representation of this {@link OptimizationReport} object.
+     */
+    @Override
+    public String toString() {
+        return getCallsSaved() + " of " + callsBefore + " calls saved | " + movesRemoved + " moves, "
+                + pressesRemoved + " presses and " + releasesRemoved + " releases removed, " + merged + " merged, "
+                + stepsRemoved + " frames now idle";
+    }
+}
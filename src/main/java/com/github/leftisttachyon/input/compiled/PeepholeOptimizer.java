@@ -0,0 +1,193 @@
+package com.github.leftisttachyon.input.compiled;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static com.github.leftisttachyon.input.compiled.EventTape.*;
+
+/**
+ * A class that removes operations from compiled playbacks that would not change anything.<br/>
+ * Every operation is a {@link java.awt.Robot} call that takes time out of its frame, and each frame is compiled only
+ * against the frame before it, so a few kinds of wasted calls get through:
+ * <ul>
+ * <li>a mouse move to where the same frame already moved the mouse</li>
+ * <li>a press of a key or mouse button that is already held</li>
+ * <li>a release of a key or mouse button that is not held</li>
+ * <li>several mouse presses or releases in a row, which are merged into one operation</li>
+ * </ul>
+ * The user can move the real mouse between frames, so where the mouse is only counts within one frame: the first
+ * move of every frame is always kept. What is held is kept track of across everything the optimizer is given, so the
+ * tapes of one playback must be given to the same optimizer in order. Frames left with no operations become idle
+ * frames.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public final class PeepholeOptimizer {
+    /**
+     * The mask of the mouse buttons that are held
+     */
+    private int buttons;
+    /**
+     * The key codes of the keys that are held
+     */
+    private final HashSet<Integer> keys = new HashSet<>();
+
+    /**
+     * The number of operations before optimizing
+     */
+    private long operationsBefore;
+    /**
+     * The number of operations after optimizing
+     */
+    private long operationsAfter;
+    /**
+     * The number of calls before optimizing
+     */
+    private long callsBefore;
+    /**
+     * The number of calls after optimizing
+     */
+    private long callsAfter;
+    /**
+     * The number of redundant moves removed
+     */
+    private long movesRemoved;
+    /**
+     * The number of redundant presses removed
+     */
+    private long pressesRemoved;
+    /**
+     * The number of redundant releases removed
+     */
+    private long releasesRemoved;
+    /**
+     * The number of operations merged into their neighbours
+     */
+    private long merged;
+    /**
+     * The number of steps that were left with no operations
+     */
+    private long stepsRemoved;
+
+    /**
+     * Optimizes the given tape, continuing from the state that the previous tapes left behind.
+     *
+     * @param tape the {@link EventTape} to optimize
+     * @return an {@link EventTape} with the same frames that sends the same input with as few calls as possible
+     */
+    public EventTape optimize(EventTape tape) {
+        int[] inFrames = tape.getStepFrames(), inOffsets = tape.getStepOffsets(), inArgs = tape.getArgs();
+        byte[] inOpcodes = tape.getOpcodes();
+        int steps = tape.getStepCount(), ops = tape.getOperationCount();
+
+        int[] stepFrames = new int[steps], stepOffsets = new int[steps + 1], args = new int[ops];
+        byte[] opcodes = new byte[ops];
+        int outSteps = 0, size = 0;
+        for (int step = 0; step < steps; step++) {
+            // where this frame last moved the mouse, packed
+            int frameStart = size, mouse = CompiledInstruction.NO_MOVE;
+            for (int i = inOffsets[step], end = inOffsets[step + 1]; i < end; i++) {
+                byte opcode = inOpcodes[i];
+                int arg = inArgs[i];
+                callsBefore += callsOf(opcode, arg);
+
+                switch (opcode) {
+                    case OP_MOVE:
+                        if (arg == mouse) {
+                            movesRemoved++;
+                            continue;
+                        }
+                        mouse = arg;
+                        break;
+                    case OP_MOUSE_PRESS:
+                        if ((arg & buttons) != 0) {
+                            pressesRemoved += Integer.bitCount(arg & buttons);
+                            arg &= ~buttons;
+                        }
+                        buttons |= arg;
+                        break;
+                    case OP_MOUSE_RELEASE:
+                        if ((arg & ~buttons) != 0) {
+                            releasesRemoved += Integer.bitCount(arg & ~buttons);
+                            arg &= buttons;
+                        }
+                        buttons &= ~arg;
+                        break;
+                    case OP_KEY_PRESS:
+                        if (!keys.add(arg)) {
+                            pressesRemoved++;
+                            continue;
+                        }
+                        break;
+                    case OP_KEY_RELEASE:
+                        if (!keys.remove(arg)) {
+                            releasesRemoved++;
+                            continue;
+                        }
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown opcode " + opcode + " at " + i);
+                }
+
+                if (opcode == OP_MOUSE_PRESS || opcode == OP_MOUSE_RELEASE) {
+                    if (arg == 0) {
+                        continue;
+                    }
+                    if (size != frameStart && opcodes[size - 1] == opcode) {
+                        args[size - 1] |= arg;
+                        merged++;
+                        continue;
+                    }
+                }
+
+                opcodes[size] = opcode;
+                args[size] = arg;
+                size++;
+            }
+
+            for (int i = frameStart; i < size; i++) {
+                callsAfter += callsOf(opcodes[i], args[i]);
+            }
+
+            if (size != frameStart) {
+                stepFrames[outSteps] = inFrames[step];
+                outSteps++;
+                stepOffsets[outSteps] = size;
+            } else {
+                stepsRemoved++;
+            }
+        }
+
+        operationsBefore += ops;
+        operationsAfter += size;
+        log.trace("Optimized {} operations into {}", ops, size);
+
+        return new EventTape(tape.getFrameCount(), Arrays.copyOf(stepFrames, outSteps),
+                Arrays.copyOf(stepOffsets, outSteps + 1), Arrays.copyOf(opcodes, size), Arrays.copyOf(args, size));
+    }
+
+    /**
+     * Returns the number of {@link java.awt.Robot} calls that the given operation makes
+     *
+     * @param opcode the opcode of the operation
+     * @param arg    the argument of the operation
+     * @return the number of calls that the given operation makes
+     */
+    private static int callsOf(byte opcode, int arg) {
+        return opcode == OP_MOUSE_PRESS || opcode == OP_MOUSE_RELEASE ? Integer.bitCount(arg) : 1;
+    }
+
+    /**
+     * Returns what this optimizer has removed so far
+     *
+     * @return an {@link OptimizationReport} of everything optimized so far
+     */
+    public OptimizationReport getReport() {
+        return new OptimizationReport(operationsBefore, operationsAfter, callsBefore, callsAfter, movesRemoved,
+                pressesRemoved, releasesRemoved, merged, stepsRemoved);
+    }
+}
@@ -0,0 +1,284 @@
+package com.github.leftisttachyon.input.compiled;
+
+import com.github.leftisttachyon.input.sink.HeldInputSink;
+import com.github.leftisttachyon.input.sink.InputSink;
+import com.github.leftisttachyon.input.sink.OffsetInputSink;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.FrameTimingRecorder;
+import com.github.leftisttachyon.timing.TimingReport;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * One {@link CompiledPlayback} being played into one window by a {@link PlaybackSessionManager}.<br/>
+ * Each session has its own sink, window origin and frame clock; the manager only decides when each session's next
+ * step is due. Step {@code n} of a session is due at the session's start plus the offset of its frame, so sessions
+ * that start together stay in lockstep for as long as they share a frame period.<br/>
+ * A session can start partway through its movie. The keys and buttons that the movie holds at that frame and the
+ * last mouse position are looked up in the {@link CheckpointIndex} of the playback and sent first, so the movie picks
+ * up exactly where it would have been. A session that is stopped releases everything that it still holds.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public class PlaybackSession {
+    /**
+     * The name of this session, for logging
+     */
+    @Getter
+    private final String name;
+    /**
+     * The {@link CompiledPlayback} to play
+     */
+    @Getter
+    private final CompiledPlayback playback;
+    /**
+     * The {@link EventTape} to play
+     */
+    private final EventTape tape;
+    /**
+     * The frame of the movie to start at
+     */
+    @Getter
+    private final int startFrame;
+    /**
+     * The {@link InputSink} to send the inputs to, already offset by the origin of the window
+     */
+    private final HeldInputSink sink;
+    /**
+     * The length of one frame of this session
+     */
+    @Getter
+    private final FramePeriod period;
+    /**
+     * The {@link FrameTimingRecorder} to record the timing of the steps with
+     */
+    private final FrameTimingRecorder recorder;
+    /**
+     * Called with the {@link TimingReport} of this session once it ends, may be {@code null}
+     */
+    private final Consumer<TimingReport> onFinish;
+    /**
+     * Completed with the {@link TimingReport} of this session once it ends
+     */
+    @Getter
+    private final CompletableFuture<TimingReport> result = new CompletableFuture<>();
+
+    /**
+     * The manager that is running this session, or {@code null} if it has not been started
+     */
+    private volatile PlaybackSessionManager manager;
+    /**
+     * The time that frame 0 is due, as given by {@link System#nanoTime()}
+     */
+    @Getter
+    private long start;
+    /**
+     * The time that this session next needs to run, as given by {@link System#nanoTime()}
+     */
+    long deadline;
+    /**
+     * The state to restore before the first step, or {@code null} once it has been restored
+     */
+    private InputState restore;
+    /**
+     * The index of the next step to execute
+     */
+    private int step;
+    /**
+     * The frame of the last step that was executed, or the frame before {@link #startFrame} if there was none
+     */
+    private int executedFrame;
+    /**
+     * The number of steps that were released a whole frame period or more late
+     */
+    private long missed;
+    /**
+     * Whether this session has been asked to stop
+     */
+    volatile boolean stopRequested;
+    /**
+     * Whether a step of this session threw
+     */
+    private boolean failed;
+
+    /**
+     * Creates a new {@link PlaybackSession}
+     *
+     * @param name     the name of the session, for logging
+     * @param playback the {@link CompiledPlayback} to play
+     * @param sink     the {@link InputSink} to send the inputs to
+     * @param originX  the x-coordinate of the origin of the target window
+     * @param originY  the y-coordinate of the origin of the target window
+     * @param period   the length of one frame
+     * @param onFinish called with the {@link TimingReport} of the session once it ends, may be {@code null}
+     */
+    public PlaybackSession(String name, CompiledPlayback playback, InputSink sink, int originX, int originY,
+                           FramePeriod period, Consumer<TimingReport> onFinish) {
+        this(name, playback, 0, sink, originX, originY, period, onFinish);
+    }
+
+    /**
+     * Creates a new {@link PlaybackSession} that starts partway through its movie
+     *
+     * @param name       the name of the session, for logging
+     * @param playback   the {@link CompiledPlayback} to play
+     * @param startFrame the frame of the movie to start at, from 0 to its number of frames
+     * @param sink       the {@link InputSink} to send the inputs to
+     * @param originX    the x-coordinate of the origin of the target window
+     * @param originY    the y-coordinate of the origin of the target window
+     * @param period     the length of one frame
+     * @param onFinish   called with the {@link TimingReport} of the session once it ends, may be {@code null}
+     * @throws IndexOutOfBoundsException if the start frame is not in the movie
+     */
+    public PlaybackSession(String name, CompiledPlayback playback, int startFrame, InputSink sink, int originX,
+                           int originY, FramePeriod period, Consumer<TimingReport> onFinish) {
+        if (startFrame < 0 || startFrame > playback.getFrameCount()) {
+            throw new IndexOutOfBoundsException("Frame " + startFrame + " of " + playback.getFrameCount());
+        }
+
+        this.name = name;
+        this.playback = playback;
+        this.tape = playback.getTape();
+        this.startFrame = startFrame;
+        this.sink = new HeldInputSink(OffsetInputSink.of(sink, originX, originY));
+        this.period = period;
+        this.recorder = new FrameTimingRecorder();
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * Prepares this session to start at the given time
+     *
+     * @param manager the manager that is running this session
+     * @param start   the time that frame 0 is due, as given by {@link System#nanoTime()}
+     * @return whether there is anything to play
+     * @throws IllegalStateException if this session has already been started
+     */
+    boolean begin(PlaybackSessionManager manager, long start) {
+        if (this.manager != null) {
+            throw new IllegalStateException("Session " + name + " has already been started");
+        }
+
+        this.manager = manager;
+        this.start = start;
+        step = tape.nextStep(startFrame);
+        executedFrame = startFrame - 1;
+        missed = 0;
+        failed = false;
+        recorder.reset();
+        if (startFrame != 0) {
+            restore = playback.getCheckpoints().getStateAt(startFrame);
+            log.debug("Session {} starts at frame {} holding {}", name, startFrame, restore);
+        }
+
+        return schedule();
+    }
+
+    /**
+     * Works out when this session next needs to run
+     *
+     * @return whether this session needs to run again
+     */
+    private boolean schedule() {
+        int last = tape.getFrameCount() - 1;
+        if (restore != null) {
+            deadline = start;
+            return true;
+        } else if (step < tape.getStepCount()) {
+            deadline = start + period.offsetOf(tape.getStepFrame(step) - startFrame);
+            return true;
+        } else if (step == tape.getStepCount() && executedFrame < last) {
+            // wait out the idle frames at the end, so the session lasts as long as the movie
+            deadline = start + period.offsetOf(last - startFrame);
+            executedFrame = last;
+            step++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Executes the step that is due, if any, and works out when this session next needs to run.
+     *
+     * @return whether this session needs to run again
+     */
+    boolean fire() {
+        if (restore != null) {
+            restore.apply(sink);
+            restore = null;
+            return schedule();
+        }
+
+        if (step < tape.getStepCount()) {
+            long begin = System.nanoTime(), lateness = begin - deadline;
+            tape.executeStep(step, sink);
+            recorder.record(lateness, System.nanoTime() - begin);
+            if (lateness >= period.toNanos()) {
+                missed++;
+            }
+            executedFrame = tape.getStepFrame(step);
+        }
+
+        step++;
+        return schedule();
+    }
+
+    /**
+     * Records that a step of this session threw, which ends it
+     *
+     * @param failure the problem that the step threw
+     */
+    void fail(RuntimeException failure) {
+        failed = true;
+        recorder.setFailure(failure);
+    }
+
+    /**
+     * Ends this session and reports its timing. Called exactly once per run.
+     */
+    void finish() {
+        if ((stopRequested || failed) && sink.isHolding()) {
+            log.info("Session {} releases everything it still holds", name);
+            sink.releaseAll();
+        }
+
+        recorder.setMissed(missed);
+        recorder.setStopped(stopRequested);
+        TimingReport report = recorder.getReport();
+        log.info("Session {} finished: {}", name, report);
+        if (onFinish != null) {
+            try {
+                onFinish.accept(report);
+            } catch (RuntimeException re) {
+                log.warn("The finish callback of session " + name + " failed", re);
+            }
+        }
+        result.complete(report);
+    }
+
+    /**
+     * Stops this session if it is running. The session still reports the timing of the steps it executed.
+     */
+    public void stop() {
+        stopRequested = true;
+        PlaybackSessionManager manager = this.manager;
+        if (manager != null) {
+            manager.stop(this);
+        }
+    }
+
+    /**
+     * Returns whether this session has been started and has not ended yet
+     *
+     * @return whether this session is running
+     */
+    public boolean isRunning() {
+        return manager != null && !result.isDone();
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.leftisttachyon.input.compiled;
+
+import com.github.leftisttachyon.timing.FrameScheduler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A class that plays several {@link PlaybackSession}s at once on one timing thread.<br/>
+ * The sessions wait in a queue ordered by when each next needs to run. The timing thread waits for the earliest
+ * deadline with {@link FrameScheduler#waitUntil(long)}, runs that session's step, and puts the session back in the
+ * queue under its next deadline, so any number of sessions costs one thread instead of one sleeping thread each.
+ * Starting or stopping a session interrupts the timing thread so that it looks at the queue again.<br/>
+ * Sessions that are started together are given the same start time, a little in the future so that all of them are
+ * queued before their first frame is due, which keeps instances that share a frame period in lockstep. Steps of
+ * different sessions that are due at the same time run one after another, so a slow {@link
+ * com.github.leftisttachyon.input.sink.InputSink} delays the sessions behind it.<br/>
+ * Sessions only stay independent if their sinks are. Every {@link com.github.leftisttachyon.input.sink.RobotInputSink}
+ * drives the same system mouse and keyboard, so sessions that send real input must not run at the same time.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public class PlaybackSessionManager {
+    /**
+     * How far in the future sessions that are started together start, in nanoseconds
+     */
+    public static final long START_LEAD = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * The sessions that are running, by when each next needs to run
+     */
+    private final PriorityQueue<PlaybackSession> queue =
+            new PriorityQueue<>((a, b) -> Long.compare(a.deadline - b.deadline, 0));
+    /**
+     * The sessions that have been started and have not finished, including one that is executing a step
+     */
+    private final HashSet<PlaybackSession> active = new HashSet<>();
+    /**
+     * The timing thread, or {@code null} if no session is running
+     */
+    private Thread timer;
+
+    /**
+     * Starts the given sessions together, on a common frame boundary
+     *
+     * @param sessions the sessions to start
+     * @throws IllegalStateException if a session has already been started
+     */
+    public void start(PlaybackSession... sessions) {
+        start(List.of(sessions));
+    }
+
+    /**
+     * Starts the given sessions together, on a common frame boundary
+     *
+     * @param sessions the sessions to start
+     * @throws IllegalStateException if a session has already been started
+     */
+    public void start(Collection<PlaybackSession> sessions) {
+        ArrayList<PlaybackSession> empty = new ArrayList<>();
+        synchronized (this) {
+            long start = System.nanoTime() + START_LEAD;
+            for (PlaybackSession session : sessions) {
+                if (session.begin(this, start)) {
+                    queue.add(session);
+                    active.add(session);
+                } else {
+                    empty.add(session);
+                }
+            }
+            log.info("Starting {} session(s), {} running", sessions.size(), queue.size());
+
+            if (timer == null) {
+                if (!queue.isEmpty()) {
+                    timer = new Thread(this::runTimer, "playback-timer");
+                    timer.setDaemon(true);
+                    timer.setPriority(Thread.MAX_PRIORITY);
+                    timer.start();
+                }
+            } else {
+                timer.interrupt();
+            }
+        }
+
+        for (PlaybackSession session : empty) {
+            session.finish();
+        }
+    }
+
+    /**
+     * Stops the given session, if it is waiting for its next step. A session that is executing a step is stopped by
+     * the timing thread once the step is done.
+     *
+     * @param session the session to stop
+     */
+    void stop(PlaybackSession session) {
+        boolean removed;
+        synchronized (this) {
+            removed = queue.remove(session);
+            if (removed && timer != null) {
+                timer.interrupt();
+            }
+        }
+
+        if (removed) {
+            log.info("Stopped session {}", session.getName());
+            finish(session);
+        }
+    }
+
+    /**
+     * Ends the given session
+     *
+     * @param session the session to end
+     */
+    private void finish(PlaybackSession session) {
+        synchronized (this) {
+            active.remove(session);
+        }
+
+        session.finish();
+    }
+
+    /**
+     * Stops every running session
+     */
+    public void stopAll() {
+        List<PlaybackSession> running;
+        synchronized (this) {
+            running = new ArrayList<>(active);
+        }
+
+        for (PlaybackSession session : running) {
+            session.stop();
+        }
+    }
+
+    /**
+     * Returns the number of sessions that are running
+     *
+     * @return the number of sessions that are running
+     */
+    public synchronized int getRunningCount() {
+        return active.size();
+    }
+
+    /**
+     * Runs the sessions until none are left.
+     */
+    private void runTimer() {
+        while (true) {
+            PlaybackSession next;
+            synchronized (this) {
+                next = queue.peek();
+                if (next == null) {
+                    timer = null;
+                    return;
+                }
+            }
+
+            try {
+                FrameScheduler.waitUntil(next.deadline);
+            } catch (InterruptedException ie) {
+                continue;
+            }
+
+            synchronized (this) {
+                if (queue.peek() != next) {
+                    continue;
+                }
+                queue.poll();
+            }
+
+            boolean more;
+            try {
+                more = next.fire();
+            } catch (RuntimeException re) {
+                log.error("Session " + next.getName() + " failed", re);
+                next.fail(re);
+                more = false;
+            }
+
+            synchronized (this) {
+                more &= !next.stopRequested;
+                if (more) {
+                    queue.add(next);
+                }
+            }
+            if (!more) {
+                finish(next);
+            }
+        }
+    }
+}
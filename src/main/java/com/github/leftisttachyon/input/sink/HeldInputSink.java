@@ -0,0 +1,91 @@
+package com.github.leftisttachyon.input.sink;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * An {@link InputSink} that keeps track of the keys and mouse buttons that it is holding down.<br/>
+ * Inputs are passed on as they are. When a run is stopped partway through, {@link #releaseAll()} lets go of
+ * everything that is still held, so no key or button is left stuck down.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class HeldInputSink implements InputSink {
+    /**
+     * The {@link InputSink} to pass inputs on to
+     */
+    @Getter
+    private final InputSink target;
+    /**
+     * The mask of the mouse buttons that are held
+     */
+    @Getter
+    private int buttons;
+    /**
+     * The key codes of the keys that are held, in the order they were pressed
+     */
+    private final LinkedHashSet<Integer> keys = new LinkedHashSet<>();
+
+    /**
+     * Creates a new {@link HeldInputSink}
+     *
+     * @param target the {@link InputSink} to pass inputs on to
+     */
+    public HeldInputSink(InputSink target) {
+        this.target = target;
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        target.mouseMove(x, y);
+    }
+
+    @Override
+    public void mousePress(int buttons) {
+        target.mousePress(buttons);
+        this.buttons |= buttons;
+    }
+
+    @Override
+    public void mouseRelease(int buttons) {
+        target.mouseRelease(buttons);
+        this.buttons &= ~buttons;
+    }
+
+    @Override
+    public void keyPress(int keycode) {
+        target.keyPress(keycode);
+        keys.add(keycode);
+    }
+
+    @Override
+    public void keyRelease(int keycode) {
+        target.keyRelease(keycode);
+        keys.remove(keycode);
+    }
+
+    /**
+     * Returns whether anything is held
+     *
+     * @return whether any key or mouse button is held
+     */
+    public boolean isHolding() {
+        return buttons != 0 || !keys.isEmpty();
+    }
+
+    /**
+     * Releases every key and mouse button that is held, the most recently pressed key first
+     */
+    public void releaseAll() {
+        ArrayList<Integer> pressed = new ArrayList<>(keys);
+        for (int i = pressed.size() - 1; i >= 0; i--) {
+            keyRelease(pressed.get(i));
+        }
+        for (int held = buttons; held != 0; held &= held - 1) {
+            mouseRelease(Integer.lowestOneBit(held));
+        }
+    }
+}
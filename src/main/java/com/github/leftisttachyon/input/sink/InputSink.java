@@ -0,0 +1,48 @@
+package com.github.leftisttachyon.input.sink;
+
+/**
+ * A destination for the mouse and keyboard inputs of a playback.<br/>
+ * The methods mirror those of {@link java.awt.Robot}, so the real implementation is a thin wrapper around one, while
+ * other implementations can discard or record the inputs instead.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ * @see RobotInputSink
+ */
+public interface InputSink {
+    /**
+     * Moves the mouse to the given screen coordinates.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void mouseMove(int x, int y);
+
+    /**
+     * Presses one or more mouse buttons.
+     *
+     * @param buttons the button mask, a combination of {@link java.awt.event.InputEvent} button down masks
+     */
+    void mousePress(int buttons);
+
+    /**
+     * Releases one or more mouse buttons.
+     *
+     * @param buttons the button mask, a combination of {@link java.awt.event.InputEvent} button down masks
+     */
+    void mouseRelease(int buttons);
+
+    /**
+     * Presses a key.
+     *
+     * @param keycode the key to press, as a {@link java.awt.event.KeyEvent} key code
+     */
+    void keyPress(int keycode);
+
+    /**
+     * Releases a key.
+     *
+     * @param keycode the key to release, as a {@link java.awt.event.KeyEvent} key code
+     */
+    void keyRelease(int keycode);
+}
@@ -0,0 +1,41 @@
+package com.github.leftisttachyon.input.sink;
+
+/**
+ * An {@link InputSink} that discards every input.
+ * Useful for measuring the overhead of the playback engine on its own.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public final class NoOpInputSink implements InputSink {
+    /**
+     * The only instance of this class
+     */
+    public static final NoOpInputSink INSTANCE = new NoOpInputSink();
+
+    /**
+     * Use {@link #INSTANCE} instead
+     */
+    private NoOpInputSink() {
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+    }
+
+    @Override
+    public void mousePress(int buttons) {
+    }
+
+    @Override
+    public void mouseRelease(int buttons) {
+    }
+
+    @Override
+    public void keyPress(int keycode) {
+    }
+
+    @Override
+    public void keyRelease(int keycode) {
+    }
+}
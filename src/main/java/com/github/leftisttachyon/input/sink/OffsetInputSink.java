@@ -0,0 +1,80 @@
+package com.github.leftisttachyon.input.sink;
+
+import lombok.Getter;
+
+/**
+ * An {@link InputSink} that moves every mouse coordinate by the origin of the window it targets before passing it on.
+ * <br/>
+ * Compiled playbacks keep coordinates relative to the window, so the same compiled movie can be played into a window
+ * anywhere on the screen, and playbacks with different origins can run at the same time.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class OffsetInputSink implements InputSink {
+    /**
+     * The {@link InputSink} to pass inputs on to
+     */
+    @Getter
+    private final InputSink target;
+    /**
+     * The x-coordinate of the origin of the window
+     */
+    @Getter
+    private final int originX;
+    /**
+     * The y-coordinate of the origin of the window
+     */
+    @Getter
+    private final int originY;
+
+    /**
+     * Creates a new {@link OffsetInputSink}
+     *
+     * @param target  the {@link InputSink} to pass inputs on to
+     * @param originX the x-coordinate of the origin of the window
+     * @param originY the y-coordinate of the origin of the window
+     */
+    public OffsetInputSink(InputSink target, int originX, int originY) {
+        this.target = target;
+        this.originX = originX;
+        this.originY = originY;
+    }
+
+    /**
+     * Wraps the given sink so that it is offset by the given origin, unless the origin is {@code (0, 0)}
+     *
+     * @param target  the {@link InputSink} to pass inputs on to
+     * @param originX the x-coordinate of the origin of the window
+     * @param originY the y-coordinate of the origin of the window
+     * @return an {@link InputSink} that sends inputs relative to the given origin
+     */
+    public static InputSink of(InputSink target, int originX, int originY) {
+        return originX == 0 && originY == 0 ? target : new OffsetInputSink(target, originX, originY);
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        target.mouseMove(originX + x, originY + y);
+    }
+
+    @Override
+    public void mousePress(int buttons) {
+        target.mousePress(buttons);
+    }
+
+    @Override
+    public void mouseRelease(int buttons) {
+        target.mouseRelease(buttons);
+    }
+
+    @Override
+    public void keyPress(int keycode) {
+        target.keyPress(keycode);
+    }
+
+    @Override
+    public void keyRelease(int keycode) {
+        target.keyRelease(keycode);
+    }
+}
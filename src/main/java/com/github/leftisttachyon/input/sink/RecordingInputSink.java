@@ -0,0 +1,194 @@
+package com.github.leftisttachyon.input.sink;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link InputSink} that records every input in memory along with the time it was sent.<br/>
+ * Events are stored in primitive arrays that grow geometrically, so recording an event does not allocate except when
+ * the arrays have to grow. Nothing is sent to the operating system.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class RecordingInputSink implements InputSink {
+    /**
+     * The number of events that can be stored before the arrays first grow
+     */
+    private static final int INITIAL_CAPACITY = 1_024;
+
+    /**
+     * The times that the events were sent, as given by {@link System#nanoTime()}
+     */
+    private long[] times;
+    /**
+     * The types of the events, as {@link Type} ordinals
+     */
+    private byte[] types;
+    /**
+     * The first argument of each event
+     */
+    private int[] firstArgs;
+    /**
+     * The second argument of each event
+     */
+    private int[] secondArgs;
+    /**
+     * The number of events recorded
+     */
+    private int size;
+
+    /**
+     * Creates a new, empty {@link RecordingInputSink}
+     */
+    public RecordingInputSink() {
+        times = new long[INITIAL_CAPACITY];
+        types = new byte[INITIAL_CAPACITY];
+        firstArgs = new int[INITIAL_CAPACITY];
+        secondArgs = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        add(Type.MOUSE_MOVE, x, y);
+    }
+
+    @Override
+    public void mousePress(int buttons) {
+        add(Type.MOUSE_PRESS, buttons, 0);
+    }
+
+    @Override
+    public void mouseRelease(int buttons) {
+        add(Type.MOUSE_RELEASE, buttons, 0);
+    }
+
+    @Override
+    public void keyPress(int keycode) {
+        add(Type.KEY_PRESS, keycode, 0);
+    }
+
+    @Override
+    public void keyRelease(int keycode) {
+        add(Type.KEY_RELEASE, keycode, 0);
+    }
+
+    /**
+     * Records one event
+     *
+     * @param type      the type of the event
+     * @param firstArg  the first argument of the event
+     * @param secondArg the second argument of the event
+     */
+    private void add(Type type, int firstArg, int secondArg) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            types = Arrays.copyOf(types, capacity);
+            firstArgs = Arrays.copyOf(firstArgs, capacity);
+            secondArgs = Arrays.copyOf(secondArgs, capacity);
+        }
+
+        times[size] = System.nanoTime();
+        types[size] = (byte) type.ordinal();
+        firstArgs[size] = firstArg;
+        secondArgs[size] = secondArg;
+        size++;
+    }
+
+    /**
+     * Returns the number of events recorded
+     *
+     * @return the number of events recorded
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the event at the given index
+     *
+     * @param idx the index of the event
+     * @return the event at the given index
+     */
+    public Event get(int idx) {
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException("Index " + idx + " out of bounds for length " + size);
+        }
+
+        return new Event(times[idx], Type.values()[types[idx]], firstArgs[idx], secondArgs[idx]);
+    }
+
+    /**
+     * Returns all of the recorded events, in the order that they were sent
+     *
+     * @return a {@link List} of the recorded events
+     */
+    public List<Event> getEvents() {
+        ArrayList<Event> output = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            output.add(get(i));
+        }
+
+        return output;
+    }
+
+    /**
+     * Forgets all of the recorded events.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * The kinds of events that can be recorded
+     */
+    public enum Type {
+        /**
+         * A mouse movement; the arguments are the x- and y-coordinates
+         */
+        MOUSE_MOVE,
+        /**
+         * A mouse button press; the argument is the button mask
+         */
+        MOUSE_PRESS,
+        /**
+         * A mouse button release; the argument is the button mask
+         */
+        MOUSE_RELEASE,
+        /**
+         * A key press; the argument is the key code
+         */
+        KEY_PRESS,
+        /**
+         * A key release; the argument is the key code
+         */
+        KEY_RELEASE
+    }
+
+    /**
+     * One recorded event
+     */
+    @Data
+    public static class Event {
+        /**
+         * The time that the event was sent, as given by {@link System#nanoTime()}
+         */
+        private final long time;
+        /**
+         * The type of the event
+         */
+        private final Type type;
+        /**
+         * The first argument of the event
+         */
+        private final int firstArg;
+        /**
+         * The second argument of the event, only used by {@link Type#MOUSE_MOVE}
+         */
+        private final int secondArg;
+    }
+}
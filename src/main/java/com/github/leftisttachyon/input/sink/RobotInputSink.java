@@ -0,0 +1,62 @@
+package com.github.leftisttachyon.input.sink;
+
+import lombok.Getter;
+
+import java.awt.*;
+
+/**
+ * An {@link InputSink} that sends inputs to the operating system through a {@link Robot}.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class RobotInputSink implements InputSink {
+    /**
+     * The {@link Robot} to send inputs with
+     */
+    @Getter
+    private final Robot robot;
+
+    /**
+     * Creates a new {@link RobotInputSink} with a new {@link Robot}
+     *
+     * @throws AWTException if the {@link Robot} could not be created
+     */
+    public RobotInputSink() throws AWTException {
+        this(new Robot());
+    }
+
+    /**
+     * Creates a new {@link RobotInputSink}
+     *
+     * @param robot the {@link Robot} to send inputs with
+     */
+    public RobotInputSink(Robot robot) {
+        this.robot = robot;
+    }
+
+    @Override
+    public void mouseMove(int x, int y) {
+        robot.mouseMove(x, y);
+    }
+
+    @Override
+    public void mousePress(int buttons) {
+        robot.mousePress(buttons);
+    }
+
+    @Override
+    public void mouseRelease(int buttons) {
+        robot.mouseRelease(buttons);
+    }
+
+    @Override
+    public void keyPress(int keycode) {
+        robot.keyPress(keycode);
+    }
+
+    @Override
+    public void keyRelease(int keycode) {
+        robot.keyRelease(keycode);
+    }
+}
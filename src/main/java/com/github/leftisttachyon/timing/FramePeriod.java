@@ -0,0 +1,247 @@
+package com.github.leftisttachyon.timing;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * An exact, possibly fractional, length of one frame.<br/>
+ * The period is stored as the fraction {@code numerator / denominator} nanoseconds, so rates like 60 fps
+ * (16 666 666.67 ns) and 59.94 fps do not have to be rounded. Frame offsets are floored one at a time, which spreads
+ * the remainder across frames and keeps the long-run average exact.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Getter
+@EqualsAndHashCode
+public final class FramePeriod {
+    /**
+     * The number of nanoseconds in one second
+     */
+    private static final BigDecimal NANOS_PER_SECOND = BigDecimal.valueOf(1_000_000_000L);
+    /**
+     * The number of nanoseconds in one millisecond
+     */
+    private static final BigDecimal NANOS_PER_MILLI = BigDecimal.valueOf(1_000_000L);
+    /**
+     * The maximum number of decimal places kept when converting to nanoseconds
+     */
+    private static final int MAX_SCALE = 6;
+
+    /**
+     * The numerator of the period, in nanoseconds
+     */
+    private final long numerator;
+    /**
+     * The denominator of the period
+     */
+    private final long denominator;
+
+    /**
+     * Creates a new {@link FramePeriod}
+     *
+     * @param numerator   the numerator of the period, in nanoseconds
+     * @param denominator the denominator of the period
+     */
+    private FramePeriod(long numerator, long denominator) {
+        if (numerator <= 0 || denominator <= 0) {
+            throw new IllegalArgumentException("The frame period must be positive: " + numerator + "/" + denominator);
+        }
+
+        long gcd = BigInteger.valueOf(numerator).gcd(BigInteger.valueOf(denominator)).longValueExact();
+        this.numerator = numerator / gcd;
+        this.denominator = denominator / gcd;
+    }
+
+    /**
+     * Creates a {@link FramePeriod} of a whole number of nanoseconds
+     *
+     * @param nanos the length of one frame, in nanoseconds
+     * @return the created {@link FramePeriod}
+     */
+    public static FramePeriod ofNanos(long nanos) {
+        return new FramePeriod(nanos, 1);
+    }
+
+    /**
+     * Creates a {@link FramePeriod} from the given amount of nanoseconds
+     *
+     * @param nanos the length of one frame, in nanoseconds
+     * @return the created {@link FramePeriod}
+     */
+    public static FramePeriod ofNanos(BigDecimal nanos) {
+        BigDecimal scaled = nanos.setScale(Math.min(Math.max(nanos.scale(), 0), MAX_SCALE), RoundingMode.HALF_EVEN);
+        try {
+            return new FramePeriod(scaled.unscaledValue().longValueExact(),
+                    BigInteger.TEN.pow(scaled.scale()).longValueExact());
+        } catch (ArithmeticException ae) {
+            throw new IllegalArgumentException("The frame period is too long: " + nanos + " ns", ae);
+        }
+    }
+
+    /**
+     * Creates a {@link FramePeriod} from the given amount of milliseconds
+     *
+     * @param millis the length of one frame, in milliseconds
+     * @return the created {@link FramePeriod}
+     */
+    public static FramePeriod ofMillis(BigDecimal millis) {
+        return ofNanos(millis.multiply(NANOS_PER_MILLI));
+    }
+
+    /**
+     * Creates a {@link FramePeriod} from the given frame rate
+     *
+     * @param fps the number of frames per second
+     * @return the created {@link FramePeriod}
+     */
+    public static FramePeriod ofFps(BigDecimal fps) {
+        if (fps.signum() <= 0) {
+            throw new IllegalArgumentException("The frame rate must be positive: " + fps);
+        }
+
+        BigDecimal scaled = fps.setScale(Math.min(Math.max(fps.scale(), 0), MAX_SCALE), RoundingMode.HALF_EVEN);
+        try {
+            return new FramePeriod(NANOS_PER_SECOND.unscaledValue()
+                    .multiply(BigInteger.TEN.pow(scaled.scale())).longValueExact(),
+                    scaled.unscaledValue().longValueExact());
+        } catch (ArithmeticException ae) {
+            throw new IllegalArgumentException("The frame rate is out of range: " + fps + " fps", ae);
+        }
+    }
+
+    /**
+     * Creates a {@link FramePeriod} from the given amount in the given unit
+     *
+     * @param amount the amount
+     * @param unit   the {@link Unit} that the amount is in
+     * @return the created {@link FramePeriod}
+     */
+    public static FramePeriod of(BigDecimal amount, Unit unit) {
+        switch (unit) {
+            case MILLISECONDS:
+                return ofMillis(amount);
+            case FRAMES_PER_SECOND:
+                return ofFps(amount);
+            case NANOSECONDS:
+                return ofNanos(amount);
+            default:
+                throw new IllegalArgumentException("Unknown unit: " + unit);
+        }
+    }
+
+    /**
+     * Returns the offset of the given frame from the start of playback, rounded down to the nearest nanosecond
+     *
+     * @param frame the index of the frame
+     * @return the offset of the given frame, in nanoseconds
+     */
+    public long offsetOf(long frame) {
+        return mulDiv(frame, numerator, denominator);
+    }
+
+    /**
+     * Returns the index of the frame slot that the given offset falls in, which is the last frame whose offset is not
+     * after the given one
+     *
+     * @param offset the offset from the start of playback, in nanoseconds
+     * @return the index of the frame slot that contains the given offset
+     */
+    public long frameAt(long offset) {
+        long frame = mulDiv(offset + 1, denominator, numerator);
+        return offsetOf(frame) > offset ? frame - 1 : frame;
+    }
+
+    /**
+     * Returns the length of one frame in nanoseconds, rounded down
+     *
+     * @return the length of one frame in nanoseconds, rounded down
+     */
+    public long toNanos() {
+        return numerator / denominator;
+    }
+
+    /**
+     * Returns the length of one frame in milliseconds
+     *
+     * @return the length of one frame in milliseconds
+     */
+    public double toMillis() {
+        return numerator / (denominator * 1e6);
+    }
+
+    /**
+     * Returns the number of frames per second
+     *
+     * @return the number of frames per second
+     */
+    public double toFps() {
+        return denominator * 1e9 / numerator;
+    }
+
+    /**
+     * Computes {@code floor(a * b / c)} for non-negative arguments without overflowing.
+     *
+     * @param a the first factor
+     * @param b the second factor
+     * @param c the divisor
+     * @return {@code floor(a * b / c)}
+     */
+    private static long mulDiv(long a, long b, long c) {
+        if (Math.multiplyHigh(a, b) == 0) {
+            long product = a * b;
+            if (product >= 0) {
+                return product / c;
+            }
+        }
+
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b))
+                .divide(BigInteger.valueOf(c)).longValueExact();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.6f ms (%.3f fps)", toMillis(), toFps());
+    }
+
+    /**
+     * The units that a {@link FramePeriod} can be given in
+     */
+    public enum Unit {
+        /**
+         * The length of one frame, in milliseconds
+         */
+        MILLISECONDS("ms"),
+        /**
+         * The number of frames per second
+         */
+        FRAMES_PER_SECOND("fps"),
+        /**
+         * The length of one frame, in nanoseconds
+         */
+        NANOSECONDS("ns");
+
+        /**
+         * The symbol of this unit
+         */
+        private final String symbol;
+
+        /**
+         * Creates a new {@link Unit}
+         *
+         * @param symbol the symbol of this unit
+         */
+        Unit(String symbol) {
+            this.symbol = symbol;
+        }
+
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.leftisttachyon.timing;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A class that paces frames against absolute deadlines.<br/>
+ * Frame {@code n} is due at {@code start + n * period} (rounded down to the nanosecond), no matter how long the
+ * previous frames took. The scheduler parks the thread for most of the wait and spins for the last stretch, since
+ * parking alone overshoots by up to a millisecond on most systems. Callers wait for frames by their absolute index, so
+ * if a deadline has already been missed, that frame is released at once and the frames after it are still due at
+ * their own deadlines: the schedule stays in phase with the emulator instead of sliding. A caller with nothing to do
+ * for a stretch of frames can wait for a later frame directly, sleeping through the idle frames at once.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+@Slf4j
+public class FrameScheduler {
+    /**
+     * How long before a deadline the scheduler stops parking and starts spinning, in nanoseconds
+     */
+    private static final long SPIN_THRESHOLD = TimeUnit.MICROSECONDS.toNanos(1_500);
+    /**
+     * The length of one frame
+     */
+    @Getter
+    private final FramePeriod period;
+    /**
+     * The time that frame 0 is due, as given by {@link System#nanoTime()}
+     */
+    @Getter
+    private long start;
+    /**
+     * The index of the frame after the last one that was waited for
+     */
+    @Getter
+    private long frame;
+    /**
+     * The number of frames that were released after their slot was already over
+     */
+    @Getter
+    private long missed;
+
+    /**
+     * Creates a new {@link FrameScheduler}
+     *
+     * @param period the length of one frame
+     */
+    public FrameScheduler(FramePeriod period) {
+        this.period = period;
+    }
+
+    /**
+     * Creates a new {@link FrameScheduler} with a frame period given in milliseconds
+     *
+     * @param millis the length of one frame, in milliseconds
+     * @return the created {@link FrameScheduler}
+     */
+    public static FrameScheduler ofMillis(long millis) {
+        return new FrameScheduler(FramePeriod.ofNanos(TimeUnit.MILLISECONDS.toNanos(millis)));
+    }
+
+    /**
+     * Starts the schedule now.
+     */
+    public void start() {
+        start(System.nanoTime());
+    }
+
+    /**
+     * Starts the schedule at the given time.
+     *
+     * @param start the time that frame 0 is due, as given by {@link System#nanoTime()}
+     */
+    public void start(long start) {
+        this.start = start;
+        frame = 0;
+        missed = 0;
+    }
+
+    /**
+     * Returns the deadline of the given frame
+     *
+     * @param frame the index of the frame
+     * @return the time that the given frame is due, as given by {@link System#nanoTime()}
+     */
+    public long getDeadline(long frame) {
+        return start + period.offsetOf(frame);
+    }
+
+    /**
+     * Waits until the frame after the last one that was waited for is due.
+     *
+     * @return how late the frame was released, in nanoseconds
+     * @throws InterruptedException if the thread was interrupted while waiting
+     * @see #awaitFrame(long)
+     */
+    public long awaitNextFrame() throws InterruptedException {
+        return awaitFrame(frame);
+    }
+
+    /**
+     * Waits until the given frame is due, skipping the idle frames before it.
+     * If the deadline of the given frame has already passed, it is released at once, and if its slot is already over
+     * it is counted in {@link #getMissed()}. Either way the frames after it keep their own deadlines, so a caller
+     * that is late catches up instead of staying behind.
+     *
+     * @param target the index of the frame to wait for
+     * @return how late the frame was released, in nanoseconds
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public long awaitFrame(long target) throws InterruptedException {
+        long deadline = getDeadline(target);
+        long lateness = System.nanoTime() - deadline;
+        if (lateness < 0) {
+            waitUntil(deadline);
+            lateness = System.nanoTime() - deadline;
+        } else if (period.frameAt(deadline - start + lateness) > target) {
+            log.debug("Frame {} is {} ns late", target, lateness);
+            missed++;
+        }
+
+        frame = Math.max(frame, target + 1);
+        return lateness;
+    }
+
+    /**
+     * Waits until the given time has been reached.
+     *
+     * @param deadline the time to wait for, as given by {@link System#nanoTime()}
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public static void waitUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD);
+            } else {
+                Thread.onSpinWait();
+            }
+
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+}
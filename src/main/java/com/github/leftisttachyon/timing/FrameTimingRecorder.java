@@ -0,0 +1,99 @@
+package com.github.leftisttachyon.timing;
+
+import lombok.Getter;
+
+/**
+ * A class that records how each frame of a playback run went.<br/>
+ * For every frame it stores the lateness (how long after its deadline the frame was released) and the execution cost
+ * (how long the frame's inputs took to send) in a {@link LatencyHistogram}. Recording never allocates, so it can be
+ * left on for every run.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class FrameTimingRecorder {
+    /**
+     * The histogram of frame lateness
+     */
+    @Getter
+    private final LatencyHistogram lateness = new LatencyHistogram();
+    /**
+     * The histogram of frame execution cost
+     */
+    @Getter
+    private final LatencyHistogram cost = new LatencyHistogram();
+    /**
+     * The number of frames that were released after their slot was already over
+     */
+    @Getter
+    private long missed;
+    /**
+     * The problem that ended the run before the end of the movie, or {@code null} if there was none
+     */
+    @Getter
+    private Throwable failure;
+    /**
+     * Whether the run was stopped before the end of the movie
+     */
+    @Getter
+    private boolean stopped;
+
+    /**
+     * Records one executed frame
+     *
+     * @param lateness how late the frame was released, in nanoseconds
+     * @param cost     how long the frame took to execute, in nanoseconds
+     */
+    public void record(long lateness, long cost) {
+        this.lateness.record(lateness);
+        this.cost.record(cost);
+    }
+
+    /**
+     * Sets the number of frames that were released after their slot was already over
+     *
+     * @param missed the number of frames that missed their slot
+     */
+    public void setMissed(long missed) {
+        this.missed = missed;
+    }
+
+    /**
+     * Sets the problem that ended the run before the end of the movie
+     *
+     * @param failure the problem, or {@code null} if there was none
+     */
+    public void setFailure(Throwable failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * Sets whether the run was stopped before the end of the movie
+     *
+     * @param stopped whether the run was stopped
+     */
+    public void setStopped(boolean stopped) {
+        this.stopped = stopped;
+    }
+
+    /**
+     * Clears everything recorded so far.
+     */
+    public void reset() {
+        lateness.reset();
+        cost.reset();
+        missed = 0;
+        failure = null;
+        stopped = false;
+    }
+
+    /**
+     * Creates a {@link TimingReport} from what has been recorded so far
+     *
+     * @return a {@link TimingReport} of the recorded frames
+     */
+    public TimingReport getReport() {
+        return new TimingReport(lateness.getTotalCount(), missed,
+                TimingReport.Summary.of(lateness), TimingReport.Summary.of(cost), stopped, failure);
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.leftisttachyon.timing;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of nanosecond durations.<br/>
+ * Values are sorted into log-linear buckets: every power of two is split into 32 equal buckets, which keeps the
+ * relative error of every recorded value under about 3% while covering everything from a nanosecond to centuries.
+ * All of the storage is allocated up front, so recording a value never allocates.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class LatencyHistogram {
+    /**
+     * The number of bits used to pick a bucket inside a power of two
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    /**
+     * The number of buckets inside each power of two
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * The total number of buckets
+     */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /**
+     * The number of values in each bucket
+     */
+    private final long[] counts = new long[BUCKET_COUNT];
+    /**
+     * The number of values recorded
+     */
+    @Getter
+    private long totalCount;
+    /**
+     * The largest value recorded
+     */
+    @Getter
+    private long max;
+
+    /**
+     * Records the given value. Negative values are recorded as 0.
+     *
+     * @param value the value to record, in nanoseconds
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+
+        counts[indexOf(value)]++;
+        totalCount++;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Returns the value that the given percentage of the recorded values are less than or equal to.
+     * The result is the upper bound of the bucket that the percentile falls in, capped at the largest recorded value.
+     *
+     * @param percentile the percentile to find, from 0 to 100
+     * @return the value at the given percentile, or 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Clears all of the recorded values.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        max = 0;
+    }
+
+    /**
+     * Returns the bucket that the given value belongs in
+     *
+     * @param value the non-negative value
+     * @return the index of the bucket
+     */
+    private static int indexOf(long value) {
+        int shift = Math.max(0, Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return (int) (shift * SUB_BUCKET_COUNT + (value >>> shift));
+    }
+
+    /**
+     * Returns the largest value that belongs in the given bucket
+     *
+     * @param index the index of the bucket
+     * @return the largest value in the bucket
+     */
+    private static long upperBoundOf(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long mantissa = index - (long) shift * SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
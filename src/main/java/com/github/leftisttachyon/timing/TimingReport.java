@@ -0,0 +1,112 @@
+package com.github.leftisttachyon.timing;
+
+import lombok.Data;
+
+/**
+ * A summary of the frame timing of one playback run.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ * @see FrameTimingRecorder
+ */
+@Data
+public class TimingReport {
+    /**
+     * The number of frames that were executed
+     */
+    private final long frames;
+    /**
+     * The number of frames that were released after their slot was already over
+     */
+    private final long missed;
+    /**
+     * How late the frames were released
+     */
+    private final Summary lateness;
+    /**
+     * How long the frames took to execute
+     */
+    private final Summary cost;
+    /**
+     * Whether the run was stopped before the end of the movie
+     */
+    private final boolean stopped;
+    /**
+     * The problem that ended the run before the end of the movie, or {@code null} if there was none
+     */
+    private final Throwable failure;
+
+    /**
+     * Returns whether the run ended because of a problem instead of reaching the end of the movie
+     *
+     * @return whether the run failed
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Returns whether the run reached the end of the movie, without being stopped or failing
+     *
+     * @return whether the run played the whole movie
+     */
+    public boolean isCompleted() {
+        return !stopped && failure == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a {@link String} representation of this {@link TimingReport} object.
+     */
+    @Override
+    public String toString() {
+        return frames + " frames, " + missed + " missed | lateness " + lateness + " | cost " + cost +
+                (stopped ? " | stopped" : "") + (failure == null ? "" : " | failed: " + failure);
+    }
+
+    /**
+     * The percentiles of one kind of frame timing, in nanoseconds
+     */
+    @Data
+    public static class Summary {
+        /**
+         * The median
+         */
+        private final long p50;
+        /**
+         * The 99th percentile
+         */
+        private final long p99;
+        /**
+         * The 99.9th percentile
+         */
+        private final long p999;
+        /**
+         * The largest value
+         */
+        private final long max;
+
+        /**
+         * Summarizes the given {@link LatencyHistogram}
+         *
+         * @param histogram the {@link LatencyHistogram} to summarize
+         * @return a {@link Summary} of the given histogram
+         */
+        public static Summary of(LatencyHistogram histogram) {
+            return new Summary(histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                    histogram.getValueAtPercentile(99.9), histogram.getMax());
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @return a {@link String} representation of this {@link Summary} object, in milliseconds.
+         */
+        @Override
+        public String toString() {
+            return String.format("p50 %.3f / p99 %.3f / p99.9 %.3f / max %.3f ms",
+                    p50 / 1e6, p99 / 1e6, p999 / 1e6, max / 1e6);
+        }
+    }
+}
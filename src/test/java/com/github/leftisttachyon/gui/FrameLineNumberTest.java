@@ -0,0 +1,173 @@
+package com.github.leftisttachyon.gui;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the frame numbers that a {@link FrameLineNumber} keeps up to date while lines are edited match the
+ * numbers that counting the whole text again gives.<br/>
+ * The edits insert and delete lines inside nested {@code REPEAT} blocks, which is where only recounting the edited
+ * block and shifting the lines after it by the change, multiplied by every block it closes, can go wrong.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class FrameLineNumberTest {
+    /**
+     * The header of every text
+     */
+    private static final String HEADER = "!FORMAT: <KA>\n";
+    /**
+     * The number of edits to make to each text
+     */
+    private static final int EDITS = 200;
+
+    /**
+     * The source of the random lines and edits
+     */
+    private final Random random = new Random(22);
+
+    /**
+     * Returns a random line, which is usually indented to the given level
+     *
+     * @param indent the indentation level of the lines around it
+     * @return a random line, ending in a line break
+     */
+    private String line(int indent) {
+        int level = Math.max(0, indent + random.nextInt(3) - 1);
+        String indentation = "    ".repeat(level);
+        switch (random.nextInt(10)) {
+            case 0:
+                return indentation + "REPEAT " + random.nextInt(5) + "\n";
+            case 1:
+                return indentation + "MARKER m\n";
+            case 2:
+                return random.nextBoolean() ? "\n" : indentation + "# comment\n";
+            case 3:
+                // not a multiple of 4 spaces
+                return "  " + indentation + "A\n";
+            default:
+                return indentation + (random.nextBoolean() ? "A" : ".") + "\n";
+        }
+    }
+
+    /**
+     * Returns a random text of nested {@code REPEAT} blocks
+     *
+     * @param lines the number of lines after the header
+     * @return the text
+     */
+    private String text(int lines) {
+        StringBuilder output = new StringBuilder(HEADER);
+        int indent = 0;
+        for (int i = 0; i < lines; i++) {
+            String line = line(indent);
+            output.append(line);
+            if (line.stripLeading().startsWith("REPEAT ")) {
+                indent = (line.length() - line.stripLeading().length()) / 4 + 1;
+            } else if (random.nextInt(4) == 0) {
+                indent = Math.max(0, indent - 1);
+            }
+        }
+
+        return output.toString();
+    }
+
+    /**
+     * Returns the number shown beside every line
+     *
+     * @param numbers the gutter to read
+     * @param lines   the number of lines
+     * @return the number of each line
+     */
+    private static List<String> numbers(FrameLineNumber numbers, int lines) {
+        ArrayList<String> output = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            output.add(numbers.getNumber(i));
+        }
+
+        return output;
+    }
+
+    /**
+     * Makes one random edit of whole lines: inserting lines, deleting lines, or replacing some lines with others
+     *
+     * @param area the text to edit
+     * @throws BadLocationException if the edit is out of the text, which it never is
+     */
+    private void edit(JTextArea area) throws BadLocationException {
+        int lines = area.getLineCount();
+        // never the header, whose edits always count everything again
+        int first = 1 + random.nextInt(lines - 1), last = Math.min(lines - 1, first + random.nextInt(3));
+        int start = area.getLineStartOffset(first), end = area.getLineEndOffset(last);
+        int indent = (area.getText(start, end - start).length()
+                - area.getText(start, end - start).stripLeading().length()) / 4;
+
+        StringBuilder inserted = new StringBuilder();
+        for (int i = 0, count = random.nextInt(3); i < count; i++) {
+            inserted.append(line(indent));
+        }
+
+        switch (random.nextInt(3)) {
+            case 0:
+                area.getDocument().insertString(start, inserted.toString(), null);
+                break;
+            case 1:
+                if (end > start && area.getLineCount() > 2) {
+                    area.getDocument().remove(start, end - start);
+                }
+                break;
+            default:
+                area.replaceRange(inserted.toString(), start, end);
+        }
+    }
+
+    @Test
+    public void editsMatchCountingAgain() throws Exception {
+        for (int text = 0; text < 20; text++) {
+            JTextArea area = new JTextArea(text(10 + random.nextInt(30)));
+            FrameLineNumber numbers = new FrameLineNumber(area);
+            area.getDocument().addDocumentListener(numbers);
+
+            for (int edit = 0; edit < EDITS; edit++) {
+                edit(area);
+
+                JTextArea copy = new JTextArea(area.getText());
+                List<String> expected = numbers(new FrameLineNumber(copy), copy.getLineCount());
+                assertEquals(expected, numbers(numbers, area.getLineCount()),
+                        "Text " + text + " after " + (edit + 1) + " edits:\n" + area.getText());
+            }
+        }
+    }
+
+    @Test
+    public void editsInsideNestedRepeatsShiftTheLinesAfter() throws Exception {
+        JTextArea area = new JTextArea(HEADER +
+                "A\n" +
+                "REPEAT 2\n" +
+                "    A\n" +
+                "    REPEAT 3\n" +
+                "        A\n" +
+                "        A\n" +
+                "    A\n" +
+                "A\n");
+        FrameLineNumber numbers = new FrameLineNumber(area);
+        area.getDocument().addDocumentListener(numbers);
+        assertEquals(List.of("", "1", "", "2", "", "3", "4", "9", "18", ""), numbers(numbers, area.getLineCount()));
+
+        // one more frame in the inner block is 3 more per outer pass, and 6 more after both blocks
+        area.getDocument().insertString(area.getLineStartOffset(6), "        A\n", null);
+        assertEquals(List.of("", "1", "", "2", "", "3", "4", "5", "12", "24", ""), numbers(numbers, area.getLineCount()));
+
+        // taking it and the line before it out again takes 12 frames after both blocks
+        area.getDocument().remove(area.getLineStartOffset(5), area.getLineEndOffset(6) - area.getLineStartOffset(5));
+        assertEquals(List.of("", "1", "", "2", "", "3", "6", "12", ""), numbers(numbers, area.getLineCount()));
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.leftisttachyon.gui;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the counts that the {@link IncludeFrameCounter} works out for included files.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class IncludeFrameCounterTest {
+    /**
+     * How long to wait for a count, in milliseconds
+     */
+    private static final long TIMEOUT_MILLIS = 10_000;
+    /**
+     * How long to wait between looking a file up, in milliseconds. Every lookup of a pending file starts the debounce
+     * over, so this has to be longer than it.
+     */
+    private static final long POLL_MILLIS = 250;
+
+    /**
+     * The directory to write the files to
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes the given file and waits for the counter to count it
+     *
+     * @param name     the name of the file
+     * @param contents the contents of the file
+     * @return the count of the file
+     * @throws IOException          if the file could not be written
+     * @throws InterruptedException if the wait was interrupted
+     */
+    private int count(String name, String contents) throws IOException, InterruptedException {
+        Path file = directory.resolve(name).toAbsolutePath().normalize();
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+
+        IncludeFrameCounter counter = IncludeFrameCounter.getInstance();
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        int frames;
+        while ((frames = counter.lookup(file)) == IncludeFrameCounter.PENDING) {
+            assertTrue(System.currentTimeMillis() < end, "the file is counted in time");
+            Thread.sleep(POLL_MILLIS);
+        }
+
+        return frames;
+    }
+
+    @Test
+    public void countsNestedRepeats() throws Exception {
+        assertEquals(2 * (1 + 3 * 2) + 1, count("nested.txt",
+                "REPEAT 2\n" +
+                        "    a\n" +
+                        "    REPEAT 3\n" +
+                        "        b\n" +
+                        "        c\n" +
+                        "b\n"));
+    }
+
+    @Test
+    public void countsEmptyRepeat() throws Exception {
+        assertEquals(2, count("empty.txt",
+                "a\n" +
+                        "REPEAT 5\n" +
+                        "b\n"));
+        assertEquals(0, count("trailing.txt", "REPEAT 5\n"));
+    }
+
+    @Test
+    public void countsPastLongLines() throws Exception {
+        String longLine = "a".repeat(5_000) + "\n";
+        assertEquals(2 * 2 + 1, count("long.txt",
+                "REPEAT 2\n" +
+                        "    " + longLine +
+                        "    " + longLine +
+                        longLine));
+    }
+
+    @Test
+    public void countsIncludes() throws Exception {
+        count("part.txt", "a\nREPEAT 2\n    b\n");
+        assertEquals(1 + 3 * 3, count("whole.txt",
+                "a\n" +
+                        "REPEAT 3\n" +
+                        "    INCLUDE part.txt\n"));
+    }
+
+    @Test
+    public void rejectsTooManyFrames() throws Exception {
+        count("huge.txt", "REPEAT 100000\n    a\n");
+        assertEquals(IncludeFrameCounter.UNREADABLE, count("huger.txt",
+                "REPEAT 100000\n" +
+                        "    INCLUDE huge.txt\n"));
+        assertEquals(IncludeFrameCounter.UNREADABLE, count("longer.txt",
+                "REPEAT 2147483647\n" +
+                        "    a\n" +
+                        "a\n"));
+    }
+
+    @Test
+    public void rejectsNegativeRepeat() throws Exception {
+        assertEquals(IncludeFrameCounter.UNREADABLE, count("negative.txt",
+                "REPEAT -2\n" +
+                        "    a\n"));
+    }
+}
@@ -0,0 +1,238 @@
+package com.github.leftisttachyon.input;
+
+import com.github.leftisttachyon.input.compiled.EventTape;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that compiling a playback by copying the compiled frames of the files it includes and of its repeated
+ * blocks gives the same frames as compiling every instruction in order.<br/>
+ * Random files that include each other are edited one at a time, so that the cache keeps the compiled frames of the
+ * unchanged files and relinks the files that include the edited one. A long file that includes nothing is compiled in
+ * parallel chunks, which are checked the same way.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class CompileTapeTest {
+    /**
+     * The header of every file
+     */
+    private static final String HEADER = "!FORMAT: <MX>,<MY> <M1> <KA> <KB>\n";
+    /**
+     * The number of files
+     */
+    private static final int FILES = 12;
+    /**
+     * The number of edits to make
+     */
+    private static final int ROUNDS = 300;
+
+    /**
+     * The directory to write the files to
+     */
+    @TempDir
+    Path directory;
+    /**
+     * The source of the random files
+     */
+    private final Random random = new Random(7);
+    /**
+     * The modification time to give the next file written, so that every edit is seen even within one millisecond
+     */
+    private long modified = 1_000_000_000_000L;
+
+    /**
+     * Returns a random instruction
+     *
+     * @return a line with a random instruction
+     */
+    private String instruction() {
+        return random.nextInt(3) + "," + random.nextInt(3) + " " + (random.nextBoolean() ? "x" : ".") + " " +
+                (random.nextBoolean() ? "A" : ".") + " " + (random.nextBoolean() ? "B" : ".") + "\n";
+    }
+
+    /**
+     * Returns a random line that includes one of the files before the given one
+     *
+     * @param file the index of the file the line is in, which must be above 0
+     * @return a line that includes an earlier file
+     */
+    private String include(int file) {
+        return "INCLUDE f" + random.nextInt(file) + ".txt\n";
+    }
+
+    /**
+     * Returns a random block of lines
+     *
+     * @param file        the index of the file the block is in, which may only include earlier files
+     * @param depth       how many {@code REPEAT}s the block is in
+     * @param indentation the indentation of the block
+     * @return the lines of the block
+     */
+    private String block(int file, int depth, String indentation) {
+        StringBuilder output = new StringBuilder();
+        int lines = (depth > 0 ? 1 : 0) + random.nextInt(4);
+        for (int i = 0; i < lines; i++) {
+            int kind = random.nextInt(10);
+            if (kind < 5 || i == 0 && depth > 0) {
+                output.append(indentation).append(instruction());
+            } else if (kind < 7 && file > 0) {
+                output.append(indentation).append(include(file));
+            } else if (kind < 8) {
+                output.append(indentation).append("MARKER m").append(random.nextInt(5)).append('\n');
+            } else if (depth < 3) {
+                output.append(indentation).append("REPEAT ").append(random.nextInt(6)).append('\n')
+                        .append(block(file, depth + 1, indentation + "    "));
+            }
+        }
+
+        return output.toString();
+    }
+
+    /**
+     * Returns random contents for the given file. Some files are empty, only hold markers, or only include other
+     * files, since those compile to tapes with no steps or no frames.
+     *
+     * @param file the index of the file, which may only include earlier files
+     * @return the contents of the file
+     */
+    private String contents(int file) {
+        StringBuilder output = new StringBuilder(HEADER);
+        switch (random.nextInt(8)) {
+            case 0:
+                break;
+            case 1:
+                output.append("MARKER only\n");
+                break;
+            case 2:
+                if (file > 0) {
+                    for (int i = 0, lines = 1 + random.nextInt(2); i < lines; i++) {
+                        output.append(include(file));
+                    }
+                    break;
+                }
+                // the first file has nothing to include
+            default:
+                output.append(block(file, 0, ""));
+        }
+
+        return output.toString();
+    }
+
+    /**
+     * Writes random contents to the given file
+     *
+     * @param file the index of the file
+     * @throws IOException if the file could not be written
+     */
+    private void write(int file) throws IOException {
+        Path path = directory.resolve("f" + file + ".txt");
+        Files.write(path, contents(file).getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modified += 1_000));
+    }
+
+    /**
+     * Compiles the given playback one instruction at a time, against the instruction before it
+     *
+     * @param playback the playback to compile
+     * @return the frames of the playback
+     */
+    private static EventTape reference(SimplePlayback playback) {
+        EventTape.Builder builder = new EventTape.Builder();
+        SimpleInstruction prev = null;
+        for (SimpleInstruction curr : playback) {
+            builder.append(curr.compile(prev));
+            prev = curr;
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Describes every frame of the given tape, along with how many steps and operations it has
+     *
+     * @param tape the tape to describe
+     * @return a description of the tape
+     */
+    private static String describe(EventTape tape) {
+        StringBuilder output = new StringBuilder()
+                .append(tape.getStepCount()).append(" steps, ")
+                .append(tape.getOperationCount()).append(" operations:");
+        for (int frame = 0; frame < tape.getFrameCount(); frame++) {
+            output.append(' ').append(tape.getInstruction(frame));
+        }
+
+        return output.toString();
+    }
+
+    @Test
+    public void bulkCopiesMatchCompilingInOrder() throws Exception {
+        for (int file = 0; file < FILES; file++) {
+            write(file);
+        }
+
+        PlaybackCache cache = new PlaybackCache();
+        for (int round = 0; round < ROUNDS; round++) {
+            if (round > 0) {
+                write(random.nextInt(FILES));
+            }
+
+            int edits = round;
+            Path path = directory.resolve("f" + (FILES - 1 - random.nextInt(3)) + ".txt");
+            SimplePlayback playback = cache.get(path.toFile());
+            assertEquals(describe(reference(playback)), describe(playback.compile().getTape()),
+                    () -> "After " + edits + " edits, " + path.getFileName() + ":\n" + read(path));
+        }
+        assertTrue(cache.getRelinks() > 0, "some files were relinked instead of parsed again");
+    }
+
+    @Test
+    public void chunksMatchCompilingInOrder() throws Exception {
+        // the chunk boundaries all fall partway through a pass of the first block
+        StringBuilder contents = new StringBuilder(HEADER);
+        for (int i = 0; i < 3; i++) {
+            contents.append(instruction());
+        }
+        contents.append("REPEAT 30000\n");
+        for (int i = 0; i < 7; i++) {
+            contents.append("    ").append(instruction());
+        }
+        contents.append("REPEAT 2\n")
+                .append("    REPEAT 9000\n")
+                .append("        ").append(instruction())
+                .append("        ").append(instruction())
+                .append("    ").append(instruction());
+        Path path = directory.resolve("long.txt");
+        Files.write(path, contents.toString().getBytes(StandardCharsets.UTF_8));
+
+        SimplePlayback playback = SimplePlayback.createPlayback(path.toFile());
+        assertTrue(playback.getFrameCount() > 3L * SimplePlayback.COMPILE_CHUNK_FRAMES,
+                "the file is compiled in several chunks");
+        assertEquals(describe(reference(playback)), describe(playback.compile().getTape()));
+    }
+
+    /**
+     * Reads the given file for a failure message
+     *
+     * @param path the file to read
+     * @return the contents of the file
+     */
+    private static String read(Path path) {
+        try {
+            return Files.readString(path);
+        } catch (IOException e) {
+            return e.toString();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.leftisttachyon.input.compiled;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.leftisttachyon.input.compiled.EventTape.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Optimizes small hand-built {@link EventTape}s with a {@link PeepholeOptimizer} and checks what is left of them.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class PeepholeOptimizerTest {
+    /**
+     * The left mouse button
+     */
+    private static final int LEFT = InputEvent.BUTTON1_DOWN_MASK;
+    /**
+     * The right mouse button
+     */
+    private static final int RIGHT = InputEvent.BUTTON3_DOWN_MASK;
+    /**
+     * A mouse position, packed
+     */
+    private static final int HERE = CompiledInstruction.pack(10, 20);
+
+    /**
+     * Describes every operation of the given tape as its frame, opcode and argument
+     *
+     * @param tape the tape to describe
+     * @return one description per operation, in order
+     */
+    private static List<String> describe(EventTape tape) {
+        ArrayList<String> output = new ArrayList<>();
+        for (int step = 0; step < tape.getStepCount(); step++) {
+            for (int i = tape.getStepOffsets()[step]; i < tape.getStepOffsets()[step + 1]; i++) {
+                output.add(tape.getStepFrame(step) + ": " + tape.getOpcodes()[i] + " " + tape.getArgs()[i]);
+            }
+        }
+
+        return output;
+    }
+
+    /**
+     * Returns the description of one operation, in the form of {@link #describe(EventTape)}
+     *
+     * @param frame  the frame of the operation
+     * @param opcode the opcode of the operation
+     * @param arg    the argument of the operation
+     * @return the description of the operation
+     */
+    private static String op(int frame, byte opcode, int arg) {
+        return frame + ": " + opcode + " " + arg;
+    }
+
+    @Test
+    public void keepsTheFirstMoveOfEveryFrame() {
+        EventTape tape = new Builder()
+                .add(OP_MOVE, HERE).endFrame()
+                .add(OP_MOVE, HERE).add(OP_MOVE, HERE).endFrame()
+                .add(OP_MOVE, HERE).endFrame()
+                .build();
+
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        assertEquals(List.of(op(0, OP_MOVE, HERE), op(1, OP_MOVE, HERE), op(2, OP_MOVE, HERE)),
+                describe(optimizer.optimize(tape)));
+        assertEquals(1, optimizer.getReport().getMovesRemoved());
+    }
+
+    @Test
+    public void dropsPressesOfWhatIsHeld() {
+        EventTape tape = new Builder()
+                .add(OP_MOUSE_PRESS, LEFT).add(OP_KEY_PRESS, KeyEvent.VK_A).endFrame()
+                .add(OP_MOUSE_PRESS, LEFT | RIGHT).add(OP_KEY_PRESS, KeyEvent.VK_A).endFrame()
+                .add(OP_KEY_PRESS, KeyEvent.VK_A).endFrame()
+                .build();
+
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        assertEquals(List.of(op(0, OP_MOUSE_PRESS, LEFT), op(0, OP_KEY_PRESS, KeyEvent.VK_A),
+                op(1, OP_MOUSE_PRESS, RIGHT)), describe(optimizer.optimize(tape)));
+        assertEquals(3, optimizer.getReport().getPressesRemoved());
+        assertEquals(1, optimizer.getReport().getStepsRemoved());
+    }
+
+    @Test
+    public void dropsReleasesOfWhatIsNotHeld() {
+        EventTape tape = new Builder()
+                .add(OP_KEY_RELEASE, KeyEvent.VK_A).add(OP_MOUSE_RELEASE, LEFT).endFrame()
+                .add(OP_KEY_PRESS, KeyEvent.VK_B).add(OP_MOUSE_PRESS, LEFT).endFrame()
+                .add(OP_KEY_RELEASE, KeyEvent.VK_B).add(OP_KEY_RELEASE, KeyEvent.VK_B)
+                .add(OP_MOUSE_RELEASE, LEFT | RIGHT).endFrame()
+                .build();
+
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        assertEquals(List.of(op(1, OP_KEY_PRESS, KeyEvent.VK_B), op(1, OP_MOUSE_PRESS, LEFT),
+                op(2, OP_KEY_RELEASE, KeyEvent.VK_B), op(2, OP_MOUSE_RELEASE, LEFT)),
+                describe(optimizer.optimize(tape)));
+        assertEquals(4, optimizer.getReport().getReleasesRemoved());
+    }
+
+    @Test
+    public void mergesAdjacentMousePresses() {
+        EventTape tape = new Builder()
+                .add(OP_MOUSE_PRESS, LEFT).add(OP_MOUSE_PRESS, RIGHT).endFrame()
+                .add(OP_MOUSE_RELEASE, LEFT).add(OP_KEY_PRESS, KeyEvent.VK_A).add(OP_MOUSE_RELEASE, RIGHT).endFrame()
+                .build();
+
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        assertEquals(List.of(op(0, OP_MOUSE_PRESS, LEFT | RIGHT), op(1, OP_MOUSE_RELEASE, LEFT),
+                op(1, OP_KEY_PRESS, KeyEvent.VK_A), op(1, OP_MOUSE_RELEASE, RIGHT)),
+                describe(optimizer.optimize(tape)));
+        assertEquals(1, optimizer.getReport().getMerged());
+    }
+
+    @Test
+    public void keepsHeldStateAcrossTapes() {
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        optimizer.optimize(new Builder().add(OP_KEY_PRESS, KeyEvent.VK_A).endFrame().build());
+
+        EventTape tape = new Builder().add(OP_KEY_PRESS, KeyEvent.VK_A).endFrame()
+                .add(OP_KEY_RELEASE, KeyEvent.VK_A).endFrame().build();
+        EventTape optimized = optimizer.optimize(tape);
+        assertEquals(List.of(op(1, OP_KEY_RELEASE, KeyEvent.VK_A)), describe(optimized));
+        assertEquals(2, optimized.getFrameCount());
+    }
+
+    @Test
+    public void reportCountsMatch() {
+        EventTape tape = new Builder()
+                .add(OP_MOVE, HERE).add(OP_MOVE, HERE).add(OP_MOUSE_PRESS, LEFT).add(OP_MOUSE_PRESS, RIGHT)
+                .add(OP_KEY_PRESS, KeyEvent.VK_A).endFrame()
+                .add(OP_MOUSE_PRESS, LEFT).add(OP_KEY_PRESS, KeyEvent.VK_A).endFrame()
+                .add(OP_MOVE, HERE).add(OP_MOUSE_RELEASE, LEFT | RIGHT).add(OP_KEY_RELEASE, KeyEvent.VK_B)
+                .endFrame()
+                .build();
+
+        PeepholeOptimizer optimizer = new PeepholeOptimizer();
+        EventTape optimized = optimizer.optimize(tape);
+        OptimizationReport report = optimizer.getReport();
+
+        assertEquals(tape.getOperationCount(), report.getOperationsBefore());
+        assertEquals(optimized.getOperationCount(), report.getOperationsAfter());
+        assertEquals(10, report.getOperationsBefore());
+        assertEquals(5, report.getOperationsAfter());
+        // a press or release of two buttons is two calls
+        assertEquals(11, report.getCallsBefore());
+        assertEquals(7, report.getCallsAfter());
+        assertEquals(4, report.getCallsSaved());
+        assertEquals(1, report.getMovesRemoved());
+        assertEquals(2, report.getPressesRemoved());
+        assertEquals(1, report.getReleasesRemoved());
+        assertEquals(1, report.getMerged());
+        assertEquals(1, report.getStepsRemoved());
+        assertEquals(report.getOperationsBefore() - report.getOperationsAfter(), report.getMovesRemoved()
+                + report.getPressesRemoved() + report.getReleasesRemoved() + report.getMerged());
+    }
+}
@@ -0,0 +1,193 @@
+package com.github.leftisttachyon.input.compiled;
+
+import com.github.leftisttachyon.input.SimplePlayback;
+import com.github.leftisttachyon.input.sink.InputSink;
+import com.github.leftisttachyon.input.sink.RecordingInputSink;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.TimingReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays {@link PlaybackSession}s on a {@link PlaybackSessionManager} into {@link RecordingInputSink}s and checks when
+ * their inputs are sent and how they end.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class PlaybackSessionManagerTest {
+    /**
+     * A movie that presses the left button and A, then moves while still holding them
+     */
+    private static final String MOVIE = "!FORMAT: <MX>,<MY> <M1> <KA>\n" +
+            "10,20 x A\n" +
+            "30,40 x A\n";
+    /**
+     * The number of frames of the movie that {@link #steadyMovie()} writes
+     */
+    private static final int STEADY_FRAMES = 20;
+    /**
+     * The number of sessions to start together
+     */
+    private static final int SESSIONS = 4;
+    /**
+     * How far apart the windows of the sessions that are started together are
+     */
+    private static final int WINDOW_SPACING = 1_000;
+    /**
+     * The length of one frame
+     */
+    private static final FramePeriod PERIOD = FramePeriod.ofNanos(TimeUnit.MILLISECONDS.toNanos(1));
+
+    /**
+     * The directory to write the movies to
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes the given movie and compiles it
+     *
+     * @param contents the movie
+     * @return the compiled movie
+     * @throws IOException if the movie could not be written
+     */
+    private CompiledPlayback compile(String contents) throws IOException {
+        Path file = Files.createTempFile(directory, "movie", ".txt");
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        return SimplePlayback.createPlayback(file.toFile()).compile();
+    }
+
+    /**
+     * Returns a movie that moves the mouse one pixel to the right on every frame, starting at {@code 0,0}
+     *
+     * @return the movie
+     */
+    private static String steadyMovie() {
+        StringBuilder output = new StringBuilder("!FORMAT: <MX>,<MY> <KA>\n");
+        for (int frame = 0; frame < STEADY_FRAMES; frame++) {
+            output.append(frame).append(",0 .\n");
+        }
+
+        return output.toString();
+    }
+
+    /**
+     * Returns the types of the events that the given sink recorded
+     *
+     * @param recording the sink to read
+     * @return the type of every event, in order
+     */
+    private static List<RecordingInputSink.Type> types(RecordingInputSink recording) {
+        ArrayList<RecordingInputSink.Type> output = new ArrayList<>();
+        for (int i = 0; i < recording.size(); i++) {
+            output.add(recording.get(i).getType());
+        }
+
+        return output;
+    }
+
+    @Test
+    public void sessionsStartedTogetherStayInLockstep() throws Exception {
+        CompiledPlayback playback = compile(steadyMovie());
+        ArrayList<PlaybackSession> sessions = new ArrayList<>();
+        ArrayList<RecordingInputSink> recordings = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            RecordingInputSink recording = new RecordingInputSink();
+            recordings.add(recording);
+            sessions.add(new PlaybackSession("window " + i, playback, recording, i * WINDOW_SPACING, 0, PERIOD,
+                    null));
+        }
+        new PlaybackSessionManager().start(sessions);
+
+        long start = sessions.get(0).getStart();
+        long[][] times = new long[SESSIONS][STEADY_FRAMES];
+        for (int i = 0; i < SESSIONS; i++) {
+            PlaybackSession session = sessions.get(i);
+            assertTrue(session.getResult().get(10, TimeUnit.SECONDS).isCompleted(), session.getName() + " completes");
+            assertEquals(start, session.getStart(), session.getName() + " shares the start of the first session");
+
+            RecordingInputSink recording = recordings.get(i);
+            assertEquals(STEADY_FRAMES, recording.size());
+            for (int frame = 0; frame < STEADY_FRAMES; frame++) {
+                RecordingInputSink.Event event = recording.get(frame);
+                assertEquals(RecordingInputSink.Type.MOUSE_MOVE, event.getType());
+                assertEquals(i * WINDOW_SPACING + frame, event.getFirstArg(), "the move is in the window");
+                times[i][frame] = event.getTime();
+                assertTrue(times[i][frame] - start >= PERIOD.offsetOf(frame),
+                        session.getName() + " does not send frame " + frame + " early");
+            }
+        }
+
+        // every session sends a frame before any session sends the frame after it
+        for (int frame = 0; frame + 1 < STEADY_FRAMES; frame++) {
+            long last = Long.MIN_VALUE, first = Long.MAX_VALUE;
+            for (int i = 0; i < SESSIONS; i++) {
+                last = Math.max(last, times[i][frame]);
+                first = Math.min(first, times[i][frame + 1]);
+            }
+            assertTrue(last <= first, "frame " + frame + " is sent by every session before frame " + (frame + 1));
+        }
+    }
+
+    @Test
+    public void failingStepFailsTheSession() throws Exception {
+        RecordingInputSink recording = new RecordingInputSink();
+        InputSink failing = new InputSink() {
+            /**
+             * The number of mouse moves so far
+             */
+            private int moves;
+
+            @Override
+            public void mouseMove(int x, int y) {
+                if (++moves == 2) {
+                    throw new IllegalArgumentException("Invalid key code");
+                }
+                recording.mouseMove(x, y);
+            }
+
+            @Override
+            public void mousePress(int buttons) {
+                recording.mousePress(buttons);
+            }
+
+            @Override
+            public void mouseRelease(int buttons) {
+                recording.mouseRelease(buttons);
+            }
+
+            @Override
+            public void keyPress(int keycode) {
+                recording.keyPress(keycode);
+            }
+
+            @Override
+            public void keyRelease(int keycode) {
+                recording.keyRelease(keycode);
+            }
+        };
+        PlaybackSession session = new PlaybackSession("failing", compile(MOVIE), failing, 0, 0, PERIOD, null);
+        new PlaybackSessionManager().start(session);
+
+        TimingReport report = session.getResult().get(10, TimeUnit.SECONDS);
+        assertTrue(report.isFailed(), "the session reports the failure");
+        assertFalse(report.isStopped(), "the session was not stopped");
+        assertTrue(report.getFailure() instanceof IllegalArgumentException);
+        assertEquals(List.of(RecordingInputSink.Type.MOUSE_MOVE, RecordingInputSink.Type.MOUSE_PRESS,
+                RecordingInputSink.Type.KEY_PRESS, RecordingInputSink.Type.KEY_RELEASE,
+                RecordingInputSink.Type.MOUSE_RELEASE), types(recording));
+    }
+}
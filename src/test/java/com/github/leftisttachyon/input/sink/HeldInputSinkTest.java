@@ -0,0 +1,138 @@
+package com.github.leftisttachyon.input.sink;
+
+import com.github.leftisttachyon.input.PipelinedPlayback;
+import com.github.leftisttachyon.input.SimplePlayback;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.FrameTimingRecorder;
+import com.github.leftisttachyon.timing.TimingReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a playback whose sink fails partway through lets go of everything it holds.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class HeldInputSinkTest {
+    /**
+     * A movie that presses the left button and A, then moves while still holding them
+     */
+    private static final String MOVIE = "!FORMAT: <MX>,<MY> <M1> <KA>\n" +
+            "10,20 x A\n" +
+            "30,40 x A\n";
+
+    /**
+     * The directory to write the movie to
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes {@link #MOVIE} and parses it
+     *
+     * @return the parsed {@link SimplePlayback}
+     * @throws IOException if the movie could not be written
+     */
+    private SimplePlayback load() throws IOException {
+        Path file = directory.resolve("movie.txt");
+        Files.write(file, MOVIE.getBytes(StandardCharsets.UTF_8));
+        return SimplePlayback.createPlayback(file.toFile());
+    }
+
+    /**
+     * Returns a sink that records into the given sink, and fails on the second mouse move
+     *
+     * @param recording the {@link RecordingInputSink} to record into
+     * @return a sink that fails partway through {@link #MOVIE}
+     */
+    private static InputSink failingSink(RecordingInputSink recording) {
+        return new InputSink() {
+            /**
+             * The number of mouse moves so far
+             */
+            private int moves;
+
+            @Override
+            public void mouseMove(int x, int y) {
+                if (++moves == 2) {
+                    throw new IllegalStateException("The sink broke");
+                }
+                recording.mouseMove(x, y);
+            }
+
+            @Override
+            public void mousePress(int buttons) {
+                recording.mousePress(buttons);
+            }
+
+            @Override
+            public void mouseRelease(int buttons) {
+                recording.mouseRelease(buttons);
+            }
+
+            @Override
+            public void keyPress(int keycode) {
+                recording.keyPress(keycode);
+            }
+
+            @Override
+            public void keyRelease(int keycode) {
+                recording.keyRelease(keycode);
+            }
+        };
+    }
+
+    /**
+     * Checks that the run failed and that everything pressed was released afterwards
+     *
+     * @param report    the {@link TimingReport} of the run
+     * @param recording the {@link RecordingInputSink} that the run recorded into
+     */
+    private static void assertReleased(TimingReport report, RecordingInputSink recording) {
+        assertTrue(report.isFailed(), "the run reports the failure");
+        ArrayList<RecordingInputSink.Type> types = new ArrayList<>();
+        for (int i = 0; i < recording.size(); i++) {
+            types.add(recording.get(i).getType());
+        }
+        assertEquals(List.of(RecordingInputSink.Type.MOUSE_MOVE, RecordingInputSink.Type.MOUSE_PRESS,
+                RecordingInputSink.Type.KEY_PRESS, RecordingInputSink.Type.KEY_RELEASE,
+                RecordingInputSink.Type.MOUSE_RELEASE), types);
+        assertEquals(KeyEvent.VK_A, recording.get(3).getFirstArg());
+        assertEquals(InputEvent.BUTTON1_DOWN_MASK, recording.get(4).getFirstArg());
+    }
+
+    @Test
+    public void compiledPlaybackReleasesOnFailure() throws Exception {
+        RecordingInputSink recording = new RecordingInputSink();
+        CompletableFuture<TimingReport> result = new CompletableFuture<>();
+        load().compile().execute(failingSink(recording), FramePeriod.ofNanos(1_000_000), new FrameTimingRecorder(),
+                result::complete);
+
+        assertReleased(result.get(10, TimeUnit.SECONDS), recording);
+    }
+
+    @Test
+    public void pipelinedPlaybackReleasesOnFailure() throws Exception {
+        RecordingInputSink recording = new RecordingInputSink();
+        CompletableFuture<TimingReport> result = new CompletableFuture<>();
+        new PipelinedPlayback(load()).execute(failingSink(recording), FramePeriod.ofNanos(1_000_000),
+                new FrameTimingRecorder(), result::complete);
+
+        assertReleased(result.get(10, TimeUnit.SECONDS), recording);
+    }
+}
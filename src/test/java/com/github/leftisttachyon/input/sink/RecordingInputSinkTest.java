@@ -0,0 +1,122 @@
+package com.github.leftisttachyon.input.sink;
+
+import com.github.leftisttachyon.input.SimplePlayback;
+import com.github.leftisttachyon.input.compiled.CompiledPlayback;
+import com.github.leftisttachyon.timing.FramePeriod;
+import com.github.leftisttachyon.timing.FrameTimingRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays a small movie into a {@link RecordingInputSink} and checks the inputs that were sent.
+ *
+ * @author Jed Wang
+ * @since 1.3.0
+ */
+public class RecordingInputSinkTest {
+    /**
+     * A movie of six frames: a move, two clicks while holding A, and a move while pressing A again
+     */
+    private static final String MOVIE = "!FORMAT: <MX>,<MY> <M1> <KA>\n" +
+            "10,20 . .\n" +
+            "REPEAT 2\n" +
+            "    10,20 x A\n" +
+            "    10,20 . .\n" +
+            "30,40 . A\n";
+    /**
+     * The inputs that {@link #MOVIE} sends, in order
+     */
+    private static final List<String> EXPECTED = List.of(
+            "MOUSE_MOVE 10 20",
+            "MOUSE_MOVE 10 20", "MOUSE_PRESS " + InputEvent.BUTTON1_DOWN_MASK, "KEY_PRESS " + KeyEvent.VK_A,
+            "MOUSE_MOVE 10 20", "MOUSE_RELEASE " + InputEvent.BUTTON1_DOWN_MASK, "KEY_RELEASE " + KeyEvent.VK_A,
+            "MOUSE_MOVE 10 20", "MOUSE_PRESS " + InputEvent.BUTTON1_DOWN_MASK, "KEY_PRESS " + KeyEvent.VK_A,
+            "MOUSE_MOVE 10 20", "MOUSE_RELEASE " + InputEvent.BUTTON1_DOWN_MASK, "KEY_RELEASE " + KeyEvent.VK_A,
+            "MOUSE_MOVE 30 40", "KEY_PRESS " + KeyEvent.VK_A);
+
+    /**
+     * The directory to write the movie to
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes {@link #MOVIE} and parses it
+     *
+     * @return the parsed {@link SimplePlayback}
+     * @throws IOException if the movie could not be written
+     */
+    private SimplePlayback load() throws IOException {
+        Path file = directory.resolve("movie.txt");
+        Files.write(file, MOVIE.getBytes(StandardCharsets.UTF_8));
+        return SimplePlayback.createPlayback(file.toFile());
+    }
+
+    /**
+     * Describes the recorded events without their times, and checks that they were recorded in order
+     *
+     * @param sink the {@link RecordingInputSink} that recorded the events
+     * @return a description of each event
+     */
+    private static List<String> describe(RecordingInputSink sink) {
+        ArrayList<String> output = new ArrayList<>();
+        for (int i = 0; i < sink.size(); i++) {
+            RecordingInputSink.Event event = sink.get(i);
+            if (i > 0) {
+                assertTrue(event.getTime() - sink.get(i - 1).getTime() >= 0,
+                        "events are recorded in the order they were sent");
+            }
+
+            String description = event.getType() + " " + event.getFirstArg();
+            if (event.getType() == RecordingInputSink.Type.MOUSE_MOVE) {
+                description += " " + event.getSecondArg();
+            }
+            output.add(description);
+        }
+
+        return output;
+    }
+
+    @Test
+    public void recordsSimplePlayback() throws Exception {
+        RecordingInputSink sink = new RecordingInputSink();
+        Thread thread = load().execute(sink, FramePeriod.ofNanos(1_000_000));
+        thread.join();
+
+        assertEquals(EXPECTED, describe(sink));
+    }
+
+    @Test
+    public void recordsCompiledPlayback() throws Exception {
+        CompiledPlayback compiled = load().compile();
+        RecordingInputSink sink = new RecordingInputSink();
+        Thread thread = compiled.execute(sink, FramePeriod.ofNanos(1_000_000), new FrameTimingRecorder(), null);
+        thread.join();
+
+        assertEquals(EXPECTED, describe(sink));
+    }
+
+    @Test
+    public void recordsQuickPlayback() throws Exception {
+        RecordingInputSink sink = new RecordingInputSink();
+        load().compile().executeQuick(sink);
+        assertEquals(EXPECTED, describe(sink));
+
+        sink.clear();
+        assertEquals(0, sink.size());
+        load().executeQuick(sink);
+        assertEquals(EXPECTED, describe(sink));
+    }
+}